@@ -0,0 +1,53 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.database;
+
+import krTools.language.Query;
+import krTools.language.Term;
+
+/**
+ * The aggregate functions that can be computed over the solutions of a query,
+ * see {@link Database#aggregate(Aggregate, Term, Query)}. Every solution
+ * counts, also if it gives the same bindings as another solution.
+ */
+public enum Aggregate {
+	/**
+	 * The number of solutions. The template is not used.
+	 */
+	COUNT,
+	/**
+	 * The sum of the (numeric) template over all solutions; 0 if there are no
+	 * solutions.
+	 */
+	SUM,
+	/**
+	 * The smallest value of the (numeric) template; undefined if there are no
+	 * solutions.
+	 */
+	MIN,
+	/**
+	 * The largest value of the (numeric) template; undefined if there are no
+	 * solutions.
+	 */
+	MAX,
+	/**
+	 * The list of all instances of the template, in the order in which the
+	 * solutions were found.
+	 */
+	BAG;
+}
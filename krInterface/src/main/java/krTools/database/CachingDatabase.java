@@ -0,0 +1,542 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import krTools.dependency.DependencyGraph;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Query;
+import krTools.language.Substitution;
+import krTools.language.Term;
+import krTools.language.Update;
+import krTools.language.Var;
+
+/**
+ * A database that remembers the results of the queries on another database,
+ * until a formula is inserted or deleted that the result may depend on.
+ * <p>
+ * The results of {@link #query(Query)}, {@link #query(Query, Collection)},
+ * {@link #queryFirst(Query)}, {@link #queryLimit(Query, int)},
+ * {@link #holds(Query)} and {@link #aggregate(Aggregate, Term, Query)} are
+ * cached per query. A result depends on the signatures that are queried, and
+ * on the signatures that these depend on according to a
+ * {@link DependencyGraph}, transitively. Inserting or deleting a formula
+ * through this database only removes the results that depend on the signature
+ * that the formula defines. The definitions that are inserted are added to the
+ * graph; deleted definitions are not removed from it, so a result may be
+ * removed when that was not needed, but never kept when it should not.
+ * Results of queries whose signatures the graph does not know (see
+ * {@link DependencyGraph#getQueriedSignatures(Query)}) are removed by any
+ * change. Results of queries that are not pure according to the graph (see
+ * {@link DependencyGraph#isCacheable(Query)}) are not cached at all.
+ * </p>
+ * <p>
+ * The cache holds at most a fixed number of results, and removes the least
+ * recently used result when it is full. Changes that are made to the
+ * underlying database directly are not noticed; {@link #clear()} removes all
+ * results. Queries that are evaluated by {@link #queryIterator(Query)}, and
+ * forks, are not cached.
+ * </p>
+ */
+public class CachingDatabase implements Database {
+	/**
+	 * Default for the capacity of the cache, in results.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/**
+	 * The database that evaluates the queries that are not cached.
+	 */
+	private final Database database;
+	/**
+	 * The dependencies between the signatures of the database. Guarded by
+	 * this cache, as graphs are not thread safe.
+	 */
+	private final DependencyGraph<?> graph;
+	private final int capacity;
+	/**
+	 * The cached results, least recently used first.
+	 */
+	private final Map<Key, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * The keys of the cached results, by the signatures that they depend on.
+	 */
+	private final Map<String, Set<Key>> dependents = new HashMap<>();
+	/**
+	 * The keys of the cached results of which the dependencies are unknown.
+	 */
+	private final Set<Key> unknown = new HashSet<>();
+	/**
+	 * The number of times that results were removed because of a change; a
+	 * result of a query that was evaluated during a change is not cached.
+	 */
+	private long changes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long invalidations = 0;
+
+	/**
+	 * Creates a cache with the {@link #DEFAULT_CAPACITY}.
+	 *
+	 * @param database
+	 *            The database whose query results are cached.
+	 * @param graph
+	 *            A dependency graph for the KR language of the database, that
+	 *            contains the definitions of its current content.
+	 */
+	public CachingDatabase(Database database, DependencyGraph<?> graph) {
+		this(database, graph, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param database
+	 *            The database whose query results are cached.
+	 * @param graph
+	 *            A dependency graph for the KR language of the database, that
+	 *            contains the definitions of its current content.
+	 * @param capacity
+	 *            The maximum number of cached results, at least 1.
+	 */
+	public CachingDatabase(Database database, DependencyGraph<?> graph, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("the capacity of a cache should be at least 1 but is " + capacity);
+		}
+		this.database = database;
+		this.graph = graph;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return The database whose query results are cached.
+	 */
+	public Database getDatabase() {
+		return this.database;
+	}
+
+	@Override
+	public String getName() {
+		return this.database.getName();
+	}
+
+	@Override
+	public Set<Substitution> query(Query query) throws KRQueryFailedException {
+		Key key = new Key("query", query);
+		Result result = get(key);
+		if (result != null) {
+			return copy(result.getSubstitutions());
+		}
+		long version = getChanges();
+		Set<Substitution> substitutions = this.database.query(query);
+		put(key, version, copy(substitutions));
+		return substitutions;
+	}
+
+	@Override
+	public Set<Substitution> query(Query query, Collection<Var> variables) throws KRQueryFailedException {
+		Key key = new Key("project", query, new ArrayList<>(variables));
+		Result result = get(key);
+		if (result != null) {
+			return copy(result.getSubstitutions());
+		}
+		long version = getChanges();
+		Set<Substitution> substitutions = this.database.query(query, variables);
+		put(key, version, copy(substitutions));
+		return substitutions;
+	}
+
+	@Override
+	public SolutionIterator queryIterator(Query query) throws KRQueryFailedException {
+		return this.database.queryIterator(query);
+	}
+
+	@Override
+	public Substitution queryFirst(Query query) throws KRQueryFailedException {
+		Key key = new Key("first", query);
+		Result result = get(key);
+		if (result != null) {
+			Substitution substitution = (Substitution) result.getValue();
+			return (substitution == null) ? null : substitution.clone();
+		}
+		long version = getChanges();
+		Substitution substitution = this.database.queryFirst(query);
+		put(key, version, (substitution == null) ? null : substitution.clone());
+		return substitution;
+	}
+
+	@Override
+	public Set<Substitution> queryLimit(Query query, int limit) throws KRQueryFailedException {
+		Key key = new Key("limit", query, limit);
+		Result result = get(key);
+		if (result != null) {
+			return copy(result.getSubstitutions());
+		}
+		long version = getChanges();
+		Set<Substitution> substitutions = this.database.queryLimit(query, limit);
+		put(key, version, copy(substitutions));
+		return substitutions;
+	}
+
+	@Override
+	public boolean holds(Query query) throws KRQueryFailedException {
+		Key key = new Key("holds", query);
+		Result result = get(key);
+		if (result != null) {
+			return (Boolean) result.getValue();
+		}
+		long version = getChanges();
+		boolean holds = this.database.holds(query);
+		put(key, version, holds);
+		return holds;
+	}
+
+	@Override
+	public Term aggregate(Aggregate function, Term template, Query query) throws KRQueryFailedException {
+		Key key = new Key("aggregate", query, Arrays.asList(function, template));
+		Result result = get(key);
+		if (result != null) {
+			return (Term) result.getValue();
+		}
+		long version = getChanges();
+		Term aggregate = this.database.aggregate(function, template, query);
+		put(key, version, aggregate);
+		return aggregate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The new database is a fork of the underlying database, without a cache.
+	 * </p>
+	 */
+	@Override
+	public Database fork(String name) throws KRDatabaseException {
+		return this.database.fork(name);
+	}
+
+	@Override
+	public boolean insert(DatabaseFormula formula) throws KRDatabaseException {
+		boolean inserted = this.database.insert(formula);
+		if (inserted) {
+			changed(Collections.singleton(formula), true);
+		}
+		return inserted;
+	}
+
+	@Override
+	public boolean delete(DatabaseFormula formula) throws KRDatabaseException {
+		boolean deleted = this.database.delete(formula);
+		if (deleted) {
+			changed(Collections.singleton(formula), false);
+		}
+		return deleted;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The results that depend on a formula of the update are removed, also if
+	 * the update fails, as the underlying database may have applied it in
+	 * part.
+	 * </p>
+	 */
+	@Override
+	public void apply(Update update) throws KRDatabaseException {
+		try {
+			this.database.apply(update);
+		} finally {
+			changed(update.getDeleteList(), false);
+			changed(update.getAddList(), true);
+		}
+	}
+
+	@Override
+	public void destroy() throws KRDatabaseException {
+		clear();
+		this.database.destroy();
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public synchronized void clear() {
+		this.invalidations += this.results.size();
+		this.results.clear();
+		this.dependents.clear();
+		this.unknown.clear();
+		this.changes++;
+	}
+
+	/**
+	 * @return The number of cached results.
+	 */
+	public synchronized int size() {
+		return this.results.size();
+	}
+
+	/**
+	 * @return The maximum number of cached results.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return The number of queries that were answered from the cache.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return The number of cached queries that were evaluated by the
+	 *         underlying database.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return The fraction of the cached queries that were answered from the
+	 *         cache, or 0 if there were none.
+	 */
+	public synchronized double getHitRate() {
+		long requests = this.hits + this.misses;
+		return (requests == 0) ? 0 : (double) this.hits / requests;
+	}
+
+	/**
+	 * @return The number of results that were removed because the cache was
+	 *         full.
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * @return The number of results that were removed because a formula that
+	 *         they may depend on was inserted or deleted.
+	 */
+	public synchronized long getInvalidations() {
+		return this.invalidations;
+	}
+
+	/**
+	 * @param key
+	 *            The key of a query.
+	 * @return The cached result of the query, or null if there is none.
+	 */
+	private synchronized Result get(Key key) {
+		Result result = this.results.get(key);
+		if (result == null) {
+			this.misses++;
+		} else {
+			this.hits++;
+		}
+		return result;
+	}
+
+	private synchronized long getChanges() {
+		return this.changes;
+	}
+
+	/**
+	 * Caches the result of a query, unless results were removed while it was
+	 * evaluated or the query is not cacheable, and removes the least recently used result if the cache is
+	 * full.
+	 *
+	 * @param key
+	 *            The key of the query.
+	 * @param version
+	 *            The number of changes before the query was evaluated.
+	 * @param value
+	 *            The result of the query.
+	 */
+	private synchronized void put(Key key, long version, Object value) {
+		if (version != this.changes || !this.graph.isCacheable(key.query)) {
+			return;
+		}
+		Set<String> signatures = this.graph.getQueriedSignatures(key.query);
+		Set<String> dependencies = (signatures == null) ? null : this.graph.getDependencies(signatures);
+		Result old = this.results.put(key, new Result(value, dependencies));
+		if (old != null) {
+			unindex(key, old);
+		}
+		if (dependencies == null) {
+			this.unknown.add(key);
+		} else {
+			for (String signature : dependencies) {
+				Set<Key> keys = this.dependents.get(signature);
+				if (keys == null) {
+					keys = new HashSet<>();
+					this.dependents.put(signature, keys);
+				}
+				keys.add(key);
+			}
+		}
+		if (this.results.size() > this.capacity) {
+			Iterator<Map.Entry<Key, Result>> eldest = this.results.entrySet().iterator();
+			Map.Entry<Key, Result> entry = eldest.next();
+			eldest.remove();
+			unindex(entry.getKey(), entry.getValue());
+			this.evictions++;
+		}
+	}
+
+	/**
+	 * Removes the key of a result that is no longer cached from the index of
+	 * keys by signature.
+	 */
+	private void unindex(Key key, Result result) {
+		if (result.dependencies == null) {
+			this.unknown.remove(key);
+			return;
+		}
+		for (String signature : result.dependencies) {
+			Set<Key> keys = this.dependents.get(signature);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					this.dependents.remove(signature);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the results that may depend on formulas that were inserted or
+	 * deleted, and adds the inserted formulas to the dependency graph.
+	 *
+	 * @param formulas
+	 *            The formulas.
+	 * @param inserted
+	 *            True iff the formulas were inserted.
+	 */
+	private synchronized void changed(Collection<? extends DatabaseFormula> formulas, boolean inserted) {
+		if (formulas.isEmpty()) {
+			return;
+		}
+		Set<Key> removed = new LinkedHashSet<>(this.unknown);
+		for (DatabaseFormula formula : formulas) {
+			if (inserted) {
+				try {
+					this.graph.add(formula, true, false);
+				} catch (KRException e) {
+					// the dependencies of the formula are unknown.
+					clear();
+					return;
+				}
+			}
+			Set<Key> keys = this.dependents.get(this.graph.getDefinedSignature(formula));
+			if (keys != null) {
+				removed.addAll(keys);
+			}
+		}
+		for (Key key : removed) {
+			unindex(key, this.results.remove(key));
+		}
+		this.invalidations += removed.size();
+		this.changes++;
+	}
+
+	/**
+	 * @return A copy of a set of substitutions that can be changed without
+	 *         changing the original.
+	 */
+	private static Set<Substitution> copy(Set<Substitution> substitutions) {
+		Set<Substitution> copy = new LinkedHashSet<>(substitutions.size());
+		for (Substitution substitution : substitutions) {
+			copy.add(substitution.clone());
+		}
+		return copy;
+	}
+
+	/**
+	 * The key of a cached result: the kind of query, the query, and the other
+	 * arguments of the query method, if any.
+	 */
+	private static final class Key {
+		private final String kind;
+		private final Query query;
+		private final Object argument;
+
+		Key(String kind, Query query) {
+			this(kind, query, null);
+		}
+
+		Key(String kind, Query query, Object argument) {
+			this.kind = kind;
+			this.query = query;
+			this.argument = argument;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 31 * this.kind.hashCode() + this.query.hashCode();
+			return (this.argument == null) ? hash : 31 * hash + this.argument.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.kind.equals(other.kind) && this.query.equals(other.query)
+					&& ((this.argument == null) ? other.argument == null : this.argument.equals(other.argument));
+		}
+	}
+
+	/**
+	 * A cached result, with the signatures that it depends on (or null if
+	 * these are unknown).
+	 */
+	private static final class Result {
+		private final Object value;
+		private final Set<String> dependencies;
+
+		Result(Object value, Set<String> dependencies) {
+			this.value = value;
+			this.dependencies = dependencies;
+		}
+
+		Object getValue() {
+			return this.value;
+		}
+
+		@SuppressWarnings("unchecked")
+		Set<Substitution> getSubstitutions() {
+			return (Set<Substitution>) this.value;
+		}
+	}
+}
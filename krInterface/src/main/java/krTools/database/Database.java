@@ -1,102 +1,278 @@
-/**
- * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
- *
- * This program is free software: you can redistribute it and/or modify it under
- * the terms of the GNU General Public License as published by the Free Software
- * Foundation, either version 3 of the License, or (at your option) any later
- * version.
- *
- * This program is distributed in the hope that it will be useful, but WITHOUT
- * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
- * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
- * details.
- *
- * You should have received a copy of the GNU General Public License along with
- * this program. If not, see <http://www.gnu.org/licenses/>.
- */
-
-package krTools.database;
-
-import java.util.Set;
-
-import krTools.KRInterface;
-import krTools.exceptions.KRDatabaseException;
-import krTools.exceptions.KRQueryFailedException;
-import krTools.language.DatabaseFormula;
-import krTools.language.Query;
-import krTools.language.Substitution;
-
-/**
- * A database that contains content represented in the KR language. A database
- * is viewed as a set of {@link DatabaseFormula}s.
- *
- * <p>
- * Also see: {@link KRInterface#getDatabase(java.util.Collection)}.
- * </p>
- */
-public interface Database {
-	/**
-	 * @return The name of the database.
-	 */
-	String getName();
-
-	/**
-	 * Defines the inference mechanism associated with a KRlanguage. The GOAL
-	 * programming language requires that at least this method is specified in
-	 * order to be able to effectively operate with the KR language.
-	 *
-	 * @return Set of substitutions. This set is empty if there are no
-	 *         solutions. If there is a one solution without substitutions,
-	 *         returns set with one empty substitution.
-	 * 
-	 * @throws KRQueryFailedException
-	 *             If performing the query failed for some technical reason.
-	 */
-	Set<Substitution> query(Query query) throws KRQueryFailedException;
-
-	/**
-	 * Inserts a formula into the database.
-	 *
-	 * <p>
-	 * After addition of the formula, the database should entail the information
-	 * added (and, if applicable, no longer entail the information removed from
-	 * the database, e.g., if a negated fact is "inserted" by removing the fact
-	 * from the database).
-	 * </p>
-	 *
-	 * @param formula
-	 *            The database formula to be added. throws KRDatabaseException
-	 *            If formula could not be inserted.
-	 * @return True iff the formula was actually inserted.
-	 *
-	 * @throws KRDatabaseException
-	 *             If something went whilst inserting the formula.
-	 */
-	boolean insert(DatabaseFormula formula) throws KRDatabaseException;
-
-	/**
-	 * Removes a formula from the database.
-	 *
-	 * <p>
-	 * After removal of the formula, in principle, the database should no longer
-	 * entail the information removed from the database and, if applicable,
-	 * entail any information that is added, e.g., when a negated fact is
-	 * "deleted" by adding the fact to the database).
-	 *
-	 * @param formula
-	 *            The formula to be removed.
-	 * @return True iff the formula was actually deleted.
-	 *
-	 * @throws KRDatabaseException
-	 *             If something went whilst deleting the formula.
-	 */
-	boolean delete(DatabaseFormula formula) throws KRDatabaseException;
-
-	/**
-	 * Cleans up a database. Should free all memory used by the database.
-	 *
-	 * @throws KRDatabaseException
-	 *             If something went wrong while bringing the database down.
-	 */
-	void destroy() throws KRDatabaseException;
-}
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.database;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import krTools.KRInterface;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Query;
+import krTools.language.Substitution;
+import krTools.language.Term;
+import krTools.language.Update;
+import krTools.language.Var;
+
+/**
+ * A database that contains content represented in the KR language. A database
+ * is viewed as a set of {@link DatabaseFormula}s.
+ *
+ * <p>
+ * Also see: {@link KRInterface#getDatabase(java.util.Collection)}.
+ * </p>
+ */
+public interface Database {
+	/**
+	 * @return The name of the database.
+	 */
+	String getName();
+
+	/**
+	 * Defines the inference mechanism associated with a KRlanguage. The GOAL
+	 * programming language requires that at least this method is specified in
+	 * order to be able to effectively operate with the KR language.
+	 *
+	 * @return Set of substitutions. This set is empty if there are no
+	 *         solutions. If there is a one solution without substitutions,
+	 *         returns set with one empty substitution.
+	 * 
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed for some technical reason.
+	 */
+	Set<Substitution> query(Query query) throws KRQueryFailedException;
+
+	/**
+	 * Performs a query like {@link #query(Query)}, but only returns the
+	 * bindings of the given variables. Solutions that give the same bindings
+	 * to these variables are returned only once. Implementations that support
+	 * this do not transfer or convert the bindings of the other variables.
+	 * <p>
+	 * The default implementation computes all bindings with
+	 * {@link #query(Query)} first.
+	 * </p>
+	 *
+	 * @param query
+	 *            The query to be performed.
+	 * @param variables
+	 *            The variables whose bindings are needed.
+	 * @return Set of substitutions that only bind (a subset of) the given
+	 *         variables, see {@link #query(Query)}.
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed for some technical reason.
+	 */
+	default Set<Substitution> query(Query query, Collection<Var> variables) throws KRQueryFailedException {
+		Set<Substitution> result = new LinkedHashSet<>();
+		for (Substitution solution : query(query)) {
+			solution.retainAll(variables);
+			result.add(solution);
+		}
+		return result;
+	}
+
+	/**
+	 * Performs a query like {@link #query(Query)}, but returns the solutions
+	 * one at a time. Implementations that support this compute each solution
+	 * only when it is requested, and stop the query as soon as the iterator
+	 * is closed. Unlike {@link #query(Query)}, the same solution may be
+	 * returned more than once.
+	 * <p>
+	 * The default implementation computes all solutions with
+	 * {@link #query(Query)} first.
+	 * </p>
+	 *
+	 * @param query
+	 *            The query to be performed.
+	 * @return An iterator over the solutions of the query. The caller must
+	 *         close it.
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed for some technical reason.
+	 */
+	default SolutionIterator queryIterator(Query query) throws KRQueryFailedException {
+		return SolutionIterator.of(query(query));
+	}
+
+	/**
+	 * Performs a query but only computes its first solution.
+	 *
+	 * @param query
+	 *            The query to be performed.
+	 * @return The first solution of the query, or {@code null} if there are no
+	 *         solutions.
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed for some technical reason.
+	 */
+	default Substitution queryFirst(Query query) throws KRQueryFailedException {
+		try (SolutionIterator solutions = queryIterator(query)) {
+			return solutions.hasNext() ? solutions.next() : null;
+		}
+	}
+
+	/**
+	 * Performs a query but computes at most the given number of (different)
+	 * solutions.
+	 *
+	 * @param query
+	 *            The query to be performed.
+	 * @param limit
+	 *            The maximum number of solutions to compute; not negative.
+	 * @return Set of at most {@code limit} substitutions, see
+	 *         {@link #query(Query)}.
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed for some technical reason.
+	 */
+	default Set<Substitution> queryLimit(Query query, int limit) throws KRQueryFailedException {
+		Set<Substitution> result = new LinkedHashSet<>();
+		try (SolutionIterator solutions = queryIterator(query)) {
+			while (result.size() < limit && solutions.hasNext()) {
+				result.add(solutions.next());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether a query has a solution, without computing its bindings.
+	 *
+	 * @param query
+	 *            The query to be performed.
+	 * @return {@code true} iff the query has at least one solution.
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed for some technical reason.
+	 */
+	default boolean holds(Query query) throws KRQueryFailedException {
+		return queryFirst(query) != null;
+	}
+
+	/**
+	 * Computes an aggregate over all solutions of a query inside the inference
+	 * engine, so that only the result has to be transferred.
+	 *
+	 * @param function
+	 *            The aggregate function.
+	 * @param template
+	 *            The term that is aggregated, usually (an expression over)
+	 *            variables of the query. Ignored for {@link Aggregate#COUNT},
+	 *            and must not be {@code null} for the other functions.
+	 * @param query
+	 *            The query to be performed.
+	 * @return The result of the aggregate function, or {@code null} if it is
+	 *         undefined ({@link Aggregate#MIN} and {@link Aggregate#MAX}
+	 *         without solutions).
+	 * @throws KRQueryFailedException
+	 *             If performing the query failed, or if the database does not
+	 *             support aggregates (which is the default).
+	 * @throws IllegalArgumentException
+	 *             If the template is {@code null} for a function other than
+	 *             {@link Aggregate#COUNT}.
+	 */
+	default Term aggregate(Aggregate function, Term template, Query query) throws KRQueryFailedException {
+		throw new KRQueryFailedException("database " + getName() + " does not support aggregate queries");
+	}
+
+	/**
+	 * Creates a new database with the same content as this one, e.g. to
+	 * reason about the effects of hypothetical updates. Changes to either
+	 * database after the fork are not visible in the other. The new database
+	 * is not static, and should be destroyed when it is no longer needed.
+	 *
+	 * @param name
+	 *            The name of the new database.
+	 * @return The new database.
+	 * @throws KRDatabaseException
+	 *             If the fork could not be created, or if the database does
+	 *             not support forks (which is the default).
+	 */
+	default Database fork(String name) throws KRDatabaseException {
+		throw new KRDatabaseException("database " + getName() + " does not support forks");
+	}
+
+	/**
+	 * Inserts a formula into the database.
+	 *
+	 * <p>
+	 * After addition of the formula, the database should entail the information
+	 * added (and, if applicable, no longer entail the information removed from
+	 * the database, e.g., if a negated fact is "inserted" by removing the fact
+	 * from the database).
+	 * </p>
+	 *
+	 * @param formula
+	 *            The database formula to be added. throws KRDatabaseException
+	 *            If formula could not be inserted.
+	 * @return True iff the formula was actually inserted.
+	 *
+	 * @throws KRDatabaseException
+	 *             If something went whilst inserting the formula.
+	 */
+	boolean insert(DatabaseFormula formula) throws KRDatabaseException;
+
+	/**
+	 * Removes a formula from the database.
+	 *
+	 * <p>
+	 * After removal of the formula, in principle, the database should no longer
+	 * entail the information removed from the database and, if applicable,
+	 * entail any information that is added, e.g., when a negated fact is
+	 * "deleted" by adding the fact to the database).
+	 *
+	 * @param formula
+	 *            The formula to be removed.
+	 * @return True iff the formula was actually deleted.
+	 *
+	 * @throws KRDatabaseException
+	 *             If something went whilst deleting the formula.
+	 */
+	boolean delete(DatabaseFormula formula) throws KRDatabaseException;
+
+	/**
+	 * Applies an update to the database: first deletes the formulas of its
+	 * delete list, then inserts the formulas of its add list. Implementations
+	 * that support this apply the update as a unit: if it fails, the database
+	 * is left as it was.
+	 * <p>
+	 * The default implementation deletes and inserts the formulas one by one
+	 * with {@link #delete(DatabaseFormula)} and
+	 * {@link #insert(DatabaseFormula)}, so a failure may leave the update half
+	 * applied.
+	 * </p>
+	 *
+	 * @param update
+	 *            The update to be applied.
+	 * @throws KRDatabaseException
+	 *             If something went wrong whilst applying the update.
+	 */
+	default void apply(Update update) throws KRDatabaseException {
+		for (DatabaseFormula formula : update.getDeleteList()) {
+			delete(formula);
+		}
+		for (DatabaseFormula formula : update.getAddList()) {
+			insert(formula);
+		}
+	}
+
+	/**
+	 * Cleans up a database. Should free all memory used by the database.
+	 *
+	 * @throws KRDatabaseException
+	 *             If something went wrong while bringing the database down.
+	 */
+	void destroy() throws KRDatabaseException;
+}
@@ -0,0 +1,84 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.database;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.Substitution;
+
+/**
+ * Iterates over the solutions of a query that are computed on demand, see
+ * {@link Database#queryIterator(krTools.language.Query)}.
+ *
+ * <p>
+ * An iterator may hold resources of the inference engine until all solutions
+ * have been returned. Always {@link #close()} an iterator, preferably with a
+ * try-with-resources statement, when not all solutions are needed.
+ * </p>
+ */
+public interface SolutionIterator extends AutoCloseable {
+	/**
+	 * @return {@code true} if there is another solution.
+	 * @throws KRQueryFailedException
+	 *             If computing the next solution failed.
+	 */
+	boolean hasNext() throws KRQueryFailedException;
+
+	/**
+	 * @return The next solution.
+	 * @throws KRQueryFailedException
+	 *             If computing the next solution failed.
+	 * @throws NoSuchElementException
+	 *             If there are no more solutions.
+	 */
+	Substitution next() throws KRQueryFailedException;
+
+	/**
+	 * Stops the query and frees the resources it holds. Does nothing if the
+	 * iterator has been closed already.
+	 */
+	@Override
+	void close();
+
+	/**
+	 * @param solutions
+	 *            A collection of solutions that have already been computed.
+	 * @return An iterator over the given solutions.
+	 */
+	static SolutionIterator of(Collection<Substitution> solutions) {
+		final Iterator<Substitution> iterator = solutions.iterator();
+		return new SolutionIterator() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Substitution next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+}
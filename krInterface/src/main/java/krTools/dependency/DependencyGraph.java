@@ -17,11 +17,16 @@
 
 package krTools.dependency;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import krTools.exceptions.KRException;
 import krTools.language.DatabaseFormula;
@@ -91,6 +96,75 @@ public abstract class DependencyGraph<T extends Expression> {
 	 */
 	public abstract void add(Query query) throws KRException;
 
+	/**
+	 * Returns the signature of the expression that is defined by a formula,
+	 * e.g. the signature of the head of a rule. The default implementation
+	 * returns the signature of the formula itself.
+	 *
+	 * @param formula
+	 *            A formula.
+	 * @return The signature of the expression that the formula defines.
+	 */
+	public String getDefinedSignature(DatabaseFormula formula) {
+		return formula.getSignature();
+	}
+
+	/**
+	 * Returns the signatures of the expressions that are queried by a query,
+	 * like {@link #add(Query)} would store them, without adding them to this
+	 * graph. The default implementation returns null, which means that the
+	 * query may depend on any expression.
+	 *
+	 * @param query
+	 *            A query.
+	 * @return The signatures that are queried, or null if they are unknown.
+	 */
+	public Set<String> getQueriedSignatures(Query query) {
+		return null;
+	}
+
+	/**
+	 * Checks whether the result of a query only depends on the expressions
+	 * that it queries, so that it can be reused until one of these changes.
+	 * The default implementation returns true.
+	 *
+	 * @param query
+	 *            A query.
+	 * @return false if the result of the query may change without a change of
+	 *         the database, e.g. because it reads the clock or another
+	 *         database.
+	 */
+	public boolean isCacheable(Query query) {
+		return true;
+	}
+
+	/**
+	 * Returns the signatures of the expressions that the evaluation of the
+	 * expressions with the given signatures depends on, following the
+	 * dependencies in this graph transitively. Unlike
+	 * {@link Node#getBasicDependencies()}, this includes the expressions that
+	 * are not basic, and the given signatures themselves.
+	 *
+	 * @param signatures
+	 *            Some signatures.
+	 * @return The signatures that they depend on.
+	 */
+	public Set<String> getDependencies(Collection<String> signatures) {
+		Set<String> dependencies = new HashSet<>(signatures);
+		Deque<String> todo = new ArrayDeque<>(dependencies);
+		while (!todo.isEmpty()) {
+			Node<T> node = this.graph.get(todo.pop());
+			if (node != null) {
+				for (Node<T> dependency : node.getDependencies()) {
+					if (dependencies.add(dependency.getSignature())) {
+						todo.push(dependency.getSignature());
+					}
+				}
+			}
+		}
+		return dependencies;
+	}
+
 	/**
 	 * Returns the definitions in the program that are never used.
 	 *
@@ -0,0 +1,35 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+/**
+ * A count of events, such as the number of queries that a database performed.
+ * Obtain one from {@link Metrics#counter(String)}.
+ */
+public interface Counter {
+	/**
+	 * Counts one event.
+	 */
+	void increment();
+
+	/**
+	 * @param count
+	 *            The number of events to count.
+	 */
+	void add(long count);
+}
@@ -0,0 +1,224 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * The metrics that every database backend reports, named
+ * <tt>&lt;backend>.&lt;metric></tt>, e.g. <tt>swiprolog.query.count</tt>:
+ * </p>
+ * <ul>
+ * <li><tt>query.count</tt>, <tt>query.time</tt> and
+ * <tt>query.solutions</tt>: the number of queries, their latency and the
+ * number of solutions they returned;</li>
+ * <li><tt>insert.count</tt> and <tt>delete.count</tt>: the number of formulas
+ * that were inserted and deleted;</li>
+ * <li><tt>flush.size</tt> and <tt>flush.time</tt>: the number of cached write
+ * operations that were performed together, and how long that took;</li>
+ * <li><tt>parse.time</tt>: the time spent parsing source text;</li>
+ * <li><tt>static.hit.count</tt> and <tt>static.miss.count</tt>: the number of
+ * requests for a static database that re-used an existing database, and the
+ * number that created a new one;</li>
+ * <li><tt>lock.wait</tt>: the time spent waiting for access to the inference
+ * engine.</li>
+ * </ul>
+ * <p>
+ * Get the metrics of a backend with {@link #get(String)} at the start of each
+ * operation, so that a provider that is installed later is used too. When no
+ * provider is installed this costs one volatile read, and the instruments do
+ * nothing.
+ * </p>
+ */
+public final class DatabaseMetrics {
+	public static final String QUERY_COUNT = "query.count";
+	public static final String QUERY_TIME = "query.time";
+	public static final String QUERY_SOLUTIONS = "query.solutions";
+	public static final String INSERT_COUNT = "insert.count";
+	public static final String DELETE_COUNT = "delete.count";
+	public static final String FLUSH_SIZE = "flush.size";
+	public static final String FLUSH_TIME = "flush.time";
+	public static final String PARSE_TIME = "parse.time";
+	public static final String LOCK_WAIT = "lock.wait";
+	public static final String STATIC_HITS = "static.hit.count";
+	public static final String STATIC_MISSES = "static.miss.count";
+
+	/**
+	 * The metrics of all backends when no provider has been installed.
+	 */
+	private static final DatabaseMetrics DISABLED = new DatabaseMetrics(NoMetrics.INSTANCE, "");
+	/**
+	 * The metrics of each backend, for the provider they were created with.
+	 */
+	private static final ConcurrentMap<String, DatabaseMetrics> backends = new ConcurrentHashMap<>();
+
+	private final Metrics provider;
+	private final Counter queries;
+	private final Timer queryTime;
+	private final Histogram solutions;
+	private final Counter inserts;
+	private final Counter deletes;
+	private final Histogram flushSize;
+	private final Timer flushTime;
+	private final Timer parseTime;
+	private final Timer lockWait;
+	private final Counter staticHits;
+	private final Counter staticMisses;
+
+	private DatabaseMetrics(Metrics provider, String backend) {
+		this.provider = provider;
+		String prefix = backend + ".";
+		this.queries = provider.counter(prefix + QUERY_COUNT);
+		this.queryTime = provider.timer(prefix + QUERY_TIME);
+		this.solutions = provider.histogram(prefix + QUERY_SOLUTIONS);
+		this.inserts = provider.counter(prefix + INSERT_COUNT);
+		this.deletes = provider.counter(prefix + DELETE_COUNT);
+		this.flushSize = provider.histogram(prefix + FLUSH_SIZE);
+		this.flushTime = provider.timer(prefix + FLUSH_TIME);
+		this.parseTime = provider.timer(prefix + PARSE_TIME);
+		this.lockWait = provider.timer(prefix + LOCK_WAIT);
+		this.staticHits = provider.counter(prefix + STATIC_HITS);
+		this.staticMisses = provider.counter(prefix + STATIC_MISSES);
+	}
+
+	/**
+	 * @param backend
+	 *            The name of a backend, e.g. <tt>swiprolog</tt>.
+	 * @return The metrics of that backend from the installed provider.
+	 */
+	public static DatabaseMetrics get(String backend) {
+		Metrics provider = MetricsRegistry.getMetrics();
+		if (provider == NoMetrics.INSTANCE) {
+			return DISABLED;
+		}
+		DatabaseMetrics metrics = backends.get(backend);
+		if (metrics == null || metrics.provider != provider) {
+			metrics = new DatabaseMetrics(provider, backend);
+			backends.put(backend, metrics);
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return The start of a query, to pass to {@link #endQuery(long, int)}.
+	 */
+	public long startQuery() {
+		return this.queryTime.start();
+	}
+
+	/**
+	 * Records a query that has been performed.
+	 *
+	 * @param start
+	 *            The value of {@link #startQuery()}.
+	 * @param count
+	 *            The number of solutions returned, or -1 if these are not known
+	 *            (yet).
+	 */
+	public void endQuery(long start, int count) {
+		this.queryTime.stop(start);
+		this.queries.increment();
+		if (count >= 0) {
+			this.solutions.record(count);
+		}
+	}
+
+	/**
+	 * @param count
+	 *            The number of formulas that were inserted.
+	 */
+	public void inserted(int count) {
+		this.inserts.add(count);
+	}
+
+	/**
+	 * @param count
+	 *            The number of formulas that were deleted.
+	 */
+	public void deleted(int count) {
+		this.deletes.add(count);
+	}
+
+	/**
+	 * @return The start of a flush of cached writes, to pass to
+	 *         {@link #endFlush(long, int)}.
+	 */
+	public long startFlush() {
+		return this.flushTime.start();
+	}
+
+	/**
+	 * Records a flush of cached writes.
+	 *
+	 * @param start
+	 *            The value of {@link #startFlush()}.
+	 * @param size
+	 *            The number of operations that were performed.
+	 */
+	public void endFlush(long start, int size) {
+		this.flushTime.stop(start);
+		this.flushSize.record(size);
+	}
+
+	/**
+	 * @return The start of parsing, to pass to {@link #endParse(long)}.
+	 */
+	public long startParse() {
+		return this.parseTime.start();
+	}
+
+	/**
+	 * @param start
+	 *            The value of {@link #startParse()}.
+	 */
+	public void endParse(long start) {
+		this.parseTime.stop(start);
+	}
+
+	/**
+	 * @return The start of waiting for a lock, to pass to
+	 *         {@link #endWait(long)}.
+	 */
+	public long startWait() {
+		return this.lockWait.start();
+	}
+
+	/**
+	 * @param start
+	 *            The value of {@link #startWait()}.
+	 */
+	public void endWait(long start) {
+		this.lockWait.stop(start);
+	}
+
+	/**
+	 * Records a request for a static database that re-used an existing one.
+	 */
+	public void staticHit() {
+		this.staticHits.increment();
+	}
+
+	/**
+	 * Records a request for a static database that created a new one.
+	 */
+	public void staticMiss() {
+		this.staticMisses.increment();
+	}
+}
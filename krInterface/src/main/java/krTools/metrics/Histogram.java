@@ -0,0 +1,30 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+/**
+ * Records the distribution of a value, such as the number of solutions of
+ * queries. Obtain one from {@link Metrics#histogram(String)}.
+ */
+public interface Histogram {
+	/**
+	 * @param value
+	 *            The value of one event.
+	 */
+	void record(long value);
+}
@@ -0,0 +1,354 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * {@link Metrics} that exposes each instrument as an MXBean, named
+ * <tt>krTools:type=Counter|Timer|Histogram,name=&lt;name></tt>, so that the
+ * metrics can be watched with e.g. JConsole or VisualVM. Install it with
+ * {@link #install()}.
+ * </p>
+ * <p>
+ * An instrument that is registered under a name that is already in use
+ * replaces the MBean that was registered before, e.g. by a provider that was
+ * installed earlier.
+ * </p>
+ */
+public class JmxMetrics implements Metrics {
+	/**
+	 * The default domain of the MBeans.
+	 */
+	public static final String DOMAIN = "krTools";
+
+	private final MBeanServer server;
+	private final String domain;
+	/**
+	 * The instruments by MBean name.
+	 */
+	private final Map<ObjectName, Object> instruments = new HashMap<>();
+
+	/**
+	 * Exposes the metrics on the platform MBean server in the domain
+	 * {@value #DOMAIN}.
+	 */
+	public JmxMetrics() {
+		this(ManagementFactory.getPlatformMBeanServer(), DOMAIN);
+	}
+
+	/**
+	 * @param server
+	 *            The MBean server to register the instruments with.
+	 * @param domain
+	 *            The domain of the MBean names.
+	 */
+	public JmxMetrics(MBeanServer server, String domain) {
+		this.server = server;
+		this.domain = domain;
+	}
+
+	/**
+	 * Installs a new provider that exposes the metrics on the platform MBean
+	 * server, see {@link MetricsRegistry#setMetrics(Metrics)}.
+	 *
+	 * @return The installed provider.
+	 */
+	public static JmxMetrics install() {
+		JmxMetrics metrics = new JmxMetrics();
+		MetricsRegistry.setMetrics(metrics);
+		return metrics;
+	}
+
+	/**
+	 * @param type
+	 *            The type of an instrument: Counter, Timer or Histogram.
+	 * @param name
+	 *            The name of the instrument.
+	 * @return The name of the MBean of the instrument.
+	 * @throws IllegalArgumentException
+	 *             If the name can not be used in an MBean name.
+	 */
+	public ObjectName getObjectName(String type, String name) {
+		try {
+			return new ObjectName(this.domain + ":type=" + type + ",name=" + name);
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException("'" + name + "' can not be used as name of a metric", e);
+		}
+	}
+
+	@Override
+	public synchronized Counter counter(String name) {
+		ObjectName mbean = getObjectName("Counter", name);
+		Object counter = this.instruments.get(mbean);
+		if (counter == null) {
+			counter = register(mbean, new JmxCounter());
+		}
+		return (Counter) counter;
+	}
+
+	@Override
+	public synchronized Timer timer(String name) {
+		ObjectName mbean = getObjectName("Timer", name);
+		Object timer = this.instruments.get(mbean);
+		if (timer == null) {
+			timer = register(mbean, new JmxTimer());
+		}
+		return (Timer) timer;
+	}
+
+	@Override
+	public synchronized Histogram histogram(String name) {
+		ObjectName mbean = getObjectName("Histogram", name);
+		Object histogram = this.instruments.get(mbean);
+		if (histogram == null) {
+			histogram = register(mbean, new JmxHistogram());
+		}
+		return (Histogram) histogram;
+	}
+
+	/**
+	 * Unregisters the MBeans of all instruments of this provider. The
+	 * instruments themselves keep working.
+	 */
+	public synchronized void close() {
+		for (ObjectName mbean : this.instruments.keySet()) {
+			try {
+				this.server.unregisterMBean(mbean);
+			} catch (InstanceNotFoundException e) {
+				// replaced by another provider.
+			} catch (JMException e) {
+				throw new IllegalStateException("failed to unregister metric " + mbean, e);
+			}
+		}
+		this.instruments.clear();
+	}
+
+	private Object register(ObjectName mbean, Object instrument) {
+		try {
+			try {
+				this.server.registerMBean(instrument, mbean);
+			} catch (InstanceAlreadyExistsException e) {
+				this.server.unregisterMBean(mbean);
+				this.server.registerMBean(instrument, mbean);
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException("failed to register metric " + mbean, e);
+		}
+		this.instruments.put(mbean, instrument);
+		return instrument;
+	}
+
+	/**
+	 * Raises a maximum to the given value if it is larger.
+	 */
+	private static void raise(AtomicLong max, long value) {
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+		}
+	}
+
+	/**
+	 * Lowers a minimum to the given value if it is smaller.
+	 */
+	private static void lower(AtomicLong min, long value) {
+		long current;
+		while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+		}
+	}
+
+	/**
+	 * The attributes of a {@link Counter}.
+	 */
+	public interface CounterMXBean {
+		/**
+		 * @return The number of events.
+		 */
+		long getCount();
+	}
+
+	/**
+	 * The attributes of a {@link Timer}.
+	 */
+	public interface TimerMXBean {
+		/**
+		 * @return The number of events.
+		 */
+		long getCount();
+
+		/**
+		 * @return The total duration of the events in milliseconds.
+		 */
+		double getTotalMillis();
+
+		/**
+		 * @return The mean duration of the events in milliseconds.
+		 */
+		double getMeanMillis();
+
+		/**
+		 * @return The longest duration of an event in milliseconds.
+		 */
+		double getMaxMillis();
+	}
+
+	/**
+	 * The attributes of a {@link Histogram}.
+	 */
+	public interface HistogramMXBean {
+		/**
+		 * @return The number of events.
+		 */
+		long getCount();
+
+		/**
+		 * @return The sum of the values.
+		 */
+		long getSum();
+
+		/**
+		 * @return The mean value.
+		 */
+		double getMean();
+
+		/**
+		 * @return The smallest value, or 0 if there were no events.
+		 */
+		long getMin();
+
+		/**
+		 * @return The largest value, or 0 if there were no events.
+		 */
+		long getMax();
+	}
+
+	private static class JmxCounter implements Counter, CounterMXBean {
+		private final AtomicLong count = new AtomicLong();
+
+		@Override
+		public void increment() {
+			this.count.incrementAndGet();
+		}
+
+		@Override
+		public void add(long value) {
+			this.count.addAndGet(value);
+		}
+
+		@Override
+		public long getCount() {
+			return this.count.get();
+		}
+	}
+
+	private static class JmxTimer implements Timer, TimerMXBean {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		@Override
+		public long start() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void stop(long start) {
+			record(System.nanoTime() - start);
+		}
+
+		@Override
+		public void record(long nanos) {
+			this.count.incrementAndGet();
+			this.total.addAndGet(nanos);
+			raise(this.max, nanos);
+		}
+
+		@Override
+		public long getCount() {
+			return this.count.get();
+		}
+
+		@Override
+		public double getTotalMillis() {
+			return this.total.get() / 1e6;
+		}
+
+		@Override
+		public double getMeanMillis() {
+			long n = this.count.get();
+			return (n == 0) ? 0 : getTotalMillis() / n;
+		}
+
+		@Override
+		public double getMaxMillis() {
+			return this.max.get() / 1e6;
+		}
+	}
+
+	private static class JmxHistogram implements Histogram, HistogramMXBean {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+		@Override
+		public void record(long value) {
+			this.count.incrementAndGet();
+			this.sum.addAndGet(value);
+			lower(this.min, value);
+			raise(this.max, value);
+		}
+
+		@Override
+		public long getCount() {
+			return this.count.get();
+		}
+
+		@Override
+		public long getSum() {
+			return this.sum.get();
+		}
+
+		@Override
+		public double getMean() {
+			long n = this.count.get();
+			return (n == 0) ? 0 : (double) this.sum.get() / n;
+		}
+
+		@Override
+		public long getMin() {
+			return (this.count.get() == 0) ? 0 : this.min.get();
+		}
+
+		@Override
+		public long getMax() {
+			return (this.count.get() == 0) ? 0 : this.max.get();
+		}
+	}
+}
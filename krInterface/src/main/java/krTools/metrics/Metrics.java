@@ -0,0 +1,56 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+/**
+ * <p>
+ * A provider of metrics, for the knowledge representation tools to report
+ * what they are doing, e.g. how many queries a database performed and how long
+ * they took. Install a provider with {@link MetricsRegistry#setMetrics(Metrics)};
+ * {@link JmxMetrics} exposes the metrics as JMX MBeans. Until a provider is
+ * installed, the metrics are not recorded at all.
+ * </p>
+ * <p>
+ * Metrics are identified by a dot separated name, such as
+ * <tt>swiprolog.query.time</tt>. A provider must return the same instrument
+ * each time it is asked for the same name, and its instruments must be thread
+ * safe.
+ * </p>
+ */
+public interface Metrics {
+	/**
+	 * @param name
+	 *            The name of a counter.
+	 * @return The counter with that name.
+	 */
+	Counter counter(String name);
+
+	/**
+	 * @param name
+	 *            The name of a timer.
+	 * @return The timer with that name.
+	 */
+	Timer timer(String name);
+
+	/**
+	 * @param name
+	 *            The name of a histogram.
+	 * @return The histogram with that name.
+	 */
+	Histogram histogram(String name);
+}
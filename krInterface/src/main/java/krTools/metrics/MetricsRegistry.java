@@ -0,0 +1,61 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+/**
+ * Holds the {@link Metrics} provider that is used by all knowledge
+ * representation tools in this JVM.
+ */
+public final class MetricsRegistry {
+	/**
+	 * The installed provider.
+	 */
+	private static volatile Metrics metrics = NoMetrics.INSTANCE;
+
+	/**
+	 * This is a utility class.
+	 */
+	private MetricsRegistry() {
+	}
+
+	/**
+	 * @return The installed provider; a provider that ignores all events if
+	 *         none has been installed.
+	 */
+	public static Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Installs a provider. Instruments that were obtained from the previous
+	 * provider are not moved to the new one.
+	 *
+	 * @param provider
+	 *            The provider to use, or null to stop recording metrics.
+	 */
+	public static void setMetrics(Metrics provider) {
+		metrics = (provider == null) ? NoMetrics.INSTANCE : provider;
+	}
+
+	/**
+	 * @return true iff a provider has been installed.
+	 */
+	public static boolean isEnabled() {
+		return metrics != NoMetrics.INSTANCE;
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+/**
+ * The {@link Metrics} that are used when no provider has been installed; all
+ * instruments are this same object, which ignores all events.
+ */
+final class NoMetrics implements Metrics, Counter, Timer, Histogram {
+	static final NoMetrics INSTANCE = new NoMetrics();
+
+	private NoMetrics() {
+	}
+
+	@Override
+	public Counter counter(String name) {
+		return this;
+	}
+
+	@Override
+	public Timer timer(String name) {
+		return this;
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		return this;
+	}
+
+	@Override
+	public void increment() {
+	}
+
+	@Override
+	public void add(long count) {
+	}
+
+	@Override
+	public long start() {
+		return 0;
+	}
+
+	@Override
+	public void stop(long start) {
+	}
+
+	@Override
+	public void record(long value) {
+	}
+}
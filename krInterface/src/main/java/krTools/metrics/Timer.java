@@ -0,0 +1,52 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package krTools.metrics;
+
+/**
+ * Measures the duration of events, such as the latency of queries. Obtain one
+ * from {@link Metrics#timer(String)}, and use it as in
+ *
+ * <pre>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ *
+ * so that a timer that is disabled does not even read the clock.
+ */
+public interface Timer {
+	/**
+	 * @return The start of an event, to pass to {@link #stop(long)}.
+	 */
+	long start();
+
+	/**
+	 * Records the duration of an event.
+	 *
+	 * @param start
+	 *            The value that {@link #start()} returned when the event
+	 *            started.
+	 */
+	void stop(long start);
+
+	/**
+	 * @param nanos
+	 *            The duration of an event in nanoseconds.
+	 */
+	void record(long nanos);
+}
@@ -25,8 +25,13 @@ import krTools.language.DatabaseFormula;
 import krTools.language.Query;
 import krTools.language.Substitution;
 import krTools.language.Update;
+import krTools.metrics.DatabaseMetrics;
 
 public class JasonDatabase implements Database {
+	/**
+	 * Name of this backend in the {@link DatabaseMetrics}.
+	 */
+	public static final String BACKEND = "jason";
 
 	private static long uniqueNumberCounter = 0;
 	private final String name;
@@ -69,6 +74,8 @@ public class JasonDatabase implements Database {
 		 * {@link Utils#isQuery}.
 		 */
 		Term term = ((JasonQuery) query).getJasonTerm();
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
 		Iterator<Unifier> result = ((LogicalFormula) term).logicalConsequence(
 				database, new Unifier());
 
@@ -76,13 +83,15 @@ public class JasonDatabase implements Database {
 		while (result.hasNext()) {
 			solutions.add(new JasonSubstitution(result.next()));
 		}
+		metrics.endQuery(start, solutions.size());
 		return solutions;
 	}
 
 	@Override
 	public void insert(DatabaseFormula formula) throws KRDatabaseException {
-		database.add(((JasonDatabaseFormula) formula).getJasonLiteral());
-
+		if (database.add(((JasonDatabaseFormula) formula).getJasonLiteral())) {
+			DatabaseMetrics.get(BACKEND).inserted(1);
+		}
 	}
 
 	@Override
@@ -97,8 +106,9 @@ public class JasonDatabase implements Database {
 
 	@Override
 	public void delete(DatabaseFormula formula) throws KRDatabaseException {
-		database.remove(((JasonDatabaseFormula) formula).getJasonLiteral());
-
+		if (database.remove(((JasonDatabaseFormula) formula).getJasonLiteral())) {
+			DatabaseMetrics.get(BACKEND).deleted(1);
+		}
 	}
 
 	@Override
@@ -17,6 +17,7 @@ import krTools.language.Query;
 import krTools.language.Substitution;
 import krTools.language.Term;
 import krTools.language.Update;
+import krTools.metrics.DatabaseMetrics;
 
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
@@ -66,6 +67,10 @@ import com.complexible.common.rdf.model.StardogValueFactory.RDF;
 import com.google.common.base.Optional;
 
 public class OWLOntologyDatabase implements Database {
+	/**
+	 * Name of this backend in the {@link DatabaseMetrics}.
+	 */
+	public static final String BACKEND = "owlrepo";
 
 	private boolean SHARED_MODE = false;
 	private String name, baseURI;
@@ -271,6 +276,8 @@ public class OWLOntologyDatabase implements Database {
 //		System.out.println("\nQUERYING:::: \n"
 //				+ queryString.substring(queryString.lastIndexOf("PREFIX")));
 
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
 		try {
 			QueryResult rdfresult = null;
 			rdfresult = getCurrentDb().query(queryString);
@@ -322,6 +329,7 @@ public class OWLOntologyDatabase implements Database {
 			throw new KRQueryFailedException(e.getMessage());
 		}
 
+		metrics.endQuery(start, qresult.size());
 		return qresult;
 	}
 	
@@ -366,6 +374,7 @@ public class OWLOntologyDatabase implements Database {
 //			System.out.println("ST: "+st);
 		
 		insert(statements, res);
+		DatabaseMetrics.get(BACKEND).inserted(1);
 	}
 	
 	private Resource getResource(String id){
@@ -611,6 +620,7 @@ public class OWLOntologyDatabase implements Database {
 		// for (Statement st : statements)
 	//	System.out.println("\nDELETING::: " + formula + " from " + id);
 		delete(statements, res);
+		DatabaseMetrics.get(BACKEND).deleted(1);
 	}
 
 	@Override
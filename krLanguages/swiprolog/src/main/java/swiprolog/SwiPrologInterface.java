@@ -20,8 +20,11 @@ package swiprolog;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +40,7 @@ import krTools.language.Query;
 import krTools.language.Substitution;
 import krTools.language.Term;
 import krTools.language.Var;
+import krTools.metrics.DatabaseMetrics;
 import krTools.parser.Parser;
 import krTools.parser.SourceInfo;
 import swiprolog.database.PrologDatabase;
@@ -55,6 +59,25 @@ public final class SwiPrologInterface implements KRInterface {
 	 * from the map.
 	 */
 	private Map<String, PrologDatabase> databases = new ConcurrentHashMap<>();
+	/**
+	 * The static databases, by the fingerprint of their content (see
+	 * {@link #fingerprint(Set)}). Different contents can have the same
+	 * fingerprint, so each fingerprint has a list of databases.
+	 */
+	private final Map<Long, List<PrologDatabase>> staticDatabases = new HashMap<>();
+	/**
+	 * The number of requests for a static database that re-used an existing
+	 * one, and the number that created a new one.
+	 */
+	private long staticHits = 0;
+	private long staticMisses = 0;
+	/**
+	 * The limits of the queries on new databases, see
+	 * {@link PrologDatabase#setInferenceLimit(long)} and
+	 * {@link PrologDatabase#setTimeLimit(double)}; 0 means no limit.
+	 */
+	private long defaultInferenceLimit = 0;
+	private double defaultTimeLimit = 0;
 
 	/**
 	 * See {@link SwiInstaller#init(boolean)}.
@@ -87,42 +110,186 @@ public final class SwiPrologInterface implements KRInterface {
 	@Override
 	public Database getDatabase(String name, Collection<DatabaseFormula> content, boolean isStatic)
 			throws KRDatabaseException {
-		PrologDatabase database = null;
 		if (isStatic) {
-			database = getExistingStaticDatabase(new HashSet<DatabaseFormula>(content));
+			return getStaticDatabase(name, content);
 		}
+		PrologDatabase database = new PrologDatabase(name, content, this, isStatic);
+		// Add database to list of databases maintained by SWI Prolog and
+		// associated with name.
+		this.databases.put(name, database);
+		return database;
+	}
+
+	/**
+	 * Returns an existing static database with the given content, or creates
+	 * one if there is none.
+	 *
+	 * @param name
+	 *            the name for a new database.
+	 * @param content
+	 *            the content of the database.
+	 * @return a static database with the given content.
+	 * @throws KRDatabaseException
+	 */
+	private synchronized PrologDatabase getStaticDatabase(String name, Collection<DatabaseFormula> content)
+			throws KRDatabaseException {
+		Set<DatabaseFormula> formulas = (content instanceof Set) ? (Set<DatabaseFormula>) content
+				: new LinkedHashSet<>(content);
+		Long fingerprint = fingerprint(formulas);
+		PrologDatabase database = getExistingStaticDatabase(fingerprint, formulas);
 		if (database == null) {
-			database = new PrologDatabase(name, content, this, isStatic);
-			// Add database to list of databases maintained by SWI Prolog and
-			// associated with name.
+			this.staticMisses++;
+			DatabaseMetrics.get(PrologDatabase.BACKEND).staticMiss();
+			database = new PrologDatabase(name, content, this, true);
 			this.databases.put(name, database);
+			List<PrologDatabase> candidates = this.staticDatabases.get(fingerprint);
+			if (candidates == null) {
+				candidates = new ArrayList<>(1);
+				this.staticDatabases.put(fingerprint, candidates);
+			}
+			candidates.add(database);
+		} else {
+			this.staticHits++;
+			DatabaseMetrics.get(PrologDatabase.BACKEND).staticHit();
 		}
 		return database;
 	}
 
 	/**
-	 * 
+	 * @param fingerprint
+	 *            the fingerprint of the content.
 	 * @param content
 	 *            the content you're looking for.
 	 * @return existing static database with this content, or null if no such
 	 *         database exists.
 	 */
-	private PrologDatabase getExistingStaticDatabase(Set<DatabaseFormula> content) {
-		for (PrologDatabase db : databases.values()) {
-			if (!db.isStatic())
-				continue;
-			if (db.getTheory().getFormulas().equals(content))
-				return db;
+	private PrologDatabase getExistingStaticDatabase(Long fingerprint, Set<DatabaseFormula> content) {
+		List<PrologDatabase> candidates = this.staticDatabases.get(fingerprint);
+		if (candidates != null) {
+			for (PrologDatabase db : candidates) {
+				if (db.getTheory().getFormulas().equals(content)) {
+					return db;
+				}
+			}
 		}
 		return null;
 	}
 
+	/**
+	 * @param content
+	 *            the content of a database.
+	 * @return a fingerprint of the content that does not depend on the order
+	 *         of the formulas: the size of the content and the (order
+	 *         independent) hash code of the set.
+	 */
+	private static Long fingerprint(Set<DatabaseFormula> content) {
+		return ((long) content.size() << 32) | (content.hashCode() & 0xffffffffL);
+	}
+
+	/**
+	 * @return the number of requests for a static database that re-used an
+	 *         existing database.
+	 */
+	public synchronized long getStaticDatabaseHits() {
+		return this.staticHits;
+	}
+
+	/**
+	 * @return the number of requests for a static database that created a new
+	 *         database.
+	 */
+	public synchronized long getStaticDatabaseMisses() {
+		return this.staticMisses;
+	}
+
+	/**
+	 * @return the fraction of the requests for a static database that re-used
+	 *         an existing database, or 0 if there were no requests.
+	 */
+	public synchronized double getStaticDatabaseHitRate() {
+		long requests = this.staticHits + this.staticMisses;
+		return (requests == 0) ? 0 : (double) this.staticHits / requests;
+	}
+
+	/**
+	 * @return the maximum number of inferences to compute a solution of a
+	 *         query on the databases that are created from now on, or 0 for
+	 *         no limit.
+	 */
+	public synchronized long getDefaultInferenceLimit() {
+		return this.defaultInferenceLimit;
+	}
+
+	/**
+	 * Sets the inference limit of the databases that are created from now on,
+	 * see {@link PrologDatabase#setInferenceLimit(long)}.
+	 *
+	 * @param limit
+	 *            the maximum number of inferences to compute a solution of a
+	 *            query, or 0 for no limit.
+	 */
+	public synchronized void setDefaultInferenceLimit(long limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("the inference limit should not be negative but is " + limit);
+		}
+		this.defaultInferenceLimit = limit;
+	}
+
+	/**
+	 * @return the maximum wall-clock time of a query on the databases that are
+	 *         created from now on in seconds, or 0 for no limit.
+	 */
+	public synchronized double getDefaultTimeLimit() {
+		return this.defaultTimeLimit;
+	}
+
+	/**
+	 * Sets the time limit of the databases that are created from now on, see
+	 * {@link PrologDatabase#setTimeLimit(double)}.
+	 *
+	 * @param limit
+	 *            the maximum wall-clock time of a query in seconds, or 0 for no
+	 *            limit.
+	 */
+	public synchronized void setDefaultTimeLimit(double limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("the time limit should not be negative but is " + limit);
+		}
+		this.defaultTimeLimit = limit;
+	}
+
+	/**
+	 * Adds a database that was not created by this interface, e.g. a fork.
+	 *
+	 * @param db
+	 */
+	public void addDatabase(PrologDatabase db) {
+		this.databases.put(db.getName(), db);
+	}
+
 	/**
 	 *
 	 * @param db
 	 */
 	public void removeDatabase(PrologDatabase db) {
 		this.databases.remove(db.getName());
+		if (db.isStatic()) {
+			synchronized (this) {
+				Long fingerprint = fingerprint(db.getTheory().getFormulas());
+				List<PrologDatabase> candidates = this.staticDatabases.get(fingerprint);
+				if (candidates != null) {
+					Iterator<PrologDatabase> iterator = candidates.iterator();
+					while (iterator.hasNext()) {
+						if (iterator.next() == db) {
+							iterator.remove();
+						}
+					}
+					if (candidates.isEmpty()) {
+						this.staticDatabases.remove(fingerprint);
+					}
+				}
+			}
+		}
 	}
 
 	@Override
@@ -146,6 +313,9 @@ public final class SwiPrologInterface implements KRInterface {
 			db.destroy();
 		}
 		this.databases.clear();
+		synchronized (this) {
+			this.staticDatabases.clear();
+		}
 	}
 
 	@Override
@@ -0,0 +1,158 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.database;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import krTools.exceptions.KRQueryFailedException;
+import krTools.metrics.DatabaseMetrics;
+
+/**
+ * Bounds the number of SWI Prolog engines that are in use at the same time.
+ * <p>
+ * JPL attaches a pool engine to the calling thread when a query is opened and
+ * releases it again when the query is closed. Each call into SWI therefore
+ * takes a permit from this pool for its full duration, and runs on the calling
+ * thread only, so that the engine never moves between threads while the query
+ * is open. A thread that already holds a permit (e.g. a flush issued as part
+ * of a query) does not take a second one.
+ * </p>
+ * <p>
+ * A pool of size 1 gives the old behaviour of one query at a time in the whole
+ * JVM.
+ * </p>
+ */
+public final class EnginePool {
+	/**
+	 * Upper bound for the default pool size.
+	 */
+	private static final int DEFAULT_MAX = 16;
+	/**
+	 * The available engines.
+	 */
+	private static final Engines engines = new Engines(defaultSize());
+	/**
+	 * The configured number of engines.
+	 */
+	private static int size = engines.availablePermits();
+	/**
+	 * Number of (nested) permits held by the current thread.
+	 */
+	private static final ThreadLocal<int[]> held = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	/**
+	 * This is a utility class.
+	 */
+	private EnginePool() {
+	}
+
+	/**
+	 * @return the number of engines that can be used at the same time.
+	 */
+	public static synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * Changes the number of engines that can be used at the same time. Queries
+	 * that are running keep their engine; a smaller size takes effect as these
+	 * queries finish.
+	 *
+	 * @param newSize
+	 *            the new number of engines; at least 1.
+	 */
+	public static synchronized void setSize(int newSize) {
+		if (newSize < 1) {
+			throw new IllegalArgumentException("engine pool size must be at least 1 but is " + newSize);
+		}
+		if (newSize > size) {
+			engines.release(newSize - size);
+		} else if (newSize < size) {
+			engines.reducePermits(size - newSize);
+		}
+		size = newSize;
+	}
+
+	/**
+	 * Takes an engine from the pool, waiting for one to become available if
+	 * needed. Every call must be paired with a call to {@link #release()} on the
+	 * same thread. The time spent waiting is recorded as
+	 * {@link DatabaseMetrics#LOCK_WAIT}.
+	 *
+	 * @throws KRQueryFailedException
+	 *             if the thread was interrupted while waiting.
+	 */
+	static void acquire() throws KRQueryFailedException {
+		int[] count = held.get();
+		if (count[0] == 0) {
+			try {
+				// unlike tryAcquire(), this respects the fairness of the pool.
+				if (!engines.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+					DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+					long start = metrics.startWait();
+					engines.acquire();
+					metrics.endWait(start);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KRQueryFailedException("interrupted while waiting for a SWI prolog engine", e);
+			}
+		}
+		count[0]++;
+	}
+
+	/**
+	 * Returns an engine taken with {@link #acquire()} to the pool.
+	 */
+	static void release() {
+		int[] count = held.get();
+		if (--count[0] == 0) {
+			engines.release();
+		}
+	}
+
+	/**
+	 * @return the default pool size: the number of available processors, but
+	 *         not more than {@link #DEFAULT_MAX}.
+	 */
+	private static int defaultSize() {
+		return Math.max(1, Math.min(DEFAULT_MAX, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * A fair semaphore that can also shrink.
+	 */
+	private static class Engines extends Semaphore {
+		private static final long serialVersionUID = -2806180442541930717L;
+
+		Engines(int permits) {
+			super(permits, true);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import krTools.language.Term;
+import krTools.language.Var;
+import swiprolog.language.PrologCompound;
+
+/**
+ * Observes how the queries on a database look up its predicates, and advises
+ * which indexes SWI Prolog should keep for them.
+ * <p>
+ * SWI Prolog always indexes the clauses of a predicate on their first argument.
+ * A lookup with a bound first argument is therefore counted as a hit, as is a
+ * lookup with bound arguments that include those of a declared index (see
+ * {@link PrologDatabase#index(String, int...)}). Other lookups with bound
+ * arguments are misses: SWI Prolog then creates an index on the fly while the
+ * query waits, or scans all clauses. Lookups without bound arguments are not
+ * counted, as no index can help them.
+ * </p>
+ * <p>
+ * An index is advised for the bound arguments of a lookup that missed at least
+ * {@link #getMinLookups()} times, on a predicate with at least
+ * {@link #getMinClauses()} formulas in the theory of the database.
+ * </p>
+ */
+public class IndexAdvisor {
+	/**
+	 * Default for {@link #getMinClauses()}.
+	 */
+	public static final int DEFAULT_MIN_CLAUSES = 64;
+	/**
+	 * Default for {@link #getMinLookups()}.
+	 */
+	public static final int DEFAULT_MIN_LOOKUPS = 8;
+	private static int minClauses = DEFAULT_MIN_CLAUSES;
+	private static int minLookups = DEFAULT_MIN_LOOKUPS;
+	/**
+	 * The theory of the database, for the number of formulas per signature.
+	 */
+	private final Theory theory;
+	/**
+	 * The declared indexes, by signature.
+	 */
+	private final Map<String, Set<Index>> declared = new HashMap<>();
+	/**
+	 * The number of lookups that missed, by the index that would have served
+	 * them.
+	 */
+	private final Map<Index, Integer> missed = new HashMap<>();
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * @param theory
+	 *            The theory of the database whose lookups are observed.
+	 */
+	public IndexAdvisor(Theory theory) {
+		this.theory = theory;
+	}
+
+	/**
+	 * Records the lookups of the predicates of the database by a query. The
+	 * query is traversed through conjunctions, disjunctions, negations and the
+	 * usual meta predicates.
+	 *
+	 * @param query
+	 *            The query (without the module of the database).
+	 * @return true iff a lookup missed.
+	 */
+	public synchronized boolean observe(PrologCompound query) {
+		long before = this.misses;
+		observeGoal(query);
+		return this.misses > before;
+	}
+
+	private void observeGoal(Term term) {
+		if (!(term instanceof PrologCompound)) {
+			return;
+		}
+		PrologCompound goal = (PrologCompound) term;
+		switch (goal.getSignature()) {
+		case ",/2":
+		case ";/2":
+		case "->/2":
+		case "*->/2":
+		case "forall/2":
+			observeGoal(goal.getArg(0));
+			observeGoal(goal.getArg(1));
+			break;
+		case "not/1":
+		case "\\+/1":
+		case "once/1":
+		case "ignore/1":
+		case "call/1":
+			observeGoal(goal.getArg(0));
+			break;
+		case "findall/3":
+		case "findall/4":
+		case "aggregate_all/3":
+		case "setof/3":
+		case "bagof/3":
+		case "distinct/2":
+			observeGoal(goal.getArg(1));
+			break;
+		case "aggregate_all/4":
+			observeGoal(goal.getArg(2));
+			break;
+		default:
+			observeLookup(goal);
+		}
+	}
+
+	private void observeLookup(PrologCompound goal) {
+		if (goal.getArity() == 0 || this.theory.getCount(goal.getSignature()) == 0) {
+			return;
+		}
+		List<Integer> bound = new ArrayList<>(goal.getArity());
+		for (int i = 0; i < goal.getArity(); i++) {
+			if (!(goal.getArg(i) instanceof Var)) {
+				bound.add(i + 1);
+			}
+		}
+		if (bound.isEmpty()) {
+			return;
+		} else if (bound.get(0) == 1) {
+			this.hits++;
+			return;
+		}
+		Set<Index> indexes = this.declared.get(goal.getSignature());
+		if (indexes != null) {
+			for (Index index : indexes) {
+				if (index.isCoveredBy(bound)) {
+					this.hits++;
+					return;
+				}
+			}
+		}
+		int[] arguments = new int[bound.size()];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = bound.get(i);
+		}
+		Index index = new Index(goal.getSignature(), arguments);
+		Integer count = this.missed.get(index);
+		this.missed.put(index, (count == null) ? 1 : count + 1);
+		this.misses++;
+	}
+
+	/**
+	 * Records that an index has been declared.
+	 *
+	 * @param index
+	 *            The index.
+	 * @return true iff the index was not declared yet.
+	 */
+	public synchronized boolean declare(Index index) {
+		Set<Index> indexes = this.declared.get(index.getSignature());
+		if (indexes == null) {
+			indexes = new LinkedHashSet<>();
+			this.declared.put(index.getSignature(), indexes);
+		}
+		this.missed.remove(index);
+		return indexes.add(index);
+	}
+
+	/**
+	 * @param signature
+	 *            A signature, e.g. p/1.
+	 * @return The indexes that have been declared for the predicate.
+	 */
+	public synchronized Set<Index> getDeclared(String signature) {
+		Set<Index> indexes = this.declared.get(signature);
+		return (indexes == null) ? Collections.<Index>emptySet() : new LinkedHashSet<>(indexes);
+	}
+
+	/**
+	 * @param signature
+	 *            A signature, e.g. p/1.
+	 * @return true iff an index has been declared for the predicate.
+	 */
+	public synchronized boolean isIndexed(String signature) {
+		return this.declared.containsKey(signature);
+	}
+
+	/**
+	 * @return All indexes that have been declared.
+	 */
+	public synchronized Set<Index> getDeclared() {
+		Set<Index> indexes = new LinkedHashSet<>();
+		for (Set<Index> signature : this.declared.values()) {
+			indexes.addAll(signature);
+		}
+		return indexes;
+	}
+
+	/**
+	 * @return The indexes that are advised, most missed first.
+	 */
+	public synchronized List<Index> advise() {
+		final Map<Index, Integer> advised = new HashMap<>();
+		for (Entry<Index, Integer> lookup : this.missed.entrySet()) {
+			if (lookup.getValue() >= getMinLookups()
+					&& this.theory.getCount(lookup.getKey().getSignature()) >= getMinClauses()) {
+				advised.put(lookup.getKey(), lookup.getValue());
+			}
+		}
+		List<Index> indexes = new ArrayList<>(advised.keySet());
+		Collections.sort(indexes, new Comparator<Index>() {
+			@Override
+			public int compare(Index index1, Index index2) {
+				return advised.get(index2) - advised.get(index1);
+			}
+		});
+		return indexes;
+	}
+
+	/**
+	 * @return The number of lookups that were served by the first argument or
+	 *         a declared index.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return The number of lookups with bound arguments that were not served
+	 *         by the first argument or a declared index.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return The fraction of the counted lookups that were hits, or 0 if
+	 *         there were none.
+	 */
+	public synchronized double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return (lookups == 0) ? 0 : (double) this.hits / lookups;
+	}
+
+	/**
+	 * @return The minimum number of formulas of a predicate for which an index
+	 *         is advised.
+	 */
+	public static synchronized int getMinClauses() {
+		return minClauses;
+	}
+
+	/**
+	 * @param clauses
+	 *            The minimum number of formulas of a predicate for which an
+	 *            index is advised, at least 1.
+	 */
+	public static synchronized void setMinClauses(int clauses) {
+		if (clauses < 1) {
+			throw new IllegalArgumentException("the minimum number of clauses should be at least 1 but is " + clauses);
+		}
+		minClauses = clauses;
+	}
+
+	/**
+	 * @return The minimum number of lookups that missed before an index is
+	 *         advised for them.
+	 */
+	public static synchronized int getMinLookups() {
+		return minLookups;
+	}
+
+	/**
+	 * @param lookups
+	 *            The minimum number of lookups that missed before an index is
+	 *            advised for them, at least 1.
+	 */
+	public static synchronized void setMinLookups(int lookups) {
+		if (lookups < 1) {
+			throw new IllegalArgumentException("the minimum number of lookups should be at least 1 but is " + lookups);
+		}
+		minLookups = lookups;
+	}
+
+	/**
+	 * An index on one or more arguments of a predicate.
+	 */
+	public static final class Index {
+		private final String signature;
+		private final int[] arguments;
+
+		/**
+		 * @param signature
+		 *            The signature of the predicate, e.g. p/3.
+		 * @param arguments
+		 *            The positions of the indexed arguments, starting at 1, in
+		 *            increasing order.
+		 */
+		public Index(String signature, int... arguments) {
+			int arity;
+			try {
+				arity = Integer.parseInt(signature.substring(signature.lastIndexOf('/') + 1));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("'" + signature + "' is not a signature", e);
+			}
+			if (arguments.length == 0) {
+				throw new IllegalArgumentException("an index of " + signature + " needs at least one argument");
+			}
+			for (int i = 0; i < arguments.length; i++) {
+				if (arguments[i] < 1 || arguments[i] > arity || (i > 0 && arguments[i] <= arguments[i - 1])) {
+					throw new IllegalArgumentException(
+							"the arguments " + Arrays.toString(arguments) + " are not increasing positions of " + signature);
+				}
+			}
+			this.signature = signature;
+			this.arguments = arguments.clone();
+		}
+
+		public String getSignature() {
+			return this.signature;
+		}
+
+		/**
+		 * @return The positions of the indexed arguments, starting at 1.
+		 */
+		public int[] getArguments() {
+			return this.arguments.clone();
+		}
+
+		/**
+		 * @param bound
+		 *            The positions of the arguments that are bound by a lookup.
+		 * @return true iff the index can serve the lookup.
+		 */
+		boolean isCoveredBy(List<Integer> bound) {
+			for (int argument : this.arguments) {
+				if (!bound.contains(argument)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.signature.hashCode() + Arrays.hashCode(this.arguments);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Index)) {
+				return false;
+			}
+			Index other = (Index) obj;
+			return this.signature.equals(other.signature) && Arrays.equals(this.arguments, other.arguments);
+		}
+
+		@Override
+		public String toString() {
+			return this.signature + Arrays.toString(this.arguments);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.database;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.jpl7.JPL;
+
+/**
+ * Writes write operations (see {@link PrologDatabase}) to a temporary file,
+ * one term per line, so that SWI Prolog can read and perform all of them with
+ * a single call instead of receiving each of them through JPL.
+ * <p>
+ * Terms are written in canonical syntax, like write_canonical/1 does: without
+ * operators, with all atoms quoted, and lists in bracket notation, so that they
+ * are read back exactly whatever operators are defined.
+ * </p>
+ */
+final class OperationFile {
+	/**
+	 * This is a utility class.
+	 */
+	private OperationFile() {
+	}
+
+	/**
+	 * @param operations
+	 *            Some operations.
+	 * @return A new temporary file with the operations, which is deleted when
+	 *         the JVM exits if it still exists.
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	static File write(List<org.jpl7.Term> operations) throws IOException {
+		File file = File.createTempFile("kr_load", ".pl");
+		file.deleteOnExit();
+		try (Writer out = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			StringBuilder line = new StringBuilder();
+			for (org.jpl7.Term operation : operations) {
+				line.setLength(0);
+				append(operation, line);
+				line.append(".\n");
+				out.append(line);
+			}
+		} catch (IOException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+		return file;
+	}
+
+	/**
+	 * Appends a term in canonical syntax.
+	 *
+	 * @param term
+	 *            A term.
+	 * @param out
+	 *            The text to append to.
+	 * @throws IllegalArgumentException
+	 *             If the term is not an atom, number, variable or compound.
+	 */
+	static void append(org.jpl7.Term term, StringBuilder out) {
+		if (term.isAtom()) {
+			org.jpl7.Atom atom = (org.jpl7.Atom) term;
+			if ("reserved_symbol".equals(atom.atomType())) {
+				// [] and {}, which differ from the quoted atoms '[]' and '{}'.
+				out.append(atom.name());
+			} else if ("string".equals(atom.atomType())) {
+				appendQuoted(atom.name(), '"', out);
+			} else {
+				appendQuoted(atom.name(), '\'', out);
+			}
+		} else if (term.isCompound()) {
+			if (isListPair(term)) {
+				appendList(term, out);
+				return;
+			}
+			appendQuoted(term.name(), '\'', out);
+			out.append('(');
+			for (int i = 1; i <= term.arity(); i++) {
+				if (i > 1) {
+					out.append(',');
+				}
+				append(term.arg(i), out);
+			}
+			out.append(')');
+		} else if (term.isInteger()) {
+			org.jpl7.Integer integer = (org.jpl7.Integer) term;
+			out.append(integer.isBig() ? integer.bigValue().toString() : Long.toString(integer.longValue()));
+		} else if (term.isFloat()) {
+			appendFloat(term.doubleValue(), out);
+		} else if (term.isVariable()) {
+			out.append(term.name());
+		} else {
+			throw new IllegalArgumentException("can not write '" + term + "' to a file");
+		}
+	}
+
+	/**
+	 * Appends a list iteratively, so that long lists do not need a deep stack.
+	 */
+	private static void appendList(org.jpl7.Term list, StringBuilder out) {
+		out.append('[');
+		org.jpl7.Term tail = list;
+		while (isListPair(tail)) {
+			if (tail != list) {
+				out.append(',');
+			}
+			append(tail.arg(1), out);
+			tail = tail.arg(2);
+		}
+		if (!tail.isListNil()) {
+			out.append('|');
+			append(tail, out);
+		}
+		out.append(']');
+	}
+
+	private static boolean isListPair(org.jpl7.Term term) {
+		// hasFunctor is not defined for variables.
+		return term.isCompound() && term.hasFunctor(JPL.LIST_PAIR, 2);
+	}
+
+	private static void appendFloat(double value, StringBuilder out) {
+		if (Double.isNaN(value)) {
+			out.append("1.5NaN");
+		} else if (Double.isInfinite(value)) {
+			out.append(value > 0 ? "1.0Inf" : "-1.0Inf");
+		} else {
+			// Java writes e.g. 1.0E10, which SWI Prolog reads as well.
+			out.append(Double.toString(value));
+		}
+	}
+
+	/**
+	 * Appends a name between quotes, with the characters that can not occur
+	 * there escaped.
+	 */
+	private static void appendQuoted(String name, char quote, StringBuilder out) {
+		out.append(quote);
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			switch (c) {
+			case '\'':
+			case '"':
+				if (c == quote) {
+					out.append('\\');
+				}
+				out.append(c);
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < ' ' || c == 127) {
+					out.append("\\x").append(Integer.toHexString(c)).append('\\');
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append(quote);
+	}
+}
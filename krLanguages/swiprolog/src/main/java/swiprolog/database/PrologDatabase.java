@@ -17,13 +17,27 @@
 
 package swiprolog.database;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.jpl7.JPL;
+
+import krTools.database.Aggregate;
 import krTools.database.Database;
+import krTools.database.SolutionIterator;
 import krTools.exceptions.KRDatabaseException;
 import krTools.exceptions.KRInitFailedException;
 import krTools.exceptions.KRQueryFailedException;
@@ -31,18 +45,26 @@ import krTools.language.DatabaseFormula;
 import krTools.language.Query;
 import krTools.language.Substitution;
 import krTools.language.Term;
+import krTools.language.Update;
 import krTools.language.Var;
+import krTools.metrics.DatabaseMetrics;
 import swiprolog.SwiPrologInterface;
+import swiprolog.errors.LimitExceededError;
 import swiprolog.errors.PrologError;
 import swiprolog.language.PrologCompound;
 import swiprolog.language.PrologDBFormula;
+import swiprolog.language.PrologExpression;
 import swiprolog.language.PrologQuery;
 import swiprolog.language.PrologSubstitution;
 import swiprolog.language.PrologTerm;
 import swiprolog.language.impl.PrologImplFactory;
+import swiprolog.validator.SemanticTools;
 
 public class PrologDatabase implements Database {
-	private static final Object queryLock = new Object();
+	/**
+	 * Name of this backend in the {@link DatabaseMetrics}.
+	 */
+	public static final String BACKEND = "swiprolog";
 	/**
 	 * Name of this database; used to name a SWI-Prolog module that implements the
 	 * database.
@@ -60,9 +82,300 @@ public class PrologDatabase implements Database {
 	 * A cache of write operations. Insert or deletes are queued here until the next
 	 * query, at which point those operations are first all performed.
 	 */
-	private PrologCompound writecache;
-	private int cachecount = 0;
+	private final List<org.jpl7.Term> writecache = new ArrayList<>();
+	/**
+	 * The positions in the write cache of the asserts that have not been
+	 * performed yet, by the number of their formula, and of the erases, by their
+	 * formula. An insert and a delete of the same formula cancel out: the
+	 * operation that is cached first is replaced by null in the write cache.
+	 */
+	private final Map<Long, Integer> pendingAsserts = new HashMap<>();
+	private final Map<DatabaseFormula, Integer> pendingErases = new HashMap<>();
+	/**
+	 * The number of write operations that were cancelled out.
+	 */
+	private long eliminatedWrites = 0;
+	/**
+	 * The number of write operations that were added to the write cache, and
+	 * the number of those that have been performed (or cancelled out).
+	 */
+	private long issuedWrites = 0;
+	private long performedWrites = 0;
+	/**
+	 * True while some thread is performing write operations taken from the
+	 * write cache; only one thread at a time does so, in order.
+	 */
+	private boolean writing = false;
+	/**
+	 * The thread that performs the write operations in the background, or null
+	 * if they are performed before the next query.
+	 */
+	private final Writer writer;
+	/**
+	 * The failure of the last write operations that were performed by the
+	 * writer, if it has not been reported yet.
+	 */
+	private KRQueryFailedException writeFailure = null;
+	/**
+	 * True while the initial content is added by the constructor; these
+	 * operations are not performed before the database is first used.
+	 */
+	private boolean loading = true;
+	/**
+	 * True once write operations have been performed, which creates the SWI
+	 * Prolog module of the database.
+	 */
+	private boolean materialized = false;
+	/**
+	 * The number of databases that were destroyed before they were
+	 * materialized.
+	 */
+	private static long neverMaterialized = 0;
+	/**
+	 * Whether new databases perform their write operations in the background.
+	 */
+	private static boolean asyncWrites = false;
+	/**
+	 * The maximum number of operations in the write cache of a database with a
+	 * writer, in batches; inserts and deletes wait when it is full.
+	 */
+	private static final int MAX_PENDING_BATCHES = 4;
+	/**
+	 * Default for {@link #getWriteBatchSize()}.
+	 */
+	public static final int DEFAULT_WRITE_BATCH_SIZE = 4096;
+	/**
+	 * The maximum number of operations in the write cache; when it is full, the
+	 * operations are performed right away.
+	 */
+	private static int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+	/**
+	 * Default for {@link #getBulkLoadSize()}.
+	 */
+	public static final int DEFAULT_BULK_LOAD_SIZE = 1000;
+	/**
+	 * The minimum number of formulas in the initial content of a database for
+	 * it to be loaded from a file, or 0 to never do so.
+	 */
+	private static int bulkLoadSize = DEFAULT_BULK_LOAD_SIZE;
+	/**
+	 * The directory with the compiled content of static databases, or null if
+	 * their content is not compiled.
+	 */
+	private static File qlfCacheDirectory = null;
+	/**
+	 * The version of SWI Prolog, once it is known.
+	 */
+	private static String version = null;
+	/**
+	 * The file with the operations or source that loads the initial content,
+	 * see {@link #load(Collection, boolean)}, or null if there is none. SWI
+	 * Prolog deletes it once it has loaded it.
+	 */
+	private File loadFile = null;
 	private final boolean isStatic;
+	/**
+	 * True iff this database is a fork; its clauses that were copied from the
+	 * database it was forked from have no reference.
+	 */
+	private final boolean forked;
+	/**
+	 * The signatures of the tabled predicates of this database, see
+	 * {@link #table(String, int)}.
+	 */
+	private final Set<String> tabled = Collections.synchronizedSet(new LinkedHashSet<String>());
+	/**
+	 * The signatures of the predicates that the tabled predicates depend on
+	 * (including themselves), or null if these have to be computed again
+	 * because a rule was inserted or deleted.
+	 */
+	private Set<String> tableDependencies = null;
+	/**
+	 * True iff a formula of a predicate that a tabled predicate depends on was
+	 * inserted or deleted since the tables were last invalidated.
+	 */
+	private boolean tablesChanged = false;
+	/**
+	 * Observes the lookups of the predicates of this database by queries, and
+	 * keeps the indexes that were declared, see {@link #index(String, int...)}.
+	 */
+	private final IndexAdvisor indexAdvisor;
+	/**
+	 * The head of the last clause that was inserted for each predicate with
+	 * declared indexes, since their indexes were last built.
+	 */
+	private final Map<String, PrologCompound> unindexed = new HashMap<>();
+	/**
+	 * Whether databases declare the indexes that their advisor advises when a
+	 * query misses.
+	 */
+	private static boolean autoIndex = false;
+	/**
+	 * The maximum number of inferences to compute a solution of a query, or 0
+	 * for no limit.
+	 */
+	private volatile long inferenceLimit;
+	/**
+	 * The maximum wall-clock time of a query in seconds, or 0 for no limit.
+	 */
+	private volatile double timeLimit;
+	/**
+	 * The module with the helper predicates that perform the write operations.
+	 * The helpers keep a clause_ref(Module, Id, Ref) fact in their own module
+	 * for every clause in the module of a database, which maps the number of
+	 * the formula in the theory to the reference of the clause that was
+	 * asserted for it. This allows deleting exactly that clause with erase/1,
+	 * while the module of the database only holds its own clauses.
+	 */
+	private static final String HELPERS = "kr_database";
+	/**
+	 * The definitions of the helper predicates, and their signatures.
+	 */
+	private static final String[] HELPER_CLAUSES = {
+			// performs the operations that are the arguments of Ops in module M
+			// in order, stops at the first that fails; tail recursive so the
+			// stack does not grow with the size of the batch.
+			"run_batch(M, Ops) :- functor(Ops, _, N), run_batch(1, N, M, Ops)",
+			"run_batch(I, N, _, _) :- I > N, !",
+			"run_batch(I, N, M, Ops) :- arg(I, Ops, Op), run_op(Op, M), Next is I + 1, run_batch(Next, N, M, Ops)",
+			"run_op(a(Id, Clause), M) :- assertz(M:Clause, Ref), assertz(clause_ref(M, Id, Ref))",
+			// the clause may have been retracted by a query already.
+			"run_op(e(Id), M) :- ( retract(clause_ref(M, Id, Ref)) -> ignore(erase(Ref)) ; true )",
+			"run_op(c(table(Specs)), M) :- !, table_all(Specs, M)",
+			"run_op(c(Goal), M) :- once(M:Goal)",
+			// performs the operations in File, one term per line, and deletes
+			// it; see OperationFile.
+			"run_op(f(File), M) :- setup_call_cleanup(open(File, read, S, [encoding(utf8)]), run_stream(S, M), "
+					+ "( close(S), catch(delete_file(File), _, true) ))",
+			"run_stream(S, M) :- read_term(S, Op, []), ( Op == end_of_file -> true ; run_op(Op, M), run_stream(S, M) )",
+			// loads the content of a static database from its compiled file
+			// Compiled, after compiling it from Source; see QlfCache.
+			"run_op(q(Compiled), M) :- M:load_files(Compiled, [if(true), silent(true)])",
+			"run_op(q(Source, Compiled), M) :- file_name_extension(Base, _, Source), "
+					+ "file_name_extension(Base, qlf, Output), call_cleanup(( M:qcompile(Source), "
+					+ "rename_file(Output, Compiled) ), ( catch(delete_file(Source), _, true), "
+					+ "catch(delete_file(Output), _, true) ))",
+			// performs a directive of a compiled file in the module it is
+			// loaded into.
+			"load_op(Op) :- prolog_load_context(module, M), run_op(Op, M)",
+			// in a fork, clauses that were copied have no reference yet.
+			"run_op(e(Id, Clause), M) :- ( retract(clause_ref(M, Id, Ref)) -> ignore(erase(Ref)) "
+					+ "; erase_variant(M, Clause) )",
+			// erases the first clause that is a variant of Clause.
+			"erase_variant(M, Clause) :- ( variant_ref(M, Clause, Ref) -> erase(Ref) ; true )",
+			"variant_ref(M, Clause, Ref) :- ( Clause = (Head :- Body) -> true ; Head = Clause, Body = true ), "
+					+ "copy_term(Head, Index), clause(M:Index, _, Ref), clause(Stored, StoredBody, Ref), "
+					+ "strip_module(Stored, _, StoredHead), (StoredHead :- StoredBody) =@= (Head :- Body), !",
+			// performs the operations like run_batch/2, but as a unit: when one
+			// fails or raises an exception, the operations before it are undone
+			// in reverse order and the failure or exception is passed on.
+			"run_atomic(M, Ops) :- functor(Ops, _, N), run_atomic(1, N, M, Ops, [], Status), "
+					+ "( Status == ok -> true ; Status = error(E) -> throw(E) ; fail )",
+			"run_atomic(I, N, _, _, _, ok) :- I > N, !",
+			"run_atomic(I, N, M, Ops, Undo, Status) :- arg(I, Ops, Op), "
+					+ "( catch(undoable_op(Op, M, Inverse), E, true) -> ( var(E) -> Next is I + 1, "
+					+ "run_atomic(Next, N, M, Ops, [Inverse|Undo], Status) ; undo_ops(Undo, M), Status = error(E) ) "
+					+ "; undo_ops(Undo, M), Status = failed )",
+			// performs an operation like run_op/2 and returns the operation
+			// that undoes it; an erased clause is asserted again (at the end of
+			// its predicate). Directives are not undone.
+			"undoable_op(a(Id, Clause), M, e(Id)) :- run_op(a(Id, Clause), M)",
+			"undoable_op(e(Id), M, Inverse) :- ( retract(clause_ref(M, Id, Ref)) -> erase_clause(Id, Ref, Inverse) "
+					+ "; Inverse = true )",
+			"undoable_op(e(Id, Clause), M, Inverse) :- ( retract(clause_ref(M, Id, Ref)) -> true "
+					+ "; variant_ref(M, Clause, Ref) -> true ; Ref = none ), erase_clause(Id, Ref, Inverse)",
+			"undoable_op(c(Goal), M, true) :- run_op(c(Goal), M)",
+			"erase_clause(Id, Ref, Inverse) :- ( Ref \\== none, clause(Stored, Body, Ref) -> "
+					+ "strip_module(Stored, _, Head), erase(Ref), Inverse = a(Id, (Head :- Body)) ; Inverse = true )",
+			"undo_ops([], _)",
+			"undo_ops([Op|Ops], M) :- ( Op == true -> true ; catch(run_op(Op, M), _, true) -> true ; true ), "
+					+ "undo_ops(Ops, M)",
+			// copies the clauses of the dynamic predicates of module From to
+			// module To, without references.
+			"copy_module(From, To) :- forall(( predicate_property(From:Head, dynamic), "
+					+ "\\+ predicate_property(From:Head, imported_from(_)), functor(Head, Name, Arity) ), "
+					+ "( dynamic(To:Name/Arity), "
+					+ "forall(( clause(From:Head, Body), Body \\= start_tabling(_, _) ), assertz(To:(Head :- Body))) )), "
+					+ "forall(tabled(From, Head), add_wrapper(To, Head))",
+			// forgets the clause references of module M when it is erased.
+			"forget_clauses(M) :- retractall(clause_ref(M, _, _))",
+			// tables the predicates Name/Arity in Specs in module M, like the
+			// table/1 directive of SWI Prolog (which can not be called): their
+			// clauses are stored as clauses of a worker predicate, whose
+			// answers are tabled by a wrapper predicate. Clauses that are
+			// already there are moved to the worker.
+			"table_all((Spec, Specs), M) :- !, table_all(Spec, M), table_all(Specs, M)",
+			"table_all(Name/Arity, M) :- functor(Head, Name, Arity), ( tabled(M, Head) -> true ; worker(Head, Worker), "
+					+ "functor(Worker, WorkerName, Arity), dynamic(M:Name/Arity), dynamic(M:WorkerName/Arity), "
+					+ "forall(clause(M:Head, Body, Ref), move_clause(M, Worker, Body, Ref)), add_wrapper(M, Head) )",
+			"move_clause(M, Worker, Body, Ref) :- assertz(M:(Worker :- Body), New), "
+					+ "( retract(clause_ref(M, Id, Ref)) -> assertz(clause_ref(M, Id, New)) ; true ), erase(Ref)",
+			"worker(Head, Worker) :- Head =.. [Name|Args], atom_concat(Name, ' tabled', WorkerName), "
+					+ "Worker =.. [WorkerName|Args]",
+			"add_wrapper(M, Head) :- worker(Head, Worker), assertz(M:(Head :- start_tabling(M:Head, Worker))), "
+					+ "assertz(tabled(M, Head))",
+			// tables are local to a thread, so they are abolished by the next
+			// query on each thread after the generation of module M changed.
+			"invalidate_tables(M) :- flag(kr_tables(M), G, G + 1)",
+			"refresh_tables(M) :- flag(kr_tables(M), G, G), ( seen_tables(M, G) -> true "
+					+ "; forall(tabled(M, Head), abolish_table_subgoals(M:Head)), retractall(seen_tables(M, _)), "
+					+ "assertz(seen_tables(M, G)) )",
+			// looks up the clauses that match Template in module M a few
+			// times, as SWI Prolog creates the indexes that suit a call pattern
+			// over its first calls.
+			"build_index(M, Template) :- forall(between(1, 3, _), \\+ \\+ clause(M:Template, _))",
+			// calls Goal, and raises kr_limit_exceeded(inferences, Limit) when
+			// computing one of its solutions takes more than Limit inferences.
+			"call_inference_limited(Goal, Limit) :- call_with_inference_limit(Goal, Limit, Result), "
+					+ "( Result == inference_limit_exceeded -> throw(kr_limit_exceeded(inferences, Limit)) ; true )",
+			// calls Goal, and raises kr_limit_exceeded(time, Limit) when it is
+			// still running after Limit seconds: the watchdog thread then
+			// signals the thread of the goal, which ignores the signal if the
+			// goal has completed in the meantime.
+			"call_time_limited(Goal, Limit) :- thread_self(Me), flag(kr_limit, Key, Key + 1), get_time(Now), "
+					+ "Deadline is Now + Limit, setup_call_cleanup(( assertz(active_limit(Key)), "
+					+ "thread_send_message(kr_watchdog, watch(Me, Key, Deadline, Limit)) ), Goal, "
+					+ "( retractall(active_limit(Key)), thread_send_message(kr_watchdog, unwatch(Key)) ))",
+			"expire(Key, Limit) :- ( active_limit(Key) -> throw(kr_limit_exceeded(time, Limit)) ; true )",
+			// the loop of the watchdog thread, with the goals it watches as
+			// w(Thread, Key, Deadline, Limit); library(time) is not used as
+			// its foreign part is not available on all platforms.
+			"watchdog(Watches) :- ( Watches == [] -> thread_get_message(kr_watchdog, Message) "
+					+ "; next_deadline(Watches, Deadline), get_time(Now), Timeout is max(0, Deadline - Now), "
+					+ "( thread_get_message(kr_watchdog, Message, [timeout(Timeout)]) -> true ; Message = expired ) ), "
+					+ "watchdog(Message, Watches, Next), watchdog(Next)",
+			"watchdog(watch(Thread, Key, Deadline, Limit), Watches, [w(Thread, Key, Deadline, Limit)|Watches])",
+			"watchdog(unwatch(Key), Watches, Next) :- exclude(watch_key(Key), Watches, Next)",
+			"watchdog(expired, Watches, Next) :- get_time(Now), partition(watch_due(Now), Watches, Due, Next), "
+					+ "forall(member(w(Thread, Key, _, Limit), Due), "
+					+ "catch(thread_signal(Thread, kr_database:expire(Key, Limit)), _, true))",
+			"next_deadline(Watches, Deadline) :- findall(D, member(w(_, _, D, _), Watches), Deadlines), "
+					+ "min_list(Deadlines, Deadline)",
+			"watch_key(Key, w(_, Key, _, _))", "watch_due(Now, w(_, _, Deadline, _)) :- Deadline =< Now" };
+	private static final String[] HELPER_PREDICATES = { "run_batch/2", "run_batch/4", "run_op/2", "run_stream/2", "load_op/1",
+			"erase_variant/2", "variant_ref/3", "run_atomic/2", "run_atomic/6", "undoable_op/3", "erase_clause/3",
+			"undo_ops/2", "copy_module/2", "forget_clauses/1", "table_all/2", "move_clause/4", "worker/2",
+			"add_wrapper/2", "invalidate_tables/1", "refresh_tables/1", "build_index/2", "call_inference_limited/2",
+			"call_time_limited/2", "expire/2", "watchdog/1", "watchdog/3", "next_deadline/2", "watch_key/2",
+			"watch_due/2" };
+	/**
+	 * The dynamic predicates of the helper module: clause_ref(Module, Id, Ref)
+	 * for every clause of a database (see {@link #HELPERS}), tabled(Module,
+	 * Head) for every tabled predicate of a database, the thread local
+	 * seen_tables(Module, Generation) for the generation of the tables of a
+	 * database on a thread, and the thread local active_limit(Key) for the
+	 * time limited goals that a thread is running.
+	 */
+	private static final String[] HELPER_DECLARATIONS = { "dynamic(clause_ref/3)", "dynamic(tabled/2)",
+			"thread_local(seen_tables/2)", "thread_local(active_limit/1)" };
+	/**
+	 * Suffix of the name of the worker predicate of a tabled predicate.
+	 */
+	private static final String WORKER_SUFFIX = " tabled";
+	/**
+	 * True once the helper predicates have been defined.
+	 */
+	private static boolean helpersDefined = false;
 
 	/**
 	 * @param name
@@ -79,26 +392,167 @@ public class PrologDatabase implements Database {
 		this.name = PrologImplFactory.getAtom(name, null);
 		this.owner = owner;
 		this.theory = new Theory();
-		// Create SWI Prolog module that will act as our database.
-		// FIXME: this is an expensive operation that is now run for
-		// knowledge bases as well, and might be run for bases in a mental
-		// model that will never be used anyway too.
-		PrologCompound init = prefix(PrologImplFactory.getAtom("true", null));
-		addToWriteCache(init);
-		if (content != null) {
+		this.indexAdvisor = new IndexAdvisor(this.theory);
+		this.inferenceLimit = owner.getDefaultInferenceLimit();
+		this.timeLimit = owner.getDefaultTimeLimit();
+		defineHelpers();
+		// Create SWI Prolog module that will act as our database. This, and
+		// loading the content, is an expensive operation, so it is deferred
+		// until the database is first used; see materialize().
+		addToWriteCache(operation("c", new org.jpl7.Atom("true")));
+		int bulk = getBulkLoadSize();
+		if (content != null && !content.isEmpty()
+				&& ((isStatic && getQlfCacheDirectory() != null) || (bulk > 0 && content.size() >= bulk))) {
+			load(content, isStatic);
+		} else if (content != null) {
 			for (DatabaseFormula dbf : content) {
 				insert(dbf);
 			}
+		}
+		synchronized (this) {
+			this.loading = false;
+		}
+		// set static only after all KB has been inserted!
+		this.isStatic = isStatic;
+		this.forked = false;
+		if (isAsyncWrites() && !isStatic) {
+			this.writer = new Writer();
+			this.writer.start();
+		} else {
+			this.writer = null;
+		}
+	}
+
+	/**
+	 * Adds the initial content of a large database. Instead of one operation
+	 * per formula, the operations are written to a file that SWI Prolog reads
+	 * and performs in a single call, so the formulas are not converted and
+	 * passed through JPL one by one. The clauses still get their references,
+	 * so they can be deleted like any other clause. The content of a static
+	 * database is instead loaded from its compiled file in the
+	 * {@link #getQlfCacheDirectory()}, which is compiled first if it does not
+	 * exist yet. If a file can not be written, the operations are cached as
+	 * usual.
+	 *
+	 * @param content
+	 *            The initial content of this database.
+	 * @param isStatic
+	 *            True iff this database is static.
+	 * @throws KRDatabaseException
+	 */
+	private synchronized void load(Collection<DatabaseFormula> content, boolean isStatic)
+			throws KRDatabaseException {
+		List<org.jpl7.Term> operations = new ArrayList<>(content.size());
+		for (DatabaseFormula formula : content) {
+			Long id = this.theory.addWithId(formula);
+			if (id == null) {
+				continue;
+			}
+			PrologCompound compound = ((PrologDBFormula) formula).getCompound();
+			if (compound.isDirective()) {
+				declareTables((PrologCompound) compound.getArg(0));
+			} else {
+				noteTableChange(compound);
+				noteIndexChange(compound);
+			}
+			operations.add(insertOperation(compound, id));
+		}
+		DatabaseMetrics.get(BACKEND).inserted(operations.size());
+		File directory = getQlfCacheDirectory();
+		org.jpl7.Term load;
+		try {
+			if (isStatic && directory != null) {
+				String source = QlfCache.source(operations, HELPERS);
+				File compiled = QlfCache.compiled(directory, getVersion(), this.name.getName(), source);
+				if (compiled.exists()) {
+					load = operation("q", new org.jpl7.Atom(compiled.getPath()));
+				} else {
+					this.loadFile = QlfCache.write(compiled, source);
+					load = operation("q", new org.jpl7.Atom(this.loadFile.getPath()),
+							new org.jpl7.Atom(compiled.getPath()));
+				}
+			} else {
+				this.loadFile = OperationFile.write(operations);
+				load = operation("f", new org.jpl7.Atom(this.loadFile.getPath()));
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			for (org.jpl7.Term operation : operations) {
+				addToWriteCache(operation);
+			}
+			return;
+		}
+		addToWriteCache(load);
+	}
+
+	/**
+	 * Creates a fork of a database, see {@link #fork(String)}.
+	 *
+	 * @param name
+	 *            A human-readable name for the database.
+	 * @param parent
+	 *            The database that is forked. Its write cache must be empty.
+	 * @throws KRDatabaseException
+	 *             If copying the module of the parent failed.
+	 */
+	private PrologDatabase(String name, PrologDatabase parent) throws KRDatabaseException {
+		this.name = PrologImplFactory.getAtom(name, null);
+		this.owner = parent.owner;
+		this.theory = parent.theory.fork();
+		this.loading = false;
+		this.materialized = true;
+		this.isStatic = false;
+		this.forked = true;
+		this.tabled.addAll(parent.tabled);
+		this.indexAdvisor = new IndexAdvisor(this.theory);
+		this.inferenceLimit = parent.inferenceLimit;
+		this.timeLimit = parent.timeLimit;
+		for (IndexAdvisor.Index index : parent.indexAdvisor.getDeclared()) {
+			this.indexAdvisor.declare(index);
+		}
+		try {
+			rawholds(new org.jpl7.Compound(":", new org.jpl7.Term[] { new org.jpl7.Atom(HELPERS),
+					new org.jpl7.Compound("copy_module",
+							new org.jpl7.Term[] { (org.jpl7.Term) parent.name, (org.jpl7.Term) this.name }) }));
+		} catch (KRQueryFailedException e) {
+			throw new KRDatabaseException("failed to fork database '" + parent.name + "'", e);
+		}
+		if (isAsyncWrites()) {
+			this.writer = new Writer();
+			this.writer.start();
+		} else {
+			this.writer = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The formulas of the new database are shared with this one until either
+	 * changes them, so the Java side of a fork only costs time proportional to
+	 * the number of signatures. The clauses are copied to the module of the
+	 * new database by a single call of SWI Prolog, without converting them and
+	 * without clause references: deleting a copied clause from the fork looks
+	 * it up by its content instead. The name of the new database should not be
+	 * in use.
+	 * </p>
+	 */
+	@Override
+	public synchronized PrologDatabase fork(String name) throws KRDatabaseException {
+		// the module must contain all formulas of the theory.
+		while (this.writing || !this.writecache.isEmpty()) {
 			try {
-				// Databases may be re-used by other databases (eg KBs).
-				// flush to ensure dbs are ready to use now
 				flushWriteCache();
 			} catch (KRQueryFailedException e) {
-				throw new KRDatabaseException("Failed to initialize database", e);
+				throw new KRDatabaseException("failed to fork database '" + this.name + "'", e);
 			}
 		}
-		// set static only after all KB has been inserted!
-		this.isStatic = isStatic;
+		PrologDatabase fork = new PrologDatabase(name, this);
+		// the indexes of the copied clauses are built again.
+		for (IndexAdvisor.Index index : fork.indexAdvisor.getDeclared()) {
+			fork.buildIndex(index);
+		}
+		this.owner.addDatabase(fork);
+		return fork;
 	}
 
 	private PrologCompound prefix(Term term) {
@@ -130,6 +584,14 @@ public class PrologDatabase implements Database {
 	 */
 	@Override
 	public void destroy() throws KRDatabaseException {
+		if (this.writer != null) {
+			this.writer.interrupt();
+		}
+		synchronized (PrologDatabase.class) {
+			if (!isMaterialized()) {
+				neverMaterialized++;
+			}
+		}
 		eraseContent();
 		this.owner.removeDatabase(this);
 	}
@@ -145,15 +607,404 @@ public class PrologDatabase implements Database {
 	 */
 	@Override
 	public Set<Substitution> query(Query pQuery) throws KRQueryFailedException {
+		PrologCompound db_query_final = dbQuery(pQuery);
+		// Perform the query
+		flushWriteCache();
+		return measuredQuery(db_query_final);
+	}
+
+	/**
+	 * Performs given query on the database like {@link #query(Query)}, but
+	 * with its own limits instead of those of the database.
+	 *
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @param inferenceLimit
+	 *            the maximum number of inferences to compute a solution, or 0
+	 *            for no limit; see {@link #setInferenceLimit(long)}.
+	 * @param timeLimit
+	 *            the maximum time of the query in seconds, or 0 for no limit;
+	 *            see {@link #setTimeLimit(double)}.
+	 * @return set of substitutions satisfying the query.
+	 * @throws LimitExceededError
+	 *             If the query exceeded one of the limits.
+	 */
+	public Set<Substitution> query(Query pQuery, long inferenceLimit, double timeLimit)
+			throws KRQueryFailedException {
+		if (inferenceLimit < 0 || timeLimit < 0) {
+			throw new IllegalArgumentException(
+					"the limits should not be negative but are " + inferenceLimit + " and " + timeLimit);
+		}
+		PrologCompound db_query_final = dbQuery(pQuery, inferenceLimit, timeLimit);
+		flushWriteCache();
+		return measuredQuery(db_query_final);
+	}
+
+	/**
+	 * Performs given query on the database like {@link #query(Query)}, but only
+	 * returns the bindings of the given variables. The solutions are projected
+	 * onto a tuple of these variables and deduplicated inside SWI Prolog, as
+	 * in <tt>distinct(v(X,..), db:query)</tt>, and the tuples are pulled one at
+	 * a time. The other variables are renamed to start with an underscore, so
+	 * that JPL never transfers or converts their bindings. Variables that do
+	 * not occur in the query are not bound.
+	 *
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @param variables
+	 *            the variables whose bindings are needed.
+	 * @return set of substitutions of the given variables satisfying the query.
+	 */
+	@Override
+	public Set<Substitution> query(Query pQuery, Collection<Var> variables) throws KRQueryFailedException {
+		Set<Var> free = pQuery.getFreeVar();
+		List<Var> projection = new ArrayList<>(variables.size());
+		for (Var var : new LinkedHashSet<>(variables)) {
+			if (free.contains(var)) {
+				projection.add(var);
+			}
+		}
+		Substitution hidden = hide(free);
+		Var result = PrologImplFactory.getVar("Solution", null).getVariant(free);
+
+		Term[] hiddenProjection = new Term[projection.size()];
+		for (int i = 0; i < hiddenProjection.length; i++) {
+			hiddenProjection[i] = hidden.get(projection.get(i));
+		}
+		Term tuple = (hiddenProjection.length == 0) ? PrologImplFactory.getAtom("v", null)
+				: PrologImplFactory.getCompound("v", hiddenProjection, null);
+		PrologCompound distinct = PrologImplFactory.getCompound("distinct",
+				new Term[] { tuple, dbQuery(pQuery.applySubst(hidden)) }, null);
+		PrologCompound goal = PrologImplFactory.getCompound(",",
+				new Term[] { distinct, PrologImplFactory.getCompound("=", new Term[] { result, tuple }, null) },
+				null);
+		flushWriteCache();
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
+		Set<Substitution> substitutions = new LinkedHashSet<>();
+		try (SolutionIterator solutions = new PrologSolutionIterator(goal)) {
+			while (solutions.hasNext()) {
+				Term value = solutions.next().get(result);
+				PrologSubstitution subst = new PrologSubstitution();
+				for (int i = 0; i < projection.size(); i++) {
+					subst.addBinding(projection.get(i), ((PrologCompound) value).getArg(i));
+				}
+				substitutions.add(subst);
+			}
+		}
+		metrics.endQuery(start, substitutions.size());
+		return substitutions;
+	}
+
+	/**
+	 * @param vars
+	 *            some variables.
+	 * @return a substitution that renames the variables to new variables whose
+	 *         names start with an underscore, so that JPL does not report their
+	 *         bindings.
+	 */
+	private static Substitution hide(Set<Var> vars) {
+		Set<String> names = new HashSet<>();
+		for (Var var : vars) {
+			names.add(var.toString());
+		}
+		Substitution hidden = new PrologSubstitution();
+		for (Var var : vars) {
+			String name = "_" + var;
+			while (names.contains(name)) {
+				name = "_" + name;
+			}
+			names.add(name);
+			hidden.addBinding(var, PrologImplFactory.getVar(name, null));
+		}
+		return hidden;
+	}
+
+	/**
+	 * Performs given query on the database like {@link #query(Query)}, but
+	 * computes the solutions one at a time as they are requested. The iterator
+	 * must be used and closed on the calling thread.
+	 *
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @return iterator over the substitutions satisfying the query.
+	 */
+	@Override
+	public SolutionIterator queryIterator(Query pQuery) throws KRQueryFailedException {
+		PrologCompound db_query_final = dbQuery(pQuery);
+		flushWriteCache();
+		// the query is recorded when the iterator is closed.
+		return new PrologSolutionIterator(db_query_final, DatabaseMetrics.get(BACKEND));
+	}
+
+	/**
+	 * Performs given query on the database, but lets SWI Prolog stop after the
+	 * first solution using once/1.
+	 *
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @return the first substitution satisfying the query, or null if there is
+	 *         none.
+	 */
+	@Override
+	public Substitution queryFirst(Query pQuery) throws KRQueryFailedException {
+		PrologCompound once = PrologImplFactory.getCompound("once", new Term[] { dbQuery(pQuery) }, null);
+		flushWriteCache();
+		Set<Substitution> solutions = measuredQuery(once);
+		return solutions.isEmpty() ? null : solutions.iterator().next();
+	}
+
+	/**
+	 * Performs given query on the database, but lets SWI Prolog stop after the
+	 * given number of different solutions using limit/2 and distinct/1.
+	 *
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @param limit
+	 *            the maximum number of solutions; not negative.
+	 * @return set of at most limit substitutions satisfying the query.
+	 */
+	@Override
+	public Set<Substitution> queryLimit(Query pQuery, int limit) throws KRQueryFailedException {
+		if (limit < 0) {
+			throw new IllegalArgumentException("the limit should not be negative but is " + limit);
+		}
+		PrologCompound distinct = PrologImplFactory.getCompound("distinct", new Term[] { dbQuery(pQuery) }, null);
+		PrologCompound limited = PrologImplFactory.getCompound("limit",
+				new Term[] { PrologImplFactory.getNumber(limit, null), distinct }, null);
+		flushWriteCache();
+		return measuredQuery(limited);
+	}
+
+	/**
+	 * Checks if given query has a solution in the database. Stops after the
+	 * first solution and does not convert any bindings.
+	 *
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @return true iff the query succeeds.
+	 */
+	@Override
+	public boolean holds(Query pQuery) throws KRQueryFailedException {
+		PrologCompound db_query_final = dbQuery(pQuery);
+		flushWriteCache();
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
+		boolean holds = rawholds(db_query_final);
+		metrics.endQuery(start, holds ? 1 : 0);
+		return holds;
+	}
+
+	/**
+	 * Computes an aggregate over the solutions of given query inside SWI Prolog
+	 * using aggregate_all/3, so that only the result is converted. A bag is
+	 * not returned by SWI Prolog as one list, which JPL converts recursively,
+	 * but its elements are pulled one at a time; see
+	 * {@link #query(Query, Collection)}.
+	 *
+	 * @param function
+	 *            the aggregate function.
+	 * @param template
+	 *            the term to aggregate; ignored for count, and required for
+	 *            the other functions.
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @return the aggregated value, or null for min or max without solutions.
+	 */
+	@Override
+	public Term aggregate(Aggregate function, Term template, Query pQuery) throws KRQueryFailedException {
+		if (template == null && function != Aggregate.COUNT) {
+			throw new IllegalArgumentException("the aggregate " + function + " needs a template");
+		}
+		Set<Var> used = new LinkedHashSet<>(pQuery.getFreeVar());
+		if (template != null) {
+			used.addAll(template.getFreeVar());
+		}
+		if (function == Aggregate.BAG) {
+			return bag(template, pQuery, used);
+		}
+		Var result = PrologImplFactory.getVar("Result", null).getVariant(used);
+
+		// count, sum(T), min(T) or max(T)
+		String specname = function.name().toLowerCase();
+		Term spec = (function == Aggregate.COUNT) ? PrologImplFactory.getAtom(specname, null)
+				: PrologImplFactory.getCompound(specname, new Term[] { template }, null);
+		PrologCompound aggregate = PrologImplFactory.getCompound("aggregate_all",
+				new Term[] { spec, dbQuery(pQuery), result }, null);
+		flushWriteCache();
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
+		Term value = rawaggregate(aggregate, result.toString());
+		metrics.endQuery(start, (value == null) ? 0 : 1);
+		return value;
+	}
+
+	/**
+	 * @param template
+	 *            the term to collect.
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @param used
+	 *            the variables of the template and the query.
+	 * @return the list of all instances of the template, like
+	 *         <tt>aggregate_all(bag(template), query, List)</tt>.
+	 * @throws KRQueryFailedException
+	 */
+	private Term bag(Term template, Query pQuery, Set<Var> used) throws KRQueryFailedException {
+		Substitution hidden = hide(used);
+		Var result = PrologImplFactory.getVar("Element", null).getVariant(used);
+		PrologCompound goal = PrologImplFactory.getCompound(",", new Term[] { dbQuery(pQuery.applySubst(hidden)),
+				PrologImplFactory.getCompound("=", new Term[] { result, template.applySubst(hidden) }, null) },
+				null);
+		flushWriteCache();
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
+		List<Term> elements = new ArrayList<>();
+		try (SolutionIterator solutions = new PrologSolutionIterator(goal)) {
+			while (solutions.hasNext()) {
+				elements.add(solutions.next().get(result));
+			}
+		}
+		metrics.endQuery(start, 1);
+		// built from the end, without recursion.
+		Term list = PrologImplFactory.getAtom(JPL.LIST_NIL.name(), null);
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			list = PrologImplFactory.getCompound(JPL.LIST_PAIR, new Term[] { elements.get(i), list }, null);
+		}
+		return list;
+	}
+
+	/**
+	 * Performs a query with {@link #rawquery(PrologTerm)} and records it in the
+	 * {@link DatabaseMetrics} of this backend.
+	 *
+	 * @param query
+	 *            the query to be performed.
+	 * @return set of substitutions satisfying the query.
+	 * @throws KRQueryFailedException
+	 */
+	private static Set<Substitution> measuredQuery(PrologTerm query) throws KRQueryFailedException {
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
+		Set<Substitution> solutions = rawquery(query);
+		metrics.endQuery(start, solutions.size());
+		return solutions;
+	}
+
+	/**
+	 * @param pQuery
+	 *            a query.
+	 * @return JPL term that performs the query on the module of this database.
+	 * @throws KRQueryFailedException
+	 *             If an index that was advised for the query could not be
+	 *             declared, see {@link #setAutoIndex(boolean)}.
+	 */
+	private PrologCompound dbQuery(Query pQuery) throws KRQueryFailedException {
+		return dbQuery(pQuery, this.inferenceLimit, this.timeLimit);
+	}
+
+	/**
+	 * @param pQuery
+	 *            a query.
+	 * @param inferences
+	 *            the inference limit of the query, or 0 for no limit.
+	 * @param time
+	 *            the time limit of the query in seconds, or 0 for no limit.
+	 * @return JPL term that performs the query on the module of this database,
+	 *         within the given limits.
+	 * @throws KRQueryFailedException
+	 *             If an index that was advised for the query could not be
+	 *             declared, see {@link #setAutoIndex(boolean)}.
+	 */
+	private PrologCompound dbQuery(Query pQuery, long inferences, double time) throws KRQueryFailedException {
 		PrologCompound query = ((PrologQuery) pQuery).getCompound();
+		if (this.indexAdvisor.observe(query) && isAutoIndex()) {
+			try {
+				for (IndexAdvisor.Index index : this.indexAdvisor.advise()) {
+					declareIndex(index);
+				}
+			} catch (KRDatabaseException e) {
+				throw new KRQueryFailedException("failed to index database '" + this.name + "'", e);
+			}
+		}
 		// We need to create conjunctive query with "true" as first conjunct and
 		// db_query as second conjunct as JPL query dbname:not(..) does not work
-		// otherwise...
-		PrologCompound db_query_final = PrologImplFactory.getCompound(",",
-				new Term[] { PrologImplFactory.getAtom("true", null), prefix(query) }, null);
-		// Perform the query
-		flushWriteCache();
-		return rawquery(db_query_final);
+		// otherwise... If there are tables, the first conjunct makes sure that
+		// they are up to date instead.
+		PrologCompound first = PrologImplFactory.getAtom("true", null);
+		if (!this.tabled.isEmpty()) {
+			first = PrologImplFactory.getCompound(":", new Term[] { PrologImplFactory.getAtom(HELPERS, null),
+					PrologImplFactory.getCompound("refresh_tables", new Term[] { this.name }, null) }, null);
+		}
+		PrologCompound goal = PrologImplFactory.getCompound(",", new Term[] { first, prefix(query) }, null);
+		if (inferences > 0) {
+			goal = limited("call_inference_limited", goal, PrologImplFactory.getNumber(inferences, null));
+		}
+		if (time > 0) {
+			goal = limited("call_time_limited", goal, PrologImplFactory.getNumber(time, null));
+		}
+		return goal;
+	}
+
+	/**
+	 * @return JPL term that calls a goal with a limit, as in
+	 *         <tt>kr_database:call_time_limited(goal, limit)</tt>.
+	 */
+	private static PrologCompound limited(String helper, PrologCompound goal, Term limit) {
+		return PrologImplFactory.getCompound(":", new Term[] { PrologImplFactory.getAtom(HELPERS, null),
+				PrologImplFactory.getCompound(helper, new Term[] { goal, limit }, null) }, null);
+	}
+
+	/**
+	 * @return The maximum number of inferences to compute a solution of a
+	 *         query on this database, or 0 for no limit.
+	 */
+	public long getInferenceLimit() {
+		return this.inferenceLimit;
+	}
+
+	/**
+	 * Limits the number of inferences that SWI Prolog may use to compute one
+	 * solution of a query on this database (so a query with many solutions
+	 * may use more in total). A query that exceeds the limit is stopped with a
+	 * {@link LimitExceededError}. The default is taken from
+	 * {@link SwiPrologInterface#getDefaultInferenceLimit()}.
+	 *
+	 * @param limit
+	 *            The maximum number of inferences, or 0 for no limit.
+	 */
+	public void setInferenceLimit(long limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("the inference limit should not be negative but is " + limit);
+		}
+		this.inferenceLimit = limit;
+	}
+
+	/**
+	 * @return The maximum wall-clock time of a query on this database in
+	 *         seconds, or 0 for no limit.
+	 */
+	public double getTimeLimit() {
+		return this.timeLimit;
+	}
+
+	/**
+	 * Limits the wall-clock time that SWI Prolog may spend on a query on this
+	 * database, from the moment the query starts until its last solution. A
+	 * query that exceeds the limit is stopped with a
+	 * {@link LimitExceededError}. For {@link #queryIterator(Query)} the time
+	 * in between the requests for solutions counts as well. Pending write
+	 * operations are performed before the query, outside of the limit. The
+	 * default is taken from {@link SwiPrologInterface#getDefaultTimeLimit()}.
+	 *
+	 * @param limit
+	 *            The maximum time in seconds, or 0 for no limit.
+	 */
+	public void setTimeLimit(double limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("the time limit should not be negative but is " + limit);
+		}
+		this.timeLimit = limit;
 	}
 
 	/**
@@ -185,101 +1036,695 @@ public class PrologDatabase implements Database {
 	}
 
 	/**
-	 * <p>
-	 * Inserts formula into SWI prolog database without any checks. You are
-	 * responsible for creating legal SWI prolog query. The formula will be prefixed
-	 * with the label of the database: the SWI prolog query will look like <br>
-	 * <tt>insert(&lt;database label>:&lt;formula>)</tt>
-	 * </p>
-	 * ASSUMES formula can be argument of assert (fact, rules).
-	 *
-	 * @param formula
-	 *            is the formula to be inserted into database. appropriate database
-	 *            label will be prefixed to your formula
-	 * @throws KRDatabaseException
+	 * <p>
+	 * Inserts formula into SWI prolog database without any checks. You are
+	 * responsible for creating legal SWI prolog query. The formula will be prefixed
+	 * with the label of the database: the SWI prolog query will look like <br>
+	 * <tt>insert(&lt;database label>:&lt;formula>)</tt>
+	 * </p>
+	 * ASSUMES formula can be argument of assert (fact, rules).
+	 *
+	 * @param formula
+	 *            is the formula to be inserted into database. appropriate database
+	 *            label will be prefixed to your formula
+	 * @throws KRDatabaseException
+	 */
+	@Override
+	public boolean insert(DatabaseFormula formula) throws KRDatabaseException {
+		checkModifyable();
+		// the theory and the write cache change together.
+		synchronized (this) {
+			Long id = cancelErase(formula);
+			if (id != null) {
+				// the clause of the formula has not been erased yet; keep it.
+				DatabaseMetrics.get(BACKEND).inserted(1);
+				return this.theory.add(formula, id);
+			}
+			id = this.theory.addWithId(formula);
+			if (id != null) {
+				insert(((PrologDBFormula) formula).getCompound(), id);
+				DatabaseMetrics.get(BACKEND).inserted(1);
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Caches an operation that asserts given term as a clause and records the
+	 * reference to that clause under the given number, as in
+	 * <tt>a(id, term)</tt>. Directives are just called, as in <tt>c(term)</tt>
+	 * (without the :-).
+	 *
+	 * @param formula
+	 *            The JPL term to be inserted.
+	 * @param id
+	 *            The number of the formula in the theory.
+	 * @throws KRDatabaseException
+	 */
+	private synchronized void insert(PrologCompound formula, long id) throws KRDatabaseException {
+		checkModifyable();
+		if (formula.isDirective()) {
+			// a directive may depend on the clauses before it.
+			this.pendingAsserts.clear();
+			this.pendingErases.clear();
+			declareTables((PrologCompound) formula.getArg(0));
+		} else {
+			this.pendingAsserts.put(id, this.writecache.size());
+			noteTableChange(formula);
+			noteIndexChange(formula);
+		}
+		addToWriteCache(insertOperation(formula, id));
+	}
+
+	/**
+	 * @param formula
+	 *            The JPL term to be inserted.
+	 * @param id
+	 *            The number of the formula in the theory.
+	 * @return The operation that inserts the formula, see
+	 *         {@link #insert(PrologCompound, long)}.
+	 */
+	private org.jpl7.Term insertOperation(PrologCompound formula, long id) {
+		if (formula.isDirective()) {
+			return operation("c", (org.jpl7.Term) formula.getArg(0));
+		} else {
+			return operation("a", new org.jpl7.Integer(id), storedClause(formula));
+		}
+	}
+
+	/**
+	 * Removes the pending erase of the clause of a formula from the write cache,
+	 * if there is one.
+	 *
+	 * @param formula
+	 *            A formula that is about to be inserted.
+	 * @return The number of the formula whose clause would have been erased, or
+	 *         null if there was no pending erase.
+	 */
+	private synchronized Long cancelErase(DatabaseFormula formula) {
+		Integer index = this.pendingErases.remove(formula);
+		if (index == null) {
+			return null;
+		}
+		org.jpl7.Term erase = this.writecache.set(index, null);
+		this.eliminatedWrites += 2;
+		return erase.arg(1).longValue();
+	}
+
+	// ***************** delete methods ****************/
+
+	/**
+	 * <p>
+	 * Deletes a formula from a SWI Prolog Database. You are responsible for
+	 * creating legal SWI prolog query. The formula will be prefixed with the label
+	 * of the database: the SWI prolog query will look like <br>
+	 * <tt>retract(&lt;database label>:&lt;formula>)</tt>
+	 * </p>
+	 *
+	 * @param formula
+	 *            is the DatabaseFormula to be retracted from SWI. ASSUMES formula
+	 *            can be argument of retract (fact, rules). CHECK rules need to be
+	 *            converted into string correctly! toString may be insufficient for
+	 *            SWI queries
+	 * @throws KRDatabaseException
+	 */
+	@Override
+	public boolean delete(DatabaseFormula formula) throws KRDatabaseException {
+		checkModifyable();
+		synchronized (this) {
+			Long id = this.theory.removeWithId(formula);
+			if (id != null) {
+				PrologCompound compound = ((PrologDBFormula) formula).getCompound();
+				if (!compound.isDirective()) {
+					noteTableChange(compound);
+					if (!cancelAssert(id)) {
+						delete(formula, id);
+					}
+				}
+				DatabaseMetrics.get(BACKEND).deleted(1);
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Caches an operation that erases the clause that was asserted for the
+	 * formula with the given number, as in <tt>e(id)</tt>. The clause reference
+	 * is looked up by its (indexed) number, so the cost does not depend on the
+	 * number of clauses of the predicate, and only that clause is removed.
+	 *
+	 * @param formula
+	 *            The formula that is deleted.
+	 * @param id
+	 *            The number of the formula in the theory.
+	 * @throws KRDatabaseException
+	 */
+	private synchronized void delete(DatabaseFormula formula, long id) throws KRDatabaseException {
+		checkModifyable();
+		this.pendingErases.put(formula, this.writecache.size());
+		addToWriteCache(deleteOperation(formula, id));
+	}
+
+	/**
+	 * @param formula
+	 *            The formula that is deleted.
+	 * @param id
+	 *            The number of the formula in the theory.
+	 * @return The operation that erases the clause of the formula, see
+	 *         {@link #delete(DatabaseFormula, long)}.
+	 */
+	private org.jpl7.Term deleteOperation(DatabaseFormula formula, long id) {
+		if (this.forked) {
+			return operation("e", new org.jpl7.Integer(id), storedClause(((PrologDBFormula) formula).getCompound()));
+		} else {
+			return operation("e", new org.jpl7.Integer(id));
+		}
+	}
+
+	/**
+	 * Removes the pending assert of the clause of a formula from the write
+	 * cache, if there is one.
+	 *
+	 * @param id
+	 *            The number of a formula that is deleted.
+	 * @return true iff there was a pending assert.
+	 */
+	private synchronized boolean cancelAssert(long id) {
+		Integer index = this.pendingAsserts.remove(id);
+		if (index == null) {
+			return false;
+		}
+		this.writecache.set(index, null);
+		this.eliminatedWrites += 2;
+		return true;
+	}
+
+	// ***************** tabling methods ****************/
+
+	/**
+	 * Declares a predicate of this database as tabled, by inserting the
+	 * directive <tt>:- table(name/arity)</tt>. SWI Prolog keeps the answers to
+	 * the calls of a tabled predicate in tables, which are reused by later
+	 * queries, and makes left recursive definitions terminate. The tables are
+	 * invalidated when a formula is inserted or deleted that the tabled
+	 * predicate depends on, as found by following the predicates in the bodies
+	 * of the rules, starting with those of the tabled predicate. Predicates
+	 * that are only called indirectly (e.g. call(G) with G a variable) are not
+	 * found. A predicate should be tabled before it is queried.
+	 *
+	 * @param name
+	 *            The name of the predicate.
+	 * @param arity
+	 *            The arity of the predicate.
+	 * @return True iff the predicate was not tabled yet.
+	 * @throws KRDatabaseException
+	 */
+	public boolean table(String name, int arity) throws KRDatabaseException {
+		PrologCompound indicator = PrologImplFactory.getCompound("/",
+				new Term[] { PrologImplFactory.getAtom(name, null), PrologImplFactory.getNumber(arity, null) }, null);
+		PrologCompound table = PrologImplFactory.getCompound("table", new Term[] { indicator }, null);
+		return insert(PrologImplFactory
+				.getDBFormula(PrologImplFactory.getCompound(":-", new Term[] { table }, null)));
+	}
+
+	/**
+	 * @return The signatures of the tabled predicates of this database.
+	 */
+	public Set<String> getTabled() {
+		synchronized (this.tabled) {
+			return new LinkedHashSet<>(this.tabled);
+		}
+	}
+
+	/**
+	 * Records the predicates of a table directive as tabled. The clauses of a
+	 * tabled predicate are asserted as clauses of its worker predicate, see
+	 * {@link #storedClause(PrologCompound)}.
+	 *
+	 * @param directive
+	 *            The directive (without the :-).
+	 * @throws KRDatabaseException
+	 *             If the directive is a table directive that does not consist
+	 *             of predicate indicators.
+	 */
+	private synchronized void declareTables(PrologCompound directive) throws KRDatabaseException {
+		if (directive.getArity() != 1 || !"table".equals(directive.getName())) {
+			return;
+		}
+		List<String> signatures = new ArrayList<>();
+		Term specs = directive.getArg(0);
+		for (Term spec : (specs instanceof PrologCompound) ? ((PrologCompound) specs).getOperands(",")
+				: new ArrayList<Term>(0)) {
+			if (!(spec instanceof PrologCompound) || !((PrologCompound) spec).isPredicateIndicator()) {
+				throw new KRDatabaseException("only predicate indicators can be tabled, found '" + spec + "'");
+			}
+			PrologCompound indicator = (PrologCompound) spec;
+			signatures.add(((PrologCompound) indicator.getArg(0)).getName() + "/" + indicator.getArg(1));
+		}
+		if (signatures.isEmpty()) {
+			throw new KRDatabaseException("only predicate indicators can be tabled, found '" + specs + "'");
+		}
+		this.tabled.addAll(signatures);
+		this.tableDependencies = null;
+		this.tablesChanged = true;
+	}
+
+	/**
+	 * Records that the tables have to be invalidated if a clause is inserted
+	 * or deleted for a predicate that a tabled predicate depends on.
+	 *
+	 * @param clause
+	 *            The clause that is inserted or deleted.
+	 */
+	private synchronized void noteTableChange(PrologCompound clause) {
+		if (this.tabled.isEmpty()) {
+			return;
+		}
+		boolean rule = clause.getArity() == 2 && ":-".equals(clause.getName());
+		if (rule) {
+			// the dependencies may have changed.
+			this.tableDependencies = null;
+		}
+		if (!this.tablesChanged) {
+			String signature = (rule ? clause.getArg(0) : clause).getSignature();
+			this.tablesChanged = getTableDependencies().contains(signature);
+		}
+	}
+
+	/**
+	 * @return The signatures of the predicates that the tabled predicates
+	 *         depend on, see {@link #table(String, int)}.
+	 */
+	private synchronized Set<String> getTableDependencies() {
+		if (this.tableDependencies == null) {
+			Set<String> dependencies;
+			synchronized (this.tabled) {
+				dependencies = new HashSet<>(this.tabled);
+			}
+			Deque<String> todo = new ArrayDeque<>(dependencies);
+			Theory.Snapshot formulas = this.theory.getFormulas();
+			while (!todo.isEmpty()) {
+				for (DatabaseFormula formula : formulas.getFormulas(todo.pop())) {
+					PrologCompound clause = ((PrologDBFormula) formula).getCompound();
+					if (clause.getArity() == 2 && ":-".equals(clause.getName())) {
+						for (String used : SemanticTools.getUsedSignatures((PrologExpression) clause.getArg(1))) {
+							if (dependencies.add(used)) {
+								todo.push(used);
+							}
+						}
+					}
+				}
+			}
+			this.tableDependencies = dependencies;
+		}
+		return this.tableDependencies;
+	}
+
+	/**
+	 * @param clause
+	 *            A clause that is inserted or deleted.
+	 * @return The clause as it is stored in SWI Prolog: the clause itself, or
+	 *         if it is a clause of a tabled predicate, the clause of its worker
+	 *         predicate, of which the name ends with {@link #WORKER_SUFFIX}.
+	 */
+	private org.jpl7.Term storedClause(PrologCompound clause) {
+		if (this.tabled.isEmpty()) {
+			return (org.jpl7.Term) clause;
+		}
+		boolean rule = clause.getArity() == 2 && ":-".equals(clause.getName());
+		PrologCompound head = rule ? (PrologCompound) clause.getArg(0) : clause;
+		if (!this.tabled.contains(head.getSignature())) {
+			return (org.jpl7.Term) clause;
+		}
+		Term[] args = new Term[head.getArity()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = head.getArg(i);
+		}
+		String name = head.getName() + WORKER_SUFFIX;
+		PrologCompound worker = (args.length == 0) ? PrologImplFactory.getAtom(name, null)
+				: PrologImplFactory.getCompound(name, args, null);
+		return (org.jpl7.Term) (rule ? PrologImplFactory.getCompound(":-", new Term[] { worker, clause.getArg(1) }, null)
+				: worker);
+	}
+
+	/**
+	 * @return The operation that invalidates the tables of this database, as
+	 *         in <tt>c(kr_database:invalidate_tables(databaseName))</tt>.
+	 */
+	private org.jpl7.Term invalidateTablesOperation() {
+		return operation("c", new org.jpl7.Compound(":", new org.jpl7.Term[] { new org.jpl7.Atom(HELPERS),
+				new org.jpl7.Compound("invalidate_tables", new org.jpl7.Term[] { (org.jpl7.Term) this.name }) }));
+	}
+
+	// ***************** indexing methods ****************/
+
+	/**
+	 * Declares an index on one or more arguments of a predicate of this
+	 * database. SWI Prolog indexes the clauses of a predicate on their first
+	 * argument, and creates indexes on other (combinations of) arguments when
+	 * a call with these arguments bound is slow, while that call waits. The
+	 * indexes of a declared index are instead built when the predicate has
+	 * clauses inserted, together with the other write operations (so in the
+	 * background if the database has a writer, see
+	 * {@link #setAsyncWrites(boolean)}). If an indexed argument of the clauses
+	 * is a compound term, SWI Prolog indexes the arguments of that term too
+	 * (a deep index). The lookups that the index serves are counted as hits by
+	 * the {@link #getIndexAdvisor()}.
+	 *
+	 * @param signature
+	 *            The signature of the predicate, e.g. p/3.
+	 * @param arguments
+	 *            The positions of the arguments that are looked up together,
+	 *            starting at 1, in increasing order.
+	 * @return True iff the index was not declared yet.
+	 * @throws IllegalArgumentException
+	 *             If the signature or the positions are not valid.
+	 * @throws KRDatabaseException
+	 *             If performing the cached write operations failed.
+	 */
+	public boolean index(String signature, int... arguments) throws KRDatabaseException {
+		return declareIndex(new IndexAdvisor.Index(signature, arguments));
+	}
+
+	private synchronized boolean declareIndex(IndexAdvisor.Index index) throws KRDatabaseException {
+		if (!this.indexAdvisor.declare(index)) {
+			return false;
+		}
+		buildIndex(index);
+		return true;
+	}
+
+	/**
+	 * @return The advisor that observes the lookups of the predicates of this
+	 *         database, with the declared indexes and the hit/miss statistics.
+	 */
+	public IndexAdvisor getIndexAdvisor() {
+		return this.indexAdvisor;
+	}
+
+	/**
+	 * @param signature
+	 *            The signature of a predicate, e.g. p/3.
+	 * @return The indexes that SWI Prolog keeps for the predicate right now,
+	 *         e.g. single(2) or multi([2,3]). The first argument index only
+	 *         shows up once the predicate has a few clauses.
+	 * @throws KRQueryFailedException
+	 */
+	public List<String> getIndexes(String signature) throws KRQueryFailedException {
+		int slash = signature.lastIndexOf('/');
+		Term[] args = new Term[Integer.parseInt(signature.substring(slash + 1))];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = PrologImplFactory.getVar("_" + i, null);
+		}
+		PrologCompound head = PrologImplFactory.getCompound(signature.substring(0, slash), args, null);
+		Term indexed = PrologImplFactory.getVar("Indexed", null);
+		PrologCompound property = PrologImplFactory.getCompound("predicate_property",
+				new Term[] { prefix((Term) storedClause(head)),
+						PrologImplFactory.getCompound("indexed", new Term[] { indexed }, null) },
+				null);
+		flushWriteCache();
+		List<String> indexes = new ArrayList<>();
+		org.jpl7.Term value = rawbinding(property, indexed.toString());
+		if (value != null) {
+			for (org.jpl7.Term index : value.toTermArray()) {
+				indexes.add(fromJpl(index.arg(1)).toString());
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Caches an operation that builds the indexes of a declared index, if the
+	 * predicate has clauses.
+	 *
+	 * @param index
+	 *            The index.
+	 * @throws KRDatabaseException
+	 */
+	private synchronized void buildIndex(IndexAdvisor.Index index) throws KRDatabaseException {
+		for (DatabaseFormula formula : this.theory.getFormulas().getFormulas(index.getSignature())) {
+			org.jpl7.Term operation = buildIndexOperation(head(((PrologDBFormula) formula).getCompound()), index);
+			if (operation != null) {
+				addToWriteCache(operation);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Records that the indexes of a predicate have to be built again if a
+	 * clause is inserted for it that has declared indexes.
+	 *
+	 * @param clause
+	 *            The clause that is inserted.
+	 */
+	private synchronized void noteIndexChange(PrologCompound clause) {
+		PrologCompound head = head(clause);
+		if (this.indexAdvisor.isIndexed(head.getSignature())) {
+			this.unindexed.put(head.getSignature(), head);
+		}
+	}
+
+	/**
+	 * @return The operations that build the indexes of the predicates that
+	 *         had clauses inserted since their indexes were last built.
+	 */
+	private synchronized List<org.jpl7.Term> takeIndexOperations() {
+		if (this.unindexed.isEmpty()) {
+			return new ArrayList<>(0);
+		}
+		List<org.jpl7.Term> operations = new ArrayList<>();
+		for (PrologCompound head : this.unindexed.values()) {
+			for (IndexAdvisor.Index index : this.indexAdvisor.getDeclared(head.getSignature())) {
+				org.jpl7.Term operation = buildIndexOperation(head, index);
+				if (operation != null) {
+					operations.add(operation);
+				}
+			}
+		}
+		this.unindexed.clear();
+		return operations;
+	}
+
+	/**
+	 * @param head
+	 *            The head of a clause of the indexed predicate.
+	 * @param index
+	 *            The index.
+	 * @return The operation that looks up the clauses with the same indexed
+	 *         arguments as the head, which builds the indexes, as in
+	 *         <tt>c(kr_database:build_index(databaseName, p(_, b, c)))</tt>;
+	 *         or null if an indexed argument of the head is a variable.
+	 */
+	private org.jpl7.Term buildIndexOperation(PrologCompound head, IndexAdvisor.Index index) {
+		Term[] args = new Term[head.getArity()];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = PrologImplFactory.getVar("_" + i, null);
+		}
+		for (int argument : index.getArguments()) {
+			if (head.getArg(argument - 1) instanceof Var) {
+				return null;
+			}
+			args[argument - 1] = head.getArg(argument - 1);
+		}
+		PrologCompound template = PrologImplFactory.getCompound(head.getName(), args, null);
+		return operation("c", new org.jpl7.Compound(":", new org.jpl7.Term[] { new org.jpl7.Atom(HELPERS),
+				new org.jpl7.Compound("build_index",
+						new org.jpl7.Term[] { (org.jpl7.Term) this.name, storedClause(template) }) }));
+	}
+
+	/**
+	 * @param clause
+	 *            A clause.
+	 * @return The head of the clause.
+	 */
+	private static PrologCompound head(PrologCompound clause) {
+		boolean rule = clause.getArity() == 2 && ":-".equals(clause.getName());
+		return rule ? (PrologCompound) clause.getArg(0) : clause;
+	}
+
+	/**
+	 * @return true iff databases declare the indexes that are advised by their
+	 *         {@link IndexAdvisor} automatically.
 	 */
-	@Override
-	public boolean insert(DatabaseFormula formula) throws KRDatabaseException {
-		checkModifyable();
-		if (this.theory.add(formula)) {
-			insert(((PrologDBFormula) formula).getCompound());
-			return true;
-		} else {
-			return false;
-		}
+	public static synchronized boolean isAutoIndex() {
+		return autoIndex;
 	}
 
 	/**
-	 * Creates JPL term that wraps given term inside "assert(databaseName:term)" for
-	 * clauses, and just databaseName:term for directives (without the :-).
-	 * <p>
-	 * Prefix notation is used below to construct the assert term.
-	 * </p>
+	 * Sets whether databases declare the indexes that are advised by their
+	 * {@link IndexAdvisor} automatically, as if by
+	 * {@link #index(String, int...)}, when a query misses.
 	 *
-	 * @param formula
-	 *            The JPL term to be inserted.
-	 * @param database
-	 *            The database the term should be inserted into.
-	 * @throws KRDatabaseException
+	 * @param auto
+	 *            true to declare advised indexes automatically.
 	 */
-	private void insert(PrologCompound formula) throws KRDatabaseException {
-		checkModifyable();
-		PrologCompound query = null;
-		if (formula.isDirective()) {
-			formula = (PrologCompound) formula.getArg(0);
-			query = PrologImplFactory.getCompound(",",
-					new Term[] { PrologImplFactory.getAtom("true", null), prefix(formula) }, null);
-		} else {
-			query = PrologImplFactory.getCompound("assert", new Term[] { prefix(formula) }, null);
-		}
-		addToWriteCache(query);
+	public static synchronized void setAutoIndex(boolean auto) {
+		autoIndex = auto;
 	}
 
-	// ***************** delete methods ****************/
+	// ***************** update methods ****************/
 
 	/**
+	 * {@inheritDoc}
 	 * <p>
-	 * Deletes a formula from a SWI Prolog Database. You are responsible for
-	 * creating legal SWI prolog query. The formula will be prefixed with the label
-	 * of the database: the SWI prolog query will look like <br>
-	 * <tt>retract(&lt;database label>:&lt;formula>)</tt>
+	 * Write operations that were cached before are performed first. The
+	 * operations of the update are then performed with a single call of SWI
+	 * Prolog that undoes the operations it performed when one of them fails,
+	 * and the changes to the theory are undone as well. Clauses that are
+	 * erased and asserted again by such a rollback are moved to the end of
+	 * their predicate. Other threads that query this database see the state
+	 * before or after the update, but code that uses the module directly may
+	 * see the update in progress. An insert and a delete of the same formula
+	 * cancel out.
 	 * </p>
-	 *
-	 * @param formula
-	 *            is the DatabaseFormula to be retracted from SWI. ASSUMES formula
-	 *            can be argument of retract (fact, rules). CHECK rules need to be
-	 *            converted into string correctly! toString may be insufficient for
-	 *            SWI queries
-	 * @throws KRDatabaseException
 	 */
 	@Override
-	public boolean delete(DatabaseFormula formula) throws KRDatabaseException {
+	public synchronized void apply(Update update) throws KRDatabaseException {
 		checkModifyable();
-		if (this.theory.remove(formula)) {
-			delete(((PrologDBFormula) formula).getCompound());
-			return true;
-		} else {
-			return false;
+		while (this.writing || !this.writecache.isEmpty()) {
+			try {
+				flushWriteCache();
+			} catch (KRQueryFailedException e) {
+				throw new KRDatabaseException("failed to update database '" + this.name + "'", e);
+			}
+		}
+
+		// the theory is updated first; these are the changes to undo.
+		Map<DatabaseFormula, Long> deleted = new LinkedHashMap<>();
+		List<DatabaseFormula> inserted = new ArrayList<>();
+		Map<DatabaseFormula, Integer> erases = new HashMap<>();
+		List<org.jpl7.Term> operations = new ArrayList<>();
+		for (DatabaseFormula formula : update.getDeleteList()) {
+			Long id = this.theory.removeWithId(formula);
+			if (id != null) {
+				deleted.put(formula, id);
+				if (!((PrologDBFormula) formula).getCompound().isDirective()) {
+					noteTableChange(((PrologDBFormula) formula).getCompound());
+					erases.put(formula, operations.size());
+					operations.add(deleteOperation(formula, id));
+				}
+			}
+		}
+		for (DatabaseFormula formula : update.getAddList()) {
+			Long id = deleted.remove(formula);
+			if (id != null) {
+				// the clause of the formula has not been erased yet; keep it.
+				this.theory.add(formula, id);
+				Integer index = erases.remove(formula);
+				if (index != null) {
+					operations.set(index, null);
+					this.eliminatedWrites += 2;
+				}
+			} else if ((id = this.theory.addWithId(formula)) != null) {
+				inserted.add(formula);
+				PrologCompound compound = ((PrologDBFormula) formula).getCompound();
+				if (compound.isDirective()) {
+					declareTables((PrologCompound) compound.getArg(0));
+				} else {
+					noteTableChange(compound);
+					noteIndexChange(compound);
+				}
+				operations.add(insertOperation(compound, id));
+			}
+		}
+		if (this.tablesChanged) {
+			operations.add(invalidateTablesOperation());
+			this.tablesChanged = false;
+		}
+		operations.addAll(takeIndexOperations());
+
+		List<org.jpl7.Term> batch = new ArrayList<>(operations.size());
+		for (org.jpl7.Term operation : operations) {
+			if (operation != null) {
+				batch.add(operation);
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		KRQueryFailedException failure = null;
+		try {
+			if (!performAtomicBatch(batch)) {
+				failure = new KRQueryFailedException("a directive of the update failed");
+			}
+		} catch (KRQueryFailedException e) {
+			failure = e;
+		}
+		if (failure != null) {
+			if (!this.tabled.isEmpty()) {
+				// tables may have been computed while the update was performed.
+				this.tablesChanged = true;
+			}
+			for (DatabaseFormula formula : inserted) {
+				this.theory.remove(formula);
+			}
+			for (Entry<DatabaseFormula, Long> formula : deleted.entrySet()) {
+				this.theory.add(formula.getKey(), formula.getValue());
+			}
+			throw new KRDatabaseException(
+					"failed to update database '" + this.name + "'; the update has been rolled back", failure);
 		}
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		metrics.inserted(inserted.size());
+		metrics.deleted(deleted.size());
 	}
 
 	/**
-	 * Creates JPL term that wraps given term inside
-	 * "retractall(databaseName:term)".
-	 * <p>
-	 * Prefix notation is used below to construct the retract term.
-	 * </p>
+	 * @return The number of write operations that were never performed because
+	 *         an insert and a delete of the same formula cancelled out before
+	 *         the write cache was flushed.
+	 */
+	public synchronized long getEliminatedWrites() {
+		return this.eliminatedWrites;
+	}
+
+	/**
+	 * @param type
+	 *            The type of the operation: a(ssert), e(rase) or c(all).
+	 * @param args
+	 *            The arguments of the operation.
+	 * @return The JPL term for an operation in a batch of run_batch/2. These
+	 *         are only passed to SWI Prolog, so they are not converted to
+	 *         {@link Term}s.
+	 */
+	private static org.jpl7.Term operation(String type, org.jpl7.Term... args) {
+		return new org.jpl7.Compound(type, args);
+	}
+
+	/**
+	 * Defines the helper predicates in SWI Prolog, if that has not been done
+	 * yet, and compiles them (so they are static).
 	 *
-	 * @param formula
-	 *            The JPL term to be deleted.
-	 * @param database
-	 *            The database the term should be deleted from.
 	 * @throws KRDatabaseException
 	 */
-	private void delete(PrologCompound formula) throws KRDatabaseException {
-		checkModifyable();
-		PrologCompound retraction = PrologImplFactory.getCompound("retractall", new Term[] { prefix(formula) }, null);
-		addToWriteCache(retraction);
+	private static synchronized void defineHelpers() throws KRDatabaseException {
+		if (helpersDefined) {
+			return;
+		}
+		try {
+			for (String declaration : HELPER_DECLARATIONS) {
+				rawquery((PrologTerm) fromJpl(org.jpl7.Util.textToTerm(HELPERS + ":" + declaration)));
+			}
+			for (String clause : HELPER_CLAUSES) {
+				rawquery((PrologTerm) fromJpl(
+						org.jpl7.Util.textToTerm("assertz(" + HELPERS + ":(" + clause + "))")));
+			}
+			String signatures = "";
+			for (String signature : HELPER_PREDICATES) {
+				signatures += (signatures.isEmpty() ? "" : ",") + HELPERS + ":" + signature;
+			}
+			rawquery((PrologTerm) fromJpl(org.jpl7.Util.textToTerm("compile_predicates([" + signatures + "])")));
+			rawquery((PrologTerm) fromJpl(org.jpl7.Util.textToTerm("thread_create(" + HELPERS
+					+ ":watchdog([]), _, [alias(kr_watchdog), detached(true)])")));
+		} catch (KRQueryFailedException e) {
+			throw new KRDatabaseException("failed to define the helper predicates for databases", e);
+		}
+		helpersDefined = true;
 	}
 
 	/**
@@ -303,36 +1748,121 @@ public class PrologDatabase implements Database {
 		// Create JPL query.
 		org.jpl7.Query jplQuery = new org.jpl7.Query((org.jpl7.Compound) query);
 
-		// Get all solutions.
+		// Get all solutions (on an engine from the pool).
 		Map<String, org.jpl7.Term>[] solutions;
+		EnginePool.acquire();
 		try {
-			// EXCEPTION_ACCESS_VIOLATIONs can occur with multi-threading :(
-			synchronized (queryLock) {
-				solutions = jplQuery.allSolutions();
-			}
+			solutions = jplQuery.allSolutions();
 		} catch (org.jpl7.PrologException e) {
-			throw new PrologError(e);
+			throw PrologError.fromException(e);
 		} catch (Throwable e) {
 			// catch all other (runtime) exceptions and wrap into checked
 			// exception with general message
 			throw new KRQueryFailedException("swi prolog says the query " + jplQuery + " failed", e);
+		} finally {
+			EnginePool.release();
 		}
 
 		// Convert to PrologSubstitution.
 		Set<Substitution> substitutions = new LinkedHashSet<>(solutions.length);
 		for (Map<String, org.jpl7.Term> solution : solutions) {
-			PrologSubstitution subst = new PrologSubstitution();
-			for (Entry<String, org.jpl7.Term> entry : solution.entrySet()) {
-				Var var = PrologImplFactory.getVar(entry.getKey(), null);
-				Term term = fromJpl(entry.getValue());
-				subst.addBinding(var, term);
-			}
-			substitutions.add(subst);
+			substitutions.add(toSubstitution(solution));
 		}
 
 		return substitutions;
 	}
 
+	/**
+	 * A call to SWI Prolog that only checks if the query has a solution.
+	 *
+	 * @param query
+	 *            A JPL query.
+	 * @return true iff the query has at least one solution.
+	 * @throws KRQueryFailedException
+	 */
+	public static boolean rawholds(PrologTerm query) throws KRQueryFailedException {
+		return rawholds((org.jpl7.Compound) query);
+	}
+
+	/**
+	 * @param query
+	 *            A JPL query.
+	 * @return true iff the query has at least one solution.
+	 * @throws KRQueryFailedException
+	 */
+	private static boolean rawholds(org.jpl7.Compound query) throws KRQueryFailedException {
+		org.jpl7.Query jplQuery = new org.jpl7.Query(query);
+		EnginePool.acquire();
+		try {
+			return jplQuery.hasSolution();
+		} catch (org.jpl7.PrologException e) {
+			throw PrologError.fromException(e);
+		} catch (Throwable e) {
+			throw new KRQueryFailedException("swi prolog says the query " + jplQuery + " failed", e);
+		} finally {
+			EnginePool.release();
+		}
+	}
+
+	/**
+	 * A call to SWI Prolog that computes the first solution of the query and
+	 * only converts the binding of one variable.
+	 *
+	 * @param query
+	 *            A JPL query.
+	 * @param var
+	 *            The name of the variable whose value is needed.
+	 * @return The value of the variable, or null if the query has no solution.
+	 * @throws KRQueryFailedException
+	 */
+	static Term rawaggregate(PrologTerm query, String var) throws KRQueryFailedException {
+		org.jpl7.Term value = rawbinding(query, var);
+		return (value == null) ? null : fromJpl(value);
+	}
+
+	/**
+	 * A call to SWI Prolog that computes the first solution of the query and
+	 * returns the binding of one variable without converting it.
+	 *
+	 * @param query
+	 *            A JPL query.
+	 * @param var
+	 *            The name of the variable whose value is needed.
+	 * @return The JPL value of the variable, or null if the query has no
+	 *         solution.
+	 * @throws KRQueryFailedException
+	 */
+	private static org.jpl7.Term rawbinding(PrologTerm query, String var) throws KRQueryFailedException {
+		org.jpl7.Query jplQuery = new org.jpl7.Query((org.jpl7.Compound) query);
+		Map<String, org.jpl7.Term> solution;
+		EnginePool.acquire();
+		try {
+			solution = jplQuery.oneSolution();
+		} catch (org.jpl7.PrologException e) {
+			throw PrologError.fromException(e);
+		} catch (Throwable e) {
+			throw new KRQueryFailedException("swi prolog says the query " + jplQuery + " failed", e);
+		} finally {
+			EnginePool.release();
+		}
+		return (solution == null) ? null : solution.get(var);
+	}
+
+	/**
+	 * @param solution
+	 *            A JPL solution.
+	 * @return The corresponding {@link PrologSubstitution}.
+	 */
+	static Substitution toSubstitution(Map<String, org.jpl7.Term> solution) {
+		PrologSubstitution subst = new PrologSubstitution();
+		for (Entry<String, org.jpl7.Term> entry : solution.entrySet()) {
+			Var var = PrologImplFactory.getVar(entry.getKey(), null);
+			Term term = fromJpl(entry.getValue());
+			subst.addBinding(var, term);
+		}
+		return subst;
+	}
+
 	public static Term fromJpl(org.jpl7.Term term) {
 		if (term.isAtom()) {
 			org.jpl7.Atom atom = (org.jpl7.Atom) term;
@@ -373,9 +1903,28 @@ public class PrologDatabase implements Database {
 	 *
 	 * @throws KRDatabaseException
 	 */
-	protected void eraseContent() throws KRDatabaseException {
-		this.writecache = null;
-		this.cachecount = 0;
+	protected synchronized void eraseContent() throws KRDatabaseException {
+		while (this.writing) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KRDatabaseException("interrupted while erasing database '" + this.name + "'", e);
+			}
+		}
+		this.writecache.clear();
+		if (this.loadFile != null) {
+			// in case its operations have not been performed.
+			this.loadFile.delete();
+			this.loadFile = null;
+		}
+		this.pendingAsserts.clear();
+		this.pendingErases.clear();
+		this.unindexed.clear();
+		if (!this.materialized) {
+			// there is nothing in SWI Prolog yet.
+			return;
+		}
 		// String deleteone =
 		// "("
 		// + this.name + ":current_predicate(Predicate, Head),"
@@ -411,23 +1960,208 @@ public class PrologDatabase implements Database {
 		PrologCompound conj2345 = PrologImplFactory.getCompound(",", new Term[] { not_built_in, conj345 }, null);
 		PrologCompound query = PrologImplFactory.getCompound(",", new Term[] { db_current, conj2345 }, null);
 
+		// also forget the clause references, see HELPERS.
+		PrologCompound forget = PrologImplFactory.getCompound("forget_clauses", new Term[] { this.name }, null);
+		PrologCompound helpers = PrologImplFactory.getAtom(HELPERS, null);
+
 		try {
 			rawquery(query);
+			rawquery(PrologImplFactory.getCompound(":", new Term[] { helpers, forget }, null));
+			if (!this.tabled.isEmpty()) {
+				// forget the tables, see table(String, int).
+				PrologCompound tables = PrologImplFactory.getCompound("tabled", new Term[] { this.name, anon }, null);
+				PrologCompound retractTables = PrologImplFactory.getCompound("retractall", new Term[] { tables },
+						null);
+				PrologCompound invalidate = PrologImplFactory.getCompound("invalidate_tables",
+						new Term[] { this.name }, null);
+				rawquery(PrologImplFactory.getCompound(":", new Term[] { helpers, retractTables }, null));
+				rawquery(PrologImplFactory.getCompound(":", new Term[] { helpers, invalidate }, null));
+			}
 		} catch (KRQueryFailedException e) {
 			throw new KRDatabaseException("erasing the contents of database '" + this.name + "' failed.", e);
 		}
 	}
 
-	// NEW: MERGE ALL ASSERTS AND RETRACTS...
-	private void addToWriteCache(PrologCompound formula) throws KRDatabaseException {
-		if (this.writecache == null) {
-			this.writecache = formula;
-		} else {
-			this.writecache = PrologImplFactory.getCompound(",", new Term[] { this.writecache, formula },
-					formula.getSourceInfo());
+	/**
+	 * @return The maximum number of write operations that are cached before
+	 *         they are performed.
+	 */
+	public static synchronized int getWriteBatchSize() {
+		return writeBatchSize;
+	}
+
+	/**
+	 * Sets the maximum number of write operations that are cached before they
+	 * are performed. A cache is also performed before every query. Larger
+	 * batches need fewer calls to SWI Prolog; the batch is passed as the
+	 * arguments of a single compound, so any size is safe for the stack.
+	 *
+	 * @param size
+	 *            The new batch size, at least 1.
+	 */
+	public static synchronized void setWriteBatchSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("the write batch size should be at least 1 but is " + size);
+		}
+		writeBatchSize = size;
+	}
+
+	/**
+	 * @return The minimum number of formulas in the initial content of a
+	 *         database for it to be loaded from a file, or 0 if that is never
+	 *         done.
+	 */
+	public static synchronized int getBulkLoadSize() {
+		return bulkLoadSize;
+	}
+
+	/**
+	 * Sets the minimum number of formulas in the initial content of a database
+	 * for it to be loaded from a file. SWI Prolog then reads and performs all
+	 * inserts with a single call when the database is materialized, instead of
+	 * receiving every clause through JPL. Smaller content is not worth the file.
+	 *
+	 * @param size
+	 *            The new minimum, or 0 to always insert the formulas one by
+	 *            one.
+	 */
+	public static synchronized void setBulkLoadSize(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("the bulk load size should not be negative but is " + size);
+		}
+		bulkLoadSize = size;
+	}
+
+	/**
+	 * @return The directory with the compiled content of static databases, or
+	 *         null if their content is not compiled.
+	 */
+	public static synchronized File getQlfCacheDirectory() {
+		return qlfCacheDirectory;
+	}
+
+	/**
+	 * Sets the directory where the content of static databases that are
+	 * created from now on is compiled to SWI Prolog's quick load format. A
+	 * compiled file is named after the content, the version of SWI Prolog and
+	 * the name of the database, so a database that is created again with the
+	 * same content, e.g. by a later run of the same program, loads its file
+	 * instead of performing all inserts. Compiling takes longer than
+	 * performing them, but loading takes much less. Files for content that is
+	 * no longer used are not removed.
+	 *
+	 * @param directory
+	 *            The cache directory, which is created if it does not exist,
+	 *            or null to not compile the content.
+	 */
+	public static synchronized void setQlfCacheDirectory(File directory) {
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("the QLF cache directory '" + directory + "' can not be created");
+		}
+		qlfCacheDirectory = directory;
+	}
+
+	/**
+	 * @return The version of SWI Prolog, as in its flag <tt>version</tt>.
+	 * @throws KRDatabaseException
+	 *             If the version can not be obtained.
+	 */
+	private static synchronized String getVersion() throws KRDatabaseException {
+		if (version == null) {
+			try {
+				version = rawaggregate((PrologTerm) fromJpl(org.jpl7.Util.textToTerm("current_prolog_flag(version, V)")),
+						"V").toString();
+			} catch (KRQueryFailedException e) {
+				throw new KRDatabaseException("failed to obtain the version of SWI Prolog", e);
+			}
+		}
+		return version;
+	}
+
+	/**
+	 * @return true iff new databases perform their write operations in the
+	 *         background.
+	 */
+	public static synchronized boolean isAsyncWrites() {
+		return asyncWrites;
+	}
+
+	/**
+	 * Sets whether databases that are created from now on perform their write
+	 * operations in the background. Such a (non-static) database has its own
+	 * writer thread that performs the cached operations in batches as soon as
+	 * possible, instead of before the next query. A query then only waits for
+	 * the operations that were issued before it and have not been performed
+	 * yet. Inserts and deletes wait when the writer falls behind by more than a
+	 * few batches.
+	 * <p>
+	 * The writer needs an engine from the {@link EnginePool}, so a thread that
+	 * keeps a {@link SolutionIterator} open should not query a database whose
+	 * writes are still pending when the pool has only one engine.
+	 * </p>
+	 *
+	 * @param async
+	 *            true to perform writes in the background.
+	 */
+	public static synchronized void setAsyncWrites(boolean async) {
+		asyncWrites = async;
+	}
+
+	/**
+	 * Creates the SWI Prolog module of this database and loads its initial
+	 * content, if that has not been done yet. This happens automatically when
+	 * the database is first queried or when its write cache is full; this
+	 * method is only needed by code that uses the module (see
+	 * {@link #getJPLName()}) directly.
+	 *
+	 * @throws KRDatabaseException
+	 *             If creating the module or loading the content failed.
+	 */
+	public void materialize() throws KRDatabaseException {
+		if (!isMaterialized()) {
+			try {
+				flushWriteCache();
+			} catch (KRQueryFailedException e) {
+				throw new KRDatabaseException("Failed to initialize database", e);
+			}
 		}
-		if (++this.cachecount == Byte.MAX_VALUE) {
-			try { // prevents stackoverflows
+	}
+
+	/**
+	 * @return true iff the SWI Prolog module of this database has been created,
+	 *         see {@link #materialize()}.
+	 */
+	public synchronized boolean isMaterialized() {
+		return this.materialized;
+	}
+
+	/**
+	 * @return The number of databases that were destroyed without ever
+	 *         creating their SWI Prolog module.
+	 */
+	public static synchronized long getNeverMaterialized() {
+		return neverMaterialized;
+	}
+
+	// NEW: MERGE ALL ASSERTS AND RETRACTS...
+	private synchronized void addToWriteCache(org.jpl7.Term operation) throws KRDatabaseException {
+		this.writecache.add(operation);
+		this.issuedWrites++;
+		if (this.loading) {
+			// performed when the database is first used.
+		} else if (this.writer != null && this.materialized) {
+			notifyAll();
+			// back pressure: wait for the writer to catch up.
+			while (this.writecache.size() >= MAX_PENDING_BATCHES * getWriteBatchSize() && this.writer.isAlive()) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new KRDatabaseException("interrupted while waiting for database '" + this.name + "'", e);
+				}
+			}
+		} else if (this.writecache.size() >= getWriteBatchSize()) {
+			try {
 				flushWriteCache();
 			} catch (KRQueryFailedException e) {
 				throw new KRDatabaseException("", e);
@@ -436,13 +2170,170 @@ public class PrologDatabase implements Database {
 	}
 
 	// ... TO EXECUTE THEM ALLTOGETHER AT (BEFORE) THE NEXT QUERY
+	/**
+	 * Makes sure that all write operations that have been issued so far are
+	 * performed: performs them if no other thread is doing so, or waits for
+	 * the thread that is.
+	 *
+	 * @throws KRQueryFailedException
+	 *             If performing the operations failed, also if they were
+	 *             performed by the writer.
+	 */
 	private void flushWriteCache() throws KRQueryFailedException {
-		if (this.writecache != null) {
+		while (true) {
+			List<org.jpl7.Term> operations;
+			synchronized (this) {
+				long target = this.issuedWrites;
+				while (this.writing && this.performedWrites < target) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new KRQueryFailedException("interrupted while waiting for database '" + this.name + "'",
+								e);
+					}
+				}
+				if (this.writeFailure != null) {
+					KRQueryFailedException failure = this.writeFailure;
+					this.writeFailure = null;
+					throw new KRQueryFailedException("writing to database '" + this.name + "' failed", failure);
+				}
+				if (this.performedWrites >= target) {
+					return;
+				}
+				operations = takeWrites();
+			}
+			performWrites(operations);
+		}
+	}
+
+	/**
+	 * Takes all operations from the write cache; the calling thread must
+	 * perform them with {@link #performWrites(List)}.
+	 *
+	 * @return The cached operations.
+	 */
+	private synchronized List<org.jpl7.Term> takeWrites() {
+		if (this.tablesChanged) {
+			this.writecache.add(invalidateTablesOperation());
+			this.issuedWrites++;
+			this.tablesChanged = false;
+		}
+		List<org.jpl7.Term> indexes = takeIndexOperations();
+		this.writecache.addAll(indexes);
+		this.issuedWrites += indexes.size();
+		List<org.jpl7.Term> operations = new ArrayList<>(this.writecache);
+		this.writecache.clear();
+		this.pendingAsserts.clear();
+		this.pendingErases.clear();
+		this.writing = true;
+		this.materialized = true;
+		notifyAll();
+		return operations;
+	}
+
+	/**
+	 * Performs operations taken from the write cache, in batches of at most
+	 * {@link #getWriteBatchSize()} operations.
+	 *
+	 * @param operations
+	 *            The operations, where null is an operation that was cancelled
+	 *            out.
+	 * @throws KRQueryFailedException
+	 */
+	private void performWrites(List<org.jpl7.Term> operations) throws KRQueryFailedException {
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startFlush();
+		try {
+			int batchSize = getWriteBatchSize();
+			List<org.jpl7.Term> batch = new ArrayList<>(Math.min(batchSize, operations.size()));
+			for (int i = 0; i < operations.size(); i++) {
+				if (operations.get(i) != null) {
+					batch.add(operations.get(i));
+				}
+				if (!batch.isEmpty() && (batch.size() == batchSize || i == operations.size() - 1)) {
+					performBatch(batch);
+					batch.clear();
+				}
+			}
+			metrics.endFlush(start, operations.size());
+		} finally {
+			synchronized (this) {
+				this.performedWrites += operations.size();
+				this.writing = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @param batch
+	 *            Operations to perform with a single call of
+	 *            <tt>kr_database:run_batch(databaseName, ops(Op1, ..., OpN))</tt>;
+	 *            a compound rather than a list, as JPL converts lists
+	 *            recursively.
+	 * @throws KRQueryFailedException
+	 */
+	private void performBatch(List<org.jpl7.Term> batch) throws KRQueryFailedException {
+		org.jpl7.Compound call = new org.jpl7.Compound("run_batch", new org.jpl7.Term[] { (org.jpl7.Term) this.name,
+				new org.jpl7.Compound("ops", batch.toArray(new org.jpl7.Term[batch.size()])) });
+		rawholds(new org.jpl7.Compound(":", new org.jpl7.Term[] { new org.jpl7.Atom(HELPERS), call }));
+	}
+
+	/**
+	 * @param batch
+	 *            Operations to perform as a unit with a single call of
+	 *            <tt>kr_database:run_atomic(databaseName, ops(Op1, ..., OpN))</tt>,
+	 *            see {@link #performBatch(List)}.
+	 * @return false iff an operation failed; the operations have then been
+	 *         undone.
+	 * @throws KRQueryFailedException
+	 *             If an operation raised an exception; the operations have then
+	 *             been undone.
+	 */
+	private boolean performAtomicBatch(List<org.jpl7.Term> batch) throws KRQueryFailedException {
+		org.jpl7.Compound call = new org.jpl7.Compound("run_atomic", new org.jpl7.Term[] { (org.jpl7.Term) this.name,
+				new org.jpl7.Compound("ops", batch.toArray(new org.jpl7.Term[batch.size()])) });
+		return rawholds(new org.jpl7.Compound(":", new org.jpl7.Term[] { new org.jpl7.Atom(HELPERS), call }));
+	}
+
+	/**
+	 * Performs the write operations of this database in the background, as soon
+	 * as they are cached. Operations that are cached while a batch is performed
+	 * are taken together in the next one.
+	 */
+	private class Writer extends Thread {
+		Writer() {
+			super("SWI writer " + PrologDatabase.this.name);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
 			try {
-				rawquery(this.writecache);
+				while (true) {
+					List<org.jpl7.Term> operations;
+					synchronized (PrologDatabase.this) {
+						while (PrologDatabase.this.writing || PrologDatabase.this.writecache.isEmpty()
+								|| !PrologDatabase.this.materialized) {
+							PrologDatabase.this.wait();
+						}
+						operations = takeWrites();
+					}
+					try {
+						performWrites(operations);
+					} catch (KRQueryFailedException e) {
+						synchronized (PrologDatabase.this) {
+							PrologDatabase.this.writeFailure = e;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// the database is destroyed.
 			} finally {
-				this.writecache = null;
-				this.cachecount = 0;
+				synchronized (PrologDatabase.this) {
+					PrologDatabase.this.notifyAll();
+				}
 			}
 		}
 	}
@@ -469,7 +2360,7 @@ public class PrologDatabase implements Database {
 			if (other.name != null) {
 				return false;
 			}
-		} else if (this.name.equals(other.name)) {
+		} else if (!this.name.equals(other.name)) {
 			return false;
 		}
 		return true;
@@ -0,0 +1,144 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.database;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import krTools.database.SolutionIterator;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.Substitution;
+import krTools.metrics.DatabaseMetrics;
+import swiprolog.errors.PrologError;
+import swiprolog.language.PrologTerm;
+
+/**
+ * Pulls the solutions of a JPL query one at a time, converting each solution
+ * only when it is requested.
+ * <p>
+ * The open query keeps an engine of the {@link EnginePool} attached to the
+ * thread that created this iterator until the last solution has been read or
+ * the iterator is closed. The iterator must be used and closed on that same
+ * thread. Other queries can be performed on that thread in the mean time, but
+ * they must be finished before this iterator is used again.
+ * </p>
+ * <p>
+ * If metrics are given, the query is recorded when the iterator is closed,
+ * with the time from its creation and the number of solutions returned.
+ * </p>
+ */
+class PrologSolutionIterator implements SolutionIterator {
+	/**
+	 * The JPL query that computes the solutions.
+	 */
+	private final org.jpl7.Query jplQuery;
+	/**
+	 * The solution that has been fetched but not been returned yet, if any.
+	 */
+	private Map<String, org.jpl7.Term> solution;
+	/**
+	 * True once the query has been closed.
+	 */
+	private boolean closed = false;
+	/**
+	 * The metrics to record the query in, or null.
+	 */
+	private final DatabaseMetrics metrics;
+	/**
+	 * The start of the query, see {@link DatabaseMetrics#startQuery()}.
+	 */
+	private final long start;
+	/**
+	 * The number of solutions returned so far.
+	 */
+	private int count = 0;
+
+	/**
+	 * @param query
+	 *            A JPL query.
+	 * @throws KRQueryFailedException
+	 *             If no engine could be obtained.
+	 */
+	PrologSolutionIterator(PrologTerm query) throws KRQueryFailedException {
+		this(query, null);
+	}
+
+	/**
+	 * @param query
+	 *            A JPL query.
+	 * @param metrics
+	 *            The metrics to record the query in when this iterator is
+	 *            closed, or null.
+	 * @throws KRQueryFailedException
+	 *             If no engine could be obtained.
+	 */
+	PrologSolutionIterator(PrologTerm query, DatabaseMetrics metrics) throws KRQueryFailedException {
+		this.metrics = metrics;
+		this.start = (metrics == null) ? 0 : metrics.startQuery();
+		this.jplQuery = new org.jpl7.Query((org.jpl7.Compound) query);
+		EnginePool.acquire();
+	}
+
+	@Override
+	public boolean hasNext() throws KRQueryFailedException {
+		if (this.solution == null && !this.closed) {
+			try {
+				if (this.jplQuery.hasMoreSolutions()) {
+					this.solution = this.jplQuery.nextSolution();
+				} else {
+					close();
+				}
+			} catch (org.jpl7.PrologException e) {
+				close();
+				throw PrologError.fromException(e);
+			} catch (Throwable e) {
+				close();
+				throw new KRQueryFailedException("swi prolog says the query " + this.jplQuery + " failed", e);
+			}
+		}
+		return this.solution != null;
+	}
+
+	@Override
+	public Substitution next() throws KRQueryFailedException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Substitution next = PrologDatabase.toSubstitution(this.solution);
+		this.solution = null;
+		this.count++;
+		return next;
+	}
+
+	@Override
+	public void close() {
+		if (!this.closed) {
+			this.closed = true;
+			try {
+				if (this.jplQuery.isOpen()) {
+					this.jplQuery.close();
+				}
+			} finally {
+				EnginePool.release();
+				if (this.metrics != null) {
+					this.metrics.endQuery(this.start, this.count);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.database;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns the write operations (see {@link PrologDatabase}) that load the
+ * content of a static database into a source file that SWI Prolog compiles to
+ * its quick load format (QLF), and names the compiled files in a cache
+ * directory after their content, the SWI Prolog version and the module they
+ * are loaded into. SWI Prolog only loads a (non-module) file into one module
+ * at a time, so the module is part of the name.
+ * <p>
+ * The clauses of the source file are preceded by a declaration that makes
+ * their predicates dynamic, like asserting them would, and its directives are
+ * performed like the operations of the write cache by the helper
+ * <tt>load_op/1</tt>. The source has no clause references, as the clauses of
+ * a static database are never deleted one by one.
+ * </p>
+ */
+final class QlfCache {
+	/**
+	 * This is a utility class.
+	 */
+	private QlfCache() {
+	}
+
+	/**
+	 * @param operations
+	 *            Operations like <tt>a(Id, Clause)</tt> and <tt>c(Goal)</tt>.
+	 * @param helpers
+	 *            The name of the module of the helper predicates.
+	 * @return The text of a source file that does the same when it is loaded.
+	 * @throws IllegalArgumentException
+	 *             If an operation can not be written to a file, e.g. because
+	 *             it is a grammar rule, which would be translated when it is
+	 *             loaded.
+	 */
+	static String source(List<org.jpl7.Term> operations, String helpers) {
+		StringBuilder source = new StringBuilder(":- encoding(utf8).\n:- style_check(-singleton).\n");
+		Set<String> declared = new HashSet<>();
+		for (org.jpl7.Term operation : operations) {
+			if (operation.hasFunctor("c", 1)) {
+				org.jpl7.Term load = new org.jpl7.Compound(":",
+						new org.jpl7.Term[] { new org.jpl7.Atom(helpers),
+								new org.jpl7.Compound("load_op", new org.jpl7.Term[] { operation }) });
+				source.append(":- ");
+				OperationFile.append(load, source);
+				source.append(".\n");
+				continue;
+			}
+			org.jpl7.Term clause = operation.arg(2);
+			org.jpl7.Term head = (clause.isCompound() && clause.hasFunctor(":-", 2)) ? clause.arg(1) : clause;
+			if (head.isCompound() && head.hasFunctor("-->", 2)) {
+				throw new IllegalArgumentException("grammar rule '" + clause + "' can not be loaded from a file");
+			}
+			if (declared.add(head.name() + "/" + head.arity())) {
+				org.jpl7.Term indicator = new org.jpl7.Compound("/",
+						new org.jpl7.Term[] { new org.jpl7.Atom(head.name()), new org.jpl7.Integer(head.arity()) });
+				source.append(":- ");
+				OperationFile.append(new org.jpl7.Compound("dynamic", new org.jpl7.Term[] { indicator }), source);
+				source.append(".\n");
+			}
+			OperationFile.append(clause, source);
+			source.append(".\n");
+		}
+		return source.toString();
+	}
+
+	/**
+	 * @param directory
+	 *            The cache directory.
+	 * @param version
+	 *            The version of SWI Prolog.
+	 * @param module
+	 *            The module that the file is loaded into.
+	 * @param source
+	 *            The text of the source file, see {@link #source(List, String)}.
+	 * @return The compiled file for the source, which may not exist yet.
+	 */
+	static File compiled(File directory, String version, String module, String source) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256.
+			throw new IllegalStateException(e);
+		}
+		digest.update(version.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(module.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(source.getBytes(StandardCharsets.UTF_8));
+		StringBuilder name = new StringBuilder("kr-");
+		for (byte b : digest.digest()) {
+			name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return new File(directory, name.append(".qlf").toString());
+	}
+
+	/**
+	 * Writes a source file to compile, with a unique name so that processes
+	 * that compile the same content at the same time do not interfere.
+	 *
+	 * @param compiled
+	 *            The compiled file, see {@link #compiled(File, String, String, String)}.
+	 * @param source
+	 *            The text of the source file.
+	 * @return The new source file, which is deleted when the JVM exits if it
+	 *         still exists.
+	 * @throws IOException
+	 *             If the file could not be written.
+	 */
+	static File write(File compiled, String source) throws IOException {
+		String name = compiled.getName();
+		File file = File.createTempFile(name.substring(0, name.length() - ".qlf".length()) + "-", ".pl",
+				compiled.getParentFile());
+		file.deleteOnExit();
+		try (Writer out = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			out.write(source);
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+		return file;
+	}
+}
@@ -17,11 +17,24 @@
 
 package swiprolog.database;
 
+import java.util.AbstractSet;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import krTools.language.DatabaseFormula;
+import swiprolog.language.PrologCompound;
+import swiprolog.language.PrologDBFormula;
 
 /**
  * Represents a set of formulas that have been inserted into a corresponding
@@ -40,29 +53,144 @@ import krTools.language.DatabaseFormula;
  * databases maintained by the underlying knowledge technology such as Prolog. -
  * avoid duplication of clauses or facts in a database (a Theory itself is a
  * set).
+ *
+ * Every formula is given a number that is unique within the theory. The
+ * database uses it to find the clause that was asserted for the formula.
+ *
+ * The formulas are kept per signature of the predicate they define (see
+ * {@link #getSignature(DatabaseFormula)}). Changes to different signatures do
+ * not wait for each other. {@link #getFormulas()} returns an immutable
+ * {@link Snapshot}; it shares the formulas of every signature with the theory
+ * until that signature is changed again, which then copies them first. The
+ * snapshot returns the formulas in the order of their numbers, i.e. the order
+ * in which they were added, like the clauses in the database.
  */
 public class Theory {
 	/**
-	 * The formulas in this {@link Theory}.
+	 * The formulas in this {@link Theory}, with their numbers, by signature in
+	 * the order in which the signatures were first added. Guarded by itself.
 	 */
-	private final Set<DatabaseFormula> content;
+	private final Map<String, Stripe> content = new LinkedHashMap<>();
+	/**
+	 * Changes share this lock, taking a snapshot takes it exclusively.
+	 */
+	private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+	/**
+	 * The last snapshot that was taken, or null if the theory changed since.
+	 */
+	private volatile Snapshot snapshot = null;
+	/**
+	 * The number of the last formula that was added.
+	 */
+	private final AtomicLong lastId = new AtomicLong();
 
 	/**
-	 * Creates a theory and adds all given formulas to it.
-	 *
-	 * @param formulas A collection of formulas to set the theory's initial content.
+	 * Creates an empty theory.
 	 */
 	public Theory() {
-		this.content = new LinkedHashSet<>();
 	}
 
 	/**
-	 * Returns the set of all formulas that are part of this theory.
+	 * Returns the set of all formulas that are part of this theory. The set
+	 * does not change when the theory changes, so it can be used while the
+	 * theory is being changed.
+	 *
+	 * @return the {@link DatabaseFormula}s in this theory, in the order in
+	 *         which they were added.
+	 */
+	public Snapshot getFormulas() {
+		Snapshot current = this.snapshot;
+		if (current != null) {
+			return current;
+		}
+		this.snapshotLock.writeLock().lock();
+		try {
+			if (this.snapshot == null) {
+				Map<String, Numbered> formulas = new LinkedHashMap<>();
+				synchronized (this.content) {
+					for (Map.Entry<String, Stripe> stripe : this.content.entrySet()) {
+						Numbered shared = stripe.getValue().share();
+						if (!shared.isEmpty()) {
+							formulas.put(stripe.getKey(), shared);
+						}
+					}
+				}
+				this.snapshot = new Snapshot(formulas);
+			}
+			return this.snapshot;
+		} finally {
+			this.snapshotLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param signature
+	 *            A signature, e.g. p/1.
+	 * @return the number of formulas in this theory that define the predicate
+	 *         with the given signature.
+	 */
+	public int getCount(String signature) {
+		Stripe stripe = getStripe(signature, false);
+		return (stripe == null) ? 0 : stripe.size();
+	}
+
+	/**
+	 * @param signature
+	 *            A signature.
+	 * @param create
+	 *            true if the stripe should be created if there is none.
+	 * @return The stripe of the signature, or null if there is none and none
+	 *         should be created.
+	 */
+	private Stripe getStripe(String signature, boolean create) {
+		synchronized (this.content) {
+			Stripe stripe = this.content.get(signature);
+			if (stripe == null && create) {
+				stripe = new Stripe();
+				this.content.put(signature, stripe);
+			}
+			return stripe;
+		}
+	}
+
+	/**
+	 * @param formula
+	 *            A formula.
+	 * @return The signature of the predicate that is defined by the formula;
+	 *         for a rule the signature of its head. Directives all have the
+	 *         signature :-/1.
+	 */
+	public static String getSignature(DatabaseFormula formula) {
+		if (formula instanceof PrologDBFormula) {
+			PrologCompound compound = ((PrologDBFormula) formula).getCompound();
+			if (compound.getArity() == 2 && compound.getName().equals(":-")) {
+				return compound.getArg(0).getSignature();
+			}
+		}
+		return formula.getSignature();
+	}
+
+	/**
+	 * Creates a theory with the same formulas and numbers as this one, that
+	 * can be changed independently. The formulas of every signature are shared
+	 * until either theory changes them.
 	 *
-	 * @return the {@link DatabaseFormula}s in this theory.
+	 * @return A copy of this theory.
 	 */
-	public Set<DatabaseFormula> getFormulas() {
-		return Collections.unmodifiableSet(this.content);
+	Theory fork() {
+		Theory copy = new Theory();
+		this.snapshotLock.writeLock().lock();
+		try {
+			synchronized (this.content) {
+				for (Map.Entry<String, Stripe> stripe : this.content.entrySet()) {
+					copy.content.put(stripe.getKey(), new Stripe(stripe.getValue().share()));
+				}
+			}
+			copy.lastId.set(this.lastId.get());
+		} finally {
+			this.snapshotLock.writeLock().unlock();
+		}
+		return copy;
 	}
 
 	// *************** insertion methods *************/
@@ -76,8 +204,47 @@ public class Theory {
 	 * @return <code>true</code> if the theory changed; <code>false</code>
 	 *         otherwise.
 	 */
-	synchronized boolean add(DatabaseFormula formula) {
-		return this.content.add(formula);
+	boolean add(DatabaseFormula formula) {
+		return addWithId(formula) != null;
+	}
+
+	/**
+	 * Adds a formula to this {@link Theory} like {@link #add(DatabaseFormula)}.
+	 *
+	 * @param formula The formula.
+	 *
+	 * @return The number given to the formula, or {@code null} if the formula
+	 *         already occurs in the theory.
+	 */
+	Long addWithId(DatabaseFormula formula) {
+		Long id = this.lastId.incrementAndGet();
+		return add(formula, id) ? id : null;
+	}
+
+	/**
+	 * Adds a formula to this {@link Theory} with the given number, if it not
+	 * already occurs in the theory. Used when a formula is added again before
+	 * its clause was removed from the database.
+	 *
+	 * @param formula The formula.
+	 * @param id      The number the formula had before it was removed.
+	 *
+	 * @return <code>true</code> if the theory changed; <code>false</code>
+	 *         otherwise.
+	 */
+	boolean add(DatabaseFormula formula, long id) {
+		String signature = getSignature(formula);
+		this.snapshotLock.readLock().lock();
+		try {
+			if (getStripe(signature, true).put(formula, id)) {
+				this.snapshot = null;
+				return true;
+			} else {
+				return false;
+			}
+		} finally {
+			this.snapshotLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -88,8 +255,23 @@ public class Theory {
 	 *
 	 * @return {@code true} if theory changed; {@code false} otherwise.
 	 */
-	synchronized boolean add(Set<DatabaseFormula> content) {
-		return this.content.addAll(content);
+	boolean add(Set<DatabaseFormula> content) {
+		boolean changed = false;
+		for (DatabaseFormula formula : content) {
+			changed |= add(formula);
+		}
+		return changed;
+	}
+
+	/**
+	 * @param formula A formula.
+	 *
+	 * @return The number that was given to the formula when it was added, or
+	 *         {@code null} if the formula is not in this theory.
+	 */
+	Long getId(DatabaseFormula formula) {
+		Stripe stripe = getStripe(getSignature(formula), false);
+		return (stripe == null) ? null : stripe.get(formula);
 	}
 
 	// *************** deletion methods *************/
@@ -102,15 +284,45 @@ public class Theory {
 	 * @return true if the theory contained formula as element and it has been
 	 *         successfully removed.
 	 */
-	synchronized boolean remove(DatabaseFormula formula) {
-		return this.content.remove(formula);
+	boolean remove(DatabaseFormula formula) {
+		return removeWithId(formula) != null;
+	}
+
+	/**
+	 * Removes a formula like {@link #remove(DatabaseFormula)}.
+	 *
+	 * @param formula formula to be removed from theory.
+	 * @return The number of the formula that was removed, or {@code null} if
+	 *         the formula is not in this theory.
+	 */
+	Long removeWithId(DatabaseFormula formula) {
+		String signature = getSignature(formula);
+		this.snapshotLock.readLock().lock();
+		try {
+			Stripe stripe = getStripe(signature, false);
+			Long id = (stripe == null) ? null : stripe.remove(formula);
+			if (id != null) {
+				this.snapshot = null;
+			}
+			return id;
+		} finally {
+			this.snapshotLock.readLock().unlock();
+		}
 	}
 
 	/**
 	 * Erases all content in the theory.
 	 */
-	synchronized void eraseContent() {
-		this.content.clear();
+	void eraseContent() {
+		this.snapshotLock.writeLock().lock();
+		try {
+			synchronized (this.content) {
+				this.content.clear();
+			}
+			this.snapshot = null;
+		} finally {
+			this.snapshotLock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -119,7 +331,7 @@ public class Theory {
 	@Override
 	public String toString() {
 		String text = "";
-		for (DatabaseFormula formula : this.content) {
+		for (DatabaseFormula formula : getFormulas()) {
 			text += formula.toString() + ".\n";
 		}
 		return text;
@@ -127,7 +339,7 @@ public class Theory {
 
 	@Override
 	public int hashCode() {
-		return this.content.hashCode();
+		return getFormulas().hashCode();
 	}
 
 	@Override
@@ -138,13 +350,244 @@ public class Theory {
 			return false;
 		}
 		Theory other = (Theory) obj;
-		if (this.content == null) {
-			if (other.content != null) {
+		return getFormulas().equals(other.getFormulas());
+	}
+
+	/**
+	 * The formulas of one signature, in the order of their numbers. After
+	 * {@link #share()}, they are copied before they are changed again.
+	 */
+	private static class Stripe {
+		private Numbered formulas;
+		private boolean shared;
+
+		Stripe() {
+			this.formulas = new Numbered();
+			this.shared = false;
+		}
+
+		/**
+		 * @param formulas
+		 *            formulas that are shared with another stripe.
+		 */
+		Stripe(Numbered formulas) {
+			this.formulas = formulas;
+			this.shared = true;
+		}
+
+		synchronized boolean put(DatabaseFormula formula, long id) {
+			if (this.formulas.ids.containsKey(formula)) {
 				return false;
 			}
-		} else if (!this.content.equals(other.content)) {
-			return false;
+			unshare();
+			this.formulas.ids.put(formula, id);
+			this.formulas.order.put(id, formula);
+			return true;
+		}
+
+		synchronized Long get(DatabaseFormula formula) {
+			return this.formulas.ids.get(formula);
+		}
+
+		synchronized Long remove(DatabaseFormula formula) {
+			if (!this.formulas.ids.containsKey(formula)) {
+				return null;
+			}
+			unshare();
+			Long id = this.formulas.ids.remove(formula);
+			this.formulas.order.remove(id);
+			return id;
+		}
+
+		synchronized int size() {
+			return this.formulas.size();
+		}
+
+		synchronized Numbered share() {
+			this.shared = true;
+			return this.formulas;
+		}
+
+		private void unshare() {
+			if (this.shared) {
+				this.formulas = new Numbered(this.formulas);
+				this.shared = false;
+			}
+		}
+	}
+
+	/**
+	 * Formulas with their numbers, that iterate in the order of their numbers.
+	 * A formula that is added again with its old number (see
+	 * {@link Theory#add(DatabaseFormula, long)}) thus returns to its place.
+	 */
+	private static final class Numbered extends AbstractSet<DatabaseFormula> {
+		private final Map<DatabaseFormula, Long> ids;
+		private final TreeMap<Long, DatabaseFormula> order;
+
+		Numbered() {
+			this.ids = new HashMap<>();
+			this.order = new TreeMap<>();
+		}
+
+		/**
+		 * @param formulas
+		 *            The formulas to copy.
+		 */
+		Numbered(Numbered formulas) {
+			this.ids = new HashMap<>(formulas.ids);
+			this.order = new TreeMap<>(formulas.order);
+		}
+
+		@Override
+		public int size() {
+			return this.ids.size();
+		}
+
+		@Override
+		public boolean contains(Object obj) {
+			return this.ids.containsKey(obj);
+		}
+
+		@Override
+		public Iterator<DatabaseFormula> iterator() {
+			return Collections.unmodifiableCollection(this.order.values()).iterator();
+		}
+	}
+
+	/**
+	 * An immutable set of the formulas in a theory at some moment, grouped by
+	 * signature.
+	 */
+	public static final class Snapshot extends AbstractSet<DatabaseFormula> {
+		/**
+		 * Orders the next formulas of the stripes by their numbers.
+		 */
+		private static final Comparator<Cursor> BY_NEXT = new Comparator<Cursor>() {
+			@Override
+			public int compare(Cursor cursor1, Cursor cursor2) {
+				return Long.compare(cursor1.next.getKey(), cursor2.next.getKey());
+			}
+		};
+
+		private final Map<String, Numbered> formulas;
+		private final int size;
+		private int hash = 0;
+
+		private Snapshot(Map<String, Numbered> formulas) {
+			this.formulas = formulas;
+			int count = 0;
+			for (Numbered stripe : formulas.values()) {
+				count += stripe.size();
+			}
+			this.size = count;
+		}
+
+		/**
+		 * @return the signatures of the predicates that have formulas in this
+		 *         snapshot.
+		 */
+		public Set<String> getSignatures() {
+			return Collections.unmodifiableSet(this.formulas.keySet());
+		}
+
+		/**
+		 * @param signature
+		 *            A signature, e.g. p/1.
+		 * @return the formulas in this snapshot that define the predicate with
+		 *         the given signature.
+		 */
+		public Set<DatabaseFormula> getFormulas(String signature) {
+			Numbered stripe = this.formulas.get(signature);
+			return (stripe == null) ? Collections.<DatabaseFormula>emptySet() : Collections.unmodifiableSet(stripe);
+		}
+
+		/**
+		 * @param signature
+		 *            A signature, e.g. p/1.
+		 * @return the number of formulas in this snapshot that define the
+		 *         predicate with the given signature.
+		 */
+		public int getCount(String signature) {
+			Numbered stripe = this.formulas.get(signature);
+			return (stripe == null) ? 0 : stripe.size();
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public boolean contains(Object obj) {
+			if (!(obj instanceof DatabaseFormula)) {
+				return false;
+			}
+			Numbered stripe = this.formulas.get(getSignature((DatabaseFormula) obj));
+			return stripe != null && stripe.contains(obj);
+		}
+
+		@Override
+		public int hashCode() {
+			if (this.hash == 0) {
+				this.hash = super.hashCode();
+			}
+			return this.hash;
+		}
+
+		/**
+		 * @return the formulas in the order of their numbers, merging those of
+		 *         the different signatures.
+		 */
+		@Override
+		public Iterator<DatabaseFormula> iterator() {
+			final PriorityQueue<Cursor> cursors = new PriorityQueue<>(Math.max(1, this.formulas.size()), BY_NEXT);
+			for (Numbered stripe : this.formulas.values()) {
+				Cursor cursor = new Cursor(stripe.order.entrySet().iterator());
+				if (cursor.next != null) {
+					cursors.add(cursor);
+				}
+			}
+			return new Iterator<DatabaseFormula>() {
+				@Override
+				public boolean hasNext() {
+					return !cursors.isEmpty();
+				}
+
+				@Override
+				public DatabaseFormula next() {
+					Cursor cursor = cursors.poll();
+					if (cursor == null) {
+						throw new NoSuchElementException();
+					}
+					DatabaseFormula formula = cursor.next.getValue();
+					if (cursor.advance()) {
+						cursors.add(cursor);
+					}
+					return formula;
+				}
+			};
+		}
+
+		/**
+		 * The position of an iterator in the formulas of one signature.
+		 */
+		private static final class Cursor {
+			private final Iterator<Map.Entry<Long, DatabaseFormula>> entries;
+			private Map.Entry<Long, DatabaseFormula> next;
+
+			Cursor(Iterator<Map.Entry<Long, DatabaseFormula>> entries) {
+				this.entries = entries;
+				advance();
+			}
+
+			/**
+			 * @return true iff there is a next formula.
+			 */
+			boolean advance() {
+				this.next = this.entries.hasNext() ? this.entries.next() : null;
+				return this.next != null;
+			}
 		}
-		return true;
 	}
 }
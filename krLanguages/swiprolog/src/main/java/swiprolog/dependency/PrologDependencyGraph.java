@@ -17,8 +17,15 @@
 
 package swiprolog.dependency;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import krTools.dependency.DependencyGraph;
 import krTools.dependency.Node;
@@ -27,16 +34,68 @@ import krTools.exceptions.KRException;
 import krTools.language.DatabaseFormula;
 import krTools.language.Query;
 import krTools.language.Term;
+import krTools.language.Var;
 import swiprolog.language.PrologCompound;
 import swiprolog.language.PrologDBFormula;
 import swiprolog.language.PrologQuery;
 import swiprolog.language.impl.PrologImplFactory;
 import swiprolog.parser.PrologOperators;
+import swiprolog.validator.SemanticTools;
 
 /**
  * A dependency graph for the SWI Prolog language.
  */
 public class PrologDependencyGraph extends DependencyGraph<Term> {
+	/**
+	 * The built-in predicates that call a goal, with the (0-based) positions of
+	 * their arguments that are goals or closures.
+	 */
+	private static final Map<String, int[]> META_ARGUMENTS = new HashMap<>();
+	static {
+		meta(new int[] { 0 }, "not/1", "\\+/1", "once/1", "ignore/1", "distinct/1");
+		meta(new int[] { 0, 1 }, ",/2", ";/2", "->/2", "*->/2", "forall/2", "call_cleanup/2");
+		meta(new int[] { 1 }, "^/2", "findall/3", "findall/4", "bagof/3", "setof/3", "aggregate/3",
+				"aggregate_all/3", "limit/2", "offset/2", "distinct/2", "order_by/2");
+		meta(new int[] { 2 }, "aggregate/4", "aggregate_all/4");
+		meta(new int[] { 0, 2 }, "catch/3");
+		meta(new int[] { 0, 1, 2 }, "setup_call_cleanup/3");
+		meta(new int[] { 0 }, "include/3", "exclude/3", "partition/4", "predsort/3");
+		for (int arity = 1; arity <= 8; arity++) {
+			meta(new int[] { 0 }, "call/" + arity);
+		}
+		for (int arity = 2; arity <= 7; arity++) {
+			meta(new int[] { 0 }, "maplist/" + arity);
+		}
+		for (int arity = 4; arity <= 7; arity++) {
+			meta(new int[] { 0 }, "foldl/" + arity);
+		}
+	}
+
+	/**
+	 * The built-in predicates whose result does not only depend on the
+	 * database: a goal in another module (:/2), and the predicates that read
+	 * the clock, a random generator or global state.
+	 */
+	private static final Set<String> IMPURE_GOALS = new HashSet<>(Arrays.asList(":/2", "get_time/1", "random/1",
+			"flag/3", "nb_getval/2", "b_getval/2", "statistics/2"));
+
+	private static void meta(int[] positions, String... signatures) {
+		for (String signature : signatures) {
+			META_ARGUMENTS.put(signature, positions);
+		}
+	}
+
+	/**
+	 * The signatures that are defined by a clause that calls a goal that is
+	 * only known when the clause is evaluated.
+	 */
+	private final Set<String> unknownDefinitions = new HashSet<>();
+	/**
+	 * The signatures that are defined by a clause that calls a goal whose
+	 * result does not only depend on the database, see {@link #IMPURE_GOALS}.
+	 */
+	private final Set<String> impureDefinitions = new HashSet<>();
+
 	/**
 	 * {@inheritDoc} <br>
 	 *
@@ -60,6 +119,12 @@ public class PrologDependencyGraph extends DependencyGraph<Term> {
 				List<Node<Term>> definitionNode = addTerm(content1, true, false);
 				// The other argument consists of terms that are queried.
 				Term content2 = term.getArg(1);
+				if (callsUnknownGoal(content2)) {
+					this.unknownDefinitions.add(content1.getSignature());
+				}
+				if (callsImpureGoal(content2)) {
+					this.impureDefinitions.add(content1.getSignature());
+				}
 				List<Node<Term>> queryNodes = addTerm(content2, false, true);
 				for (Node<Term> node : queryNodes) {
 					definitionNode.get(0).addDependency(node);
@@ -91,6 +156,120 @@ public class PrologDependencyGraph extends DependencyGraph<Term> {
 		}
 	}
 
+	/**
+	 * {@inheritDoc} <br>
+	 *
+	 * For a clause of the form p(...):-(...), this is the signature of p/n.
+	 */
+	@Override
+	public String getDefinedSignature(DatabaseFormula formula) {
+		PrologCompound term = ((PrologDBFormula) formula).getCompound();
+		boolean rule = term.getArity() == 2 && ":-".equals(term.getName());
+		return rule ? term.getArg(0).getSignature() : term.getSignature();
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 *
+	 * All non built-in signatures that occur in the query are returned, also
+	 * those in the arguments of the built-in predicates that call a goal.
+	 * Returns null if the query, or a clause that it depends on, calls a goal
+	 * that is only known when it is evaluated, e.g. call(G) with G a variable,
+	 * a goal in another module, e.g. other:p(X), or a built-in predicate whose
+	 * result depends on more than the database, e.g. get_time/1.
+	 */
+	@Override
+	public Set<String> getQueriedSignatures(Query query) {
+		if (callsUnknownGoal(((PrologQuery) query).getCompound())) {
+			return null;
+		}
+		Set<String> signatures = SemanticTools.getUsedSignatures((PrologQuery) query);
+		if (!this.unknownDefinitions.isEmpty()) {
+			for (String dependency : getDependencies(signatures)) {
+				if (this.unknownDefinitions.contains(dependency)) {
+					return null;
+				}
+			}
+		}
+		return signatures;
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 *
+	 * Returns false if the query, or a clause that it depends on, calls a goal
+	 * in another module, e.g. other:p(X), or a built-in predicate whose result
+	 * depends on more than the database, e.g. get_time/1.
+	 */
+	@Override
+	public boolean isCacheable(Query query) {
+		if (callsImpureGoal(((PrologQuery) query).getCompound())) {
+			return false;
+		}
+		if (!this.impureDefinitions.isEmpty()) {
+			for (String dependency : getDependencies(SemanticTools.getUsedSignatures((PrologQuery) query))) {
+				if (this.impureDefinitions.contains(dependency)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param goal
+	 *            A goal.
+	 * @return true iff the goal is a variable or calls a variable, as a goal
+	 *         or closure of a built-in predicate that calls a goal, or calls an
+	 *         impure goal (see {@link #callsImpureGoal(Term)}).
+	 */
+	private static boolean callsUnknownGoal(Term goal) {
+		return calls(goal, true);
+	}
+
+	/**
+	 * @param goal
+	 *            A goal.
+	 * @return true iff the goal calls a goal in another module or a built-in
+	 *         predicate whose result does not only depend on the database, see
+	 *         {@link #IMPURE_GOALS}.
+	 */
+	private static boolean callsImpureGoal(Term goal) {
+		return calls(goal, false);
+	}
+
+	/**
+	 * @param goal
+	 *            A goal.
+	 * @param variables
+	 *            true if calling a variable counts as well.
+	 * @return true iff the goal calls an impure goal, or a variable if
+	 *         requested, also as a goal or closure of a built-in predicate
+	 *         that calls a goal.
+	 */
+	private static boolean calls(Term goal, boolean variables) {
+		Deque<Term> goals = new ArrayDeque<>();
+		goals.push(goal);
+		while (!goals.isEmpty()) {
+			Term next = goals.pop();
+			if (next instanceof Var) {
+				if (variables) {
+					return true;
+				}
+			} else if (IMPURE_GOALS.contains(next.getSignature())) {
+				return true;
+			} else if (next instanceof PrologCompound) {
+				int[] positions = META_ARGUMENTS.get(next.getSignature());
+				if (positions != null) {
+					for (int position : positions) {
+						goals.push(((PrologCompound) next).getArg(position));
+					}
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Creates nodes for terms, if not already present. Note that the ":-/2"
 	 * operator is taken care of by {@link #add(DatabaseFormula, boolean, boolean)}.
@@ -0,0 +1,83 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.errors;
+
+/**
+ * A {@link PrologError} raised when a query is stopped because it exceeded one
+ * of its limits, see
+ * {@link swiprolog.database.PrologDatabase#setInferenceLimit(long)} and
+ * {@link swiprolog.database.PrologDatabase#setTimeLimit(double)}.
+ */
+public class LimitExceededError extends PrologError {
+	private static final long serialVersionUID = 1L;
+	/**
+	 * The name of the error term kr_limit_exceeded(Limit, Value) that is thrown
+	 * by the helper predicates of the databases.
+	 */
+	static final String ERROR = "kr_limit_exceeded";
+
+	/**
+	 * The limits of a query.
+	 */
+	public enum Limit {
+		/**
+		 * The maximum number of inferences to compute one solution.
+		 */
+		INFERENCES,
+		/**
+		 * The maximum wall-clock time of the query, in seconds.
+		 */
+		TIME
+	}
+
+	/**
+	 * @param exc
+	 *            a {@link org.jpl7.PrologException} with the error term
+	 *            kr_limit_exceeded(inferences, Value) or
+	 *            kr_limit_exceeded(time, Value).
+	 */
+	LimitExceededError(org.jpl7.PrologException exc) {
+		super(exc);
+	}
+
+	/**
+	 * @return the limit that was exceeded.
+	 */
+	public Limit getLimit() {
+		return Limit.valueOf(((org.jpl7.PrologException) getCause()).term().arg(1).name().toUpperCase());
+	}
+
+	/**
+	 * @return the value of the limit that was exceeded: a number of inferences
+	 *         or seconds.
+	 */
+	public double getValue() {
+		return ((org.jpl7.PrologException) getCause()).term().arg(2).doubleValue();
+	}
+
+	@Override
+	public String getMessage() {
+		switch (getLimit()) {
+		case INFERENCES:
+			return "swi prolog stopped the query because computing a solution took more than " + (long) getValue()
+					+ " inferences";
+		default:
+			return "swi prolog stopped the query because it took more than " + getValue() + " seconds";
+		}
+	}
+}
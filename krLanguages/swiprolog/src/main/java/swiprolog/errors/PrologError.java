@@ -126,6 +126,24 @@ public class PrologError extends KRQueryFailedException {
 		super("", exc);
 	}
 
+	/**
+	 * Creates the prolog error for given exception: a {@link LimitExceededError}
+	 * if the exception was raised because a query exceeded one of its limits,
+	 * and a plain {@link PrologError} otherwise.
+	 *
+	 * @param exc
+	 *            a {@link org.jpl7.PrologException} (not null).
+	 * @return the prolog error.
+	 */
+	public static PrologError fromException(org.jpl7.PrologException exc) {
+		org.jpl7.Term term = exc.term();
+		if (term.isCompound() && LimitExceededError.ERROR.equals(term.name()) && term.arity() == 2) {
+			return new LimitExceededError(exc);
+		} else {
+			return new PrologError(exc);
+		}
+	}
+
 	@Override
 	public String getMessage() {
 		String mess = "swi prolog says the query failed";
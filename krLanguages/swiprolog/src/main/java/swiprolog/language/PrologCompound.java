@@ -2,7 +2,6 @@ package swiprolog.language;
 
 import java.util.List;
 
-import krTools.language.Substitution;
 import krTools.language.Term;
 
 public interface PrologCompound extends PrologTerm, Iterable<Term> {
@@ -63,27 +62,4 @@ public interface PrologCompound extends PrologTerm, Iterable<Term> {
 		return false;
 	}
 
-	@Override
-	public default Substitution unify(Term x, Substitution s) {
-		if (s == null) {
-			return null;
-		} else if (equals(x)) {
-			return s;
-		} else if (x instanceof PrologCompound) {
-			PrologCompound y = (PrologCompound) x;
-			if ((getArity() == y.getArity()) && getName().equals(y.getName())) {
-				for (int i = 0; i < getArity(); ++i) {
-					s = ((PrologTerm) getArg(i)).unify(y.getArg(i), s);
-				}
-				return s;
-			} else {
-				return null;
-			}
-		} else if (x instanceof PrologVar) {
-			PrologVar var = (PrologVar) x;
-			return var.unify(this, s);
-		} else {
-			return null;
-		}
-	}
 }
@@ -38,11 +38,24 @@ public interface PrologTerm extends PrologExpression, Term {
 	@Override
 	public default Substitution mgu(Expression expression) {
 		if (expression instanceof Term) {
-			return unify((Term) expression, new PrologSubstitution());
+			return PrologUnifier.mgu(this, (Term) expression);
 		} else {
 			return null;
 		}
 	}
 
-	public Substitution unify(Term term, Substitution substitution);
+	/**
+	 * Extends a substitution with a most general unifier of this term and
+	 * another term, with the occurs check; see {@link PrologUnifier}.
+	 *
+	 * @param term
+	 *            A term.
+	 * @param substitution
+	 *            The bindings that the terms are unified under. May be null.
+	 * @return The extended substitution, or null if the substitution is null or
+	 *         the terms do not unify under it.
+	 */
+	public default Substitution unify(Term term, Substitution substitution) {
+		return PrologUnifier.unify(this, term, substitution);
+	}
 }
@@ -0,0 +1,415 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package swiprolog.language;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import krTools.language.Substitution;
+import krTools.language.Term;
+import krTools.language.Var;
+
+/**
+ * Unifies {@link PrologTerm}s. Bindings are recorded on a trail, in the order
+ * in which they are made, so that they can be undone up to a {@link #mark()}.
+ * Terms are traversed with an explicit stack instead of recursion, and nothing
+ * is allocated while unifying once the trail and stack have grown to fit the
+ * terms.
+ *
+ * <p>
+ * Like the {@link PrologSubstitution} it produces, the bindings are triangular:
+ * a variable is bound to the term that it was unified with, which may contain
+ * variables that are bound later. The occurs check, if enabled, looks through
+ * these bindings. An anonymous variable is never bound.
+ * </p>
+ *
+ * <p>
+ * The terms are told apart by their JPL classes, which all terms made by
+ * {@link swiprolog.language.impl.PrologImplFactory} extend, rather than by
+ * their {@link PrologVar} or {@link PrologCompound} interfaces: the JVM only
+ * caches the last interface that a class was found to implement, and checking
+ * for any other interface takes longer than unifying most terms.
+ * </p>
+ *
+ * <p>
+ * A unifier is not thread safe; {@link #mgu(Term, Term)} uses one unifier per
+ * thread.
+ * </p>
+ */
+public class PrologUnifier {
+	/**
+	 * The unifier used by {@link #mgu(Term, Term)} on each thread.
+	 */
+	private static final ThreadLocal<PrologUnifier> UNIFIERS = new ThreadLocal<PrologUnifier>() {
+		@Override
+		protected PrologUnifier initialValue() {
+			return new PrologUnifier(true);
+		}
+	};
+
+	/**
+	 * The number of bindings from which on they are looked up in a hash map
+	 * instead of on the trail.
+	 */
+	private static final int INDEX_SIZE = 32;
+
+	private final boolean occursCheck;
+	/**
+	 * The trail: the bound variables, in the order in which they were bound,
+	 * and the terms that they are bound to. Like the stack, these are object
+	 * arrays, as storing into a {@link Term} array checks the interface too.
+	 */
+	private Object[] vars = new Object[8];
+	private Object[] values = new Object[8];
+	private int size;
+	/**
+	 * The bindings on the trail, if there are more than {@link #INDEX_SIZE}.
+	 */
+	private Map<Object, Object> index;
+	/**
+	 * The pairs of terms that remain to be unified, and the terms that remain to
+	 * be checked by the occurs check.
+	 */
+	private Object[] stack = new Object[16];
+
+	/**
+	 * Creates a unifier that performs the occurs check.
+	 */
+	public PrologUnifier() {
+		this(true);
+	}
+
+	/**
+	 * Creates a unifier.
+	 *
+	 * @param occursCheck
+	 *            false if a variable may be bound to a term that contains it, as
+	 *            in Prolog. The result is a cyclic binding then, and unifying
+	 *            two such cyclic terms does not terminate.
+	 */
+	public PrologUnifier(boolean occursCheck) {
+		this.occursCheck = occursCheck;
+	}
+
+	/**
+	 * Computes a most general unifier of two terms, like
+	 * {@link PrologTerm#mgu(krTools.language.Expression)}.
+	 *
+	 * @param term1
+	 *            A term.
+	 * @param term2
+	 *            Another term.
+	 * @return The substitution that unifies the terms, or null if they do not
+	 *         unify.
+	 */
+	public static Substitution mgu(Term term1, Term term2) {
+		PrologUnifier unifier = UNIFIERS.get();
+		try {
+			return unifier.unify(term1, term2) ? unifier.getSubstitution() : null;
+		} finally {
+			unifier.reset();
+		}
+	}
+
+	/**
+	 * Extends a substitution with a most general unifier of two terms, like
+	 * {@link PrologTerm#unify(Term, Substitution)}.
+	 *
+	 * @param term1
+	 *            A term.
+	 * @param term2
+	 *            Another term.
+	 * @param substitution
+	 *            The bindings that the terms are unified under; these are
+	 *            extended with the new bindings if the terms unify. May be
+	 *            null.
+	 * @return The extended substitution, or null if the substitution is null or
+	 *         the terms do not unify under it.
+	 */
+	public static Substitution unify(Term term1, Term term2, Substitution substitution) {
+		if (substitution == null) {
+			return null;
+		}
+		PrologUnifier unifier = UNIFIERS.get();
+		try {
+			for (Var var : substitution.getVariables()) {
+				unifier.bind((org.jpl7.Variable) var, substitution.get(var));
+			}
+			int mark = unifier.mark();
+			if (!unifier.unify(term1, term2)) {
+				return null;
+			}
+			for (int i = mark; i < unifier.size; i++) {
+				substitution.addBinding((Var) unifier.vars[i], (Term) unifier.values[i]);
+			}
+			return substitution;
+		} finally {
+			unifier.reset();
+		}
+	}
+
+	/**
+	 * @return true iff this unifier performs the occurs check.
+	 */
+	public boolean isOccursCheck() {
+		return this.occursCheck;
+	}
+
+	/**
+	 * Unifies two terms under the current bindings. If the terms do not unify,
+	 * the bindings are left as they were.
+	 *
+	 * @param term1
+	 *            A term.
+	 * @param term2
+	 *            Another term.
+	 * @return true iff the terms unify.
+	 */
+	public boolean unify(Term term1, Term term2) {
+		int mark = this.size;
+		this.stack[0] = term1;
+		this.stack[1] = term2;
+		int top = 2;
+		while (top > 0) {
+			Object y = this.stack[--top];
+			Object x = this.stack[--top];
+			this.stack[top] = null;
+			this.stack[top + 1] = null;
+			if (x == y) {
+				continue;
+			} else if (!(x instanceof org.jpl7.Variable) && y instanceof org.jpl7.Variable) {
+				// the variable is bound to the other term.
+				Object swap = x;
+				x = y;
+				y = swap;
+			}
+			if (x instanceof org.jpl7.Variable) {
+				if (x.equals(y)) {
+					continue;
+				}
+				Object bound = lookup(x);
+				if (bound != null) {
+					top = push(top, bound, y);
+					continue;
+				}
+				bound = (y instanceof org.jpl7.Variable) ? lookup(y) : null;
+				if (bound != null) {
+					top = push(top, x, bound);
+				} else if (this.occursCheck && y instanceof org.jpl7.Compound && occurs(x, y, top)) {
+					return fail(mark, top);
+				} else {
+					bind((org.jpl7.Variable) x, y);
+				}
+			} else if (x instanceof org.jpl7.Compound && y instanceof org.jpl7.Compound) {
+				org.jpl7.Compound cx = (org.jpl7.Compound) x;
+				org.jpl7.Compound cy = (org.jpl7.Compound) y;
+				int arity = cx.arity();
+				if (arity != cy.arity() || !cx.name().equals(cy.name())) {
+					return fail(mark, top);
+				}
+				// pushed in reverse, so that the arguments are unified from left
+				// to right; JPL counts them from 1.
+				for (int i = arity; i > 0; i--) {
+					top = push(top, cx.arg(i), cy.arg(i));
+				}
+			} else if (x instanceof org.jpl7.Atom && y instanceof org.jpl7.Atom) {
+				// atoms of different types, such as strings, are not kept apart.
+				if (!((org.jpl7.Atom) x).name().equals(((org.jpl7.Atom) y).name())) {
+					return fail(mark, top);
+				}
+			} else if (!x.equals(y)) {
+				return fail(mark, top);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param var
+	 *            A variable.
+	 * @return The term that the variable is bound to, or null if it is not
+	 *         bound.
+	 */
+	public Term get(Var var) {
+		return (Term) lookup(var);
+	}
+
+	/**
+	 * @return The number of bindings on the trail.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return A mark that {@link #undo(int)} can return the bindings to.
+	 */
+	public int mark() {
+		return this.size;
+	}
+
+	/**
+	 * Undoes the bindings that were made after a mark was taken.
+	 *
+	 * @param mark
+	 *            A mark returned by {@link #mark()}.
+	 */
+	public void undo(int mark) {
+		if (mark < 0 || mark > this.size) {
+			throw new IllegalArgumentException("mark " + mark + " is not on the trail of size " + this.size + ".");
+		}
+		if (mark <= INDEX_SIZE) {
+			this.index = null;
+		} else if (this.index != null) {
+			for (int i = mark; i < this.size; i++) {
+				this.index.remove(this.vars[i]);
+			}
+		}
+		Arrays.fill(this.vars, mark, this.size, null);
+		Arrays.fill(this.values, mark, this.size, null);
+		this.size = mark;
+	}
+
+	/**
+	 * Undoes all bindings.
+	 */
+	public void reset() {
+		undo(0);
+	}
+
+	/**
+	 * @return The bindings, in the order in which they were made.
+	 */
+	public Substitution getSubstitution() {
+		Substitution substitution = new PrologSubstitution();
+		for (int i = 0; i < this.size; i++) {
+			substitution.addBinding((Var) this.vars[i], (Term) this.values[i]);
+		}
+		return substitution;
+	}
+
+	/**
+	 * @return The term that a variable is bound to, or null.
+	 */
+	private Object lookup(Object var) {
+		if (this.index != null) {
+			return this.index.get(var);
+		}
+		// most recent bindings first; there are only a few in general.
+		for (int i = this.size - 1; i >= 0; i--) {
+			Object bound = this.vars[i];
+			if (bound == var || bound.equals(var)) {
+				return this.values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Binds a variable that is not bound yet.
+	 */
+	private void bind(org.jpl7.Variable var, Object term) {
+		// see PrologVar#isAnonymous().
+		if (var.name.equals("_")) {
+			return;
+		}
+		if (this.size == this.vars.length) {
+			this.vars = Arrays.copyOf(this.vars, 2 * this.size);
+			this.values = Arrays.copyOf(this.values, 2 * this.size);
+		}
+		this.vars[this.size] = var;
+		this.values[this.size] = term;
+		this.size++;
+		if (this.index != null) {
+			this.index.put(var, term);
+		} else if (this.size > INDEX_SIZE) {
+			this.index = new HashMap<>(4 * this.size);
+			for (int i = 0; i < this.size; i++) {
+				this.index.put(this.vars[i], this.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Pushes a pair of terms on the stack.
+	 *
+	 * @return The new top of the stack.
+	 */
+	private int push(int top, Object term1, Object term2) {
+		if (top + 2 > this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+		}
+		this.stack[top] = term1;
+		this.stack[top + 1] = term2;
+		return top + 2;
+	}
+
+	/**
+	 * Pushes a term on the stack.
+	 *
+	 * @return The new top of the stack.
+	 */
+	private int pushOne(int top, Object term) {
+		if (top + 1 > this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+		}
+		this.stack[top] = term;
+		return top + 1;
+	}
+
+	/**
+	 * Clears the stack and undoes the bindings made since a mark.
+	 *
+	 * @return false
+	 */
+	private boolean fail(int mark, int top) {
+		Arrays.fill(this.stack, 0, top, null);
+		undo(mark);
+		return false;
+	}
+
+	/**
+	 * Checks whether a variable occurs in a term under the current bindings,
+	 * using the stack above the pairs that remain to be unified.
+	 */
+	private boolean occurs(Object var, Object term, int base) {
+		int top = pushOne(base, term);
+		boolean occurs = false;
+		while (top > base && !occurs) {
+			Object next = this.stack[--top];
+			this.stack[top] = null;
+			if (next instanceof org.jpl7.Variable) {
+				Object bound = lookup(next);
+				if (bound != null) {
+					top = pushOne(top, bound);
+				} else {
+					occurs = next.equals(var);
+				}
+			} else if (next instanceof org.jpl7.Compound && !((Term) next).isClosed()) {
+				org.jpl7.Compound compound = (org.jpl7.Compound) next;
+				for (int i = compound.arity(); i > 0; i--) {
+					top = pushOne(top, compound.arg(i));
+				}
+			}
+		}
+		Arrays.fill(this.stack, base, top, null);
+		return occurs;
+	}
+}
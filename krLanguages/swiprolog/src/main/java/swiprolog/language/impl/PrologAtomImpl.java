@@ -19,7 +19,6 @@ package swiprolog.language.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -107,7 +106,7 @@ class PrologAtomImpl extends org.jpl7.Atom implements PrologCompound {
 
 	@Override
 	public Set<Var> getFreeVar() {
-		return new HashSet<>(0);
+		return Collections.emptySet();
 	}
 
 	@Override
@@ -17,11 +17,15 @@
 
 package swiprolog.language.impl;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.jpl7.JPL;
@@ -37,18 +41,17 @@ import swiprolog.language.PrologTerm;
  * A Prolog variable.
  */
 class PrologCompoundImpl extends org.jpl7.Compound implements PrologCompound {
-	/**
-	 * The terms arguments (exact same as in jpl7.Compound but with different type)
-	 */
-	private final Term[] args;
 	/**
 	 * Information about the source used to construct this compound.
 	 */
 	private final SourceInfo info;
 	/**
-	 * The free variables in the compound (cached for performance).
+	 * The free variables in the compound: the shared empty set if it is ground,
+	 * and otherwise null until they are first needed (cached for performance).
+	 * The arguments are only stored by jpl7.Compound, as they are all
+	 * {@link Term}s as well.
 	 */
-	private final Set<Var> freeVar = new LinkedHashSet<>();
+	private volatile Set<Var> freeVar;
 	/**
 	 * Cache the compound's hash for performance.
 	 */
@@ -66,12 +69,13 @@ class PrologCompoundImpl extends org.jpl7.Compound implements PrologCompound {
 	 */
 	PrologCompoundImpl(String name, Term[] args, SourceInfo info) {
 		super(name, args.length);
-		this.args = args;
+		boolean ground = true;
 		for (int i = 0; i < args.length; ++i) {
 			Term arg = args[i];
 			setArg(i + 1, (org.jpl7.Term) arg);
-			this.freeVar.addAll(arg.getFreeVar());
+			ground &= arg.isClosed();
 		}
+		this.freeVar = ground ? Collections.<Var> emptySet() : null;
 		this.info = info;
 		this.hashcode = name.hashCode() + Arrays.hashCode(args);
 	}
@@ -93,12 +97,14 @@ class PrologCompoundImpl extends org.jpl7.Compound implements PrologCompound {
 
 	@Override
 	public Term getArg(int i) {
-		return this.args[i];
+		return (Term) this.args[i];
 	}
 
 	@Override
 	public boolean isClosed() {
-		return getFreeVar().isEmpty();
+		// only null if there are free variables.
+		Set<Var> vars = this.freeVar;
+		return vars != null && vars.isEmpty();
 	}
 
 	@Override
@@ -148,7 +154,42 @@ class PrologCompoundImpl extends org.jpl7.Compound implements PrologCompound {
 
 	@Override
 	public Set<Var> getFreeVar() {
-		return this.freeVar;
+		Set<Var> vars = this.freeVar;
+		if (vars == null) {
+			vars = Collections.unmodifiableSet(collectFreeVar());
+			this.freeVar = vars;
+		}
+		return vars;
+	}
+
+	/**
+	 * Collects the free variables in the order in which they occur, without
+	 * recursion so that long lists do not need a deep stack. The free variables
+	 * of sub-terms are used if they are known already.
+	 *
+	 * @return The free variables in the compound.
+	 */
+	private Set<Var> collectFreeVar() {
+		Set<Var> vars = new LinkedHashSet<>();
+		Deque<Term> todo = new ArrayDeque<>();
+		todo.push(this);
+		while (!todo.isEmpty()) {
+			Term term = todo.pop();
+			if (term instanceof PrologCompoundImpl) {
+				PrologCompoundImpl compound = (PrologCompoundImpl) term;
+				Set<Var> known = compound.freeVar;
+				if (known != null) {
+					vars.addAll(known);
+				} else {
+					for (int i = compound.getArity() - 1; i >= 0; i--) {
+						todo.push(compound.getArg(i));
+					}
+				}
+			} else {
+				vars.addAll(term.getFreeVar());
+			}
+		}
+		return vars;
 	}
 
 	@Override
@@ -185,7 +226,22 @@ class PrologCompoundImpl extends org.jpl7.Compound implements PrologCompound {
 
 	@Override
 	public Iterator<Term> iterator() {
-		return Arrays.asList(this.args).iterator();
+		return new Iterator<Term>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < getArity();
+			}
+
+			@Override
+			public Term next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return getArg(this.next++);
+			}
+		};
 	}
 
 	@Override
@@ -17,7 +17,7 @@
 
 package swiprolog.language.impl;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
 import krTools.language.Substitution;
@@ -70,7 +70,7 @@ class PrologFloatImpl extends org.jpl7.Float implements PrologTerm {
 
 	@Override
 	public Set<Var> getFreeVar() {
-		return new HashSet<>(0);
+		return Collections.emptySet();
 	}
 
 	@Override
@@ -87,9 +87,4 @@ class PrologFloatImpl extends org.jpl7.Float implements PrologTerm {
 	public int hashCode() {
 		return Double.hashCode(this.value);
 	}
-
-	@Override
-	public Substitution unify(Term term, Substitution substitution) {
-		return equals(term) ? substitution : null;
-	}
 }
\ No newline at end of file
@@ -10,16 +10,60 @@ import swiprolog.language.PrologUpdate;
 import swiprolog.language.PrologVar;
 
 public class PrologImplFactory {
+	/**
+	 * The table of shared atoms and ground compounds, or null if terms are not
+	 * shared; see {@link #setInternTableSize(int)}.
+	 */
+	private static volatile TermTable internTable = null;
+
 	private PrologImplFactory() {
 
 	}
 
 	public static PrologCompound getAtom(String name, SourceInfo info) {
-		return new PrologAtomImpl(name, info);
+		TermTable table = internTable;
+		return (info == null && table != null) ? table.atom(name) : new PrologAtomImpl(name, info);
 	}
 
 	public static PrologCompound getCompound(String name, Term[] args, SourceInfo info) {
-		return new PrologCompoundImpl(name, args, info);
+		TermTable table = internTable;
+		return (info == null && table != null) ? table.compound(name, args)
+				: new PrologCompoundImpl(name, args, info);
+	}
+
+	/**
+	 * @return The number of atoms and ground compounds that can be shared, or
+	 *         0 if terms are not shared.
+	 */
+	public static synchronized int getInternTableSize() {
+		TermTable table = internTable;
+		return (table == null) ? 0 : table.size();
+	}
+
+	/**
+	 * Sets the number of atoms and ground compounds that can be shared. When it
+	 * is not 0, {@link #getAtom(String, SourceInfo)} and
+	 * {@link #getCompound(String, Term[], SourceInfo)} return an existing
+	 * instance of an equal term without source info if there is one in a
+	 * table of the given size, e.g. for the atoms and facts that come back from
+	 * many queries, instead of a new one. Such a table keeps the terms that
+	 * are used most recently, so it does not grow. Terms must not be changed
+	 * once they are created (e.g. through the JPL methods they inherit) when
+	 * they are shared.
+	 *
+	 * @param size
+	 *            The size of the table, rounded up to a power of 2, or 0 to
+	 *            not share terms. Setting the size empties the table.
+	 */
+	public static synchronized void setInternTableSize(int size) {
+		if (size < 0 || size > (1 << 30)) {
+			throw new IllegalArgumentException("the intern table size should be between 0 and 2^30 but is " + size);
+		}
+		int slots = 1;
+		while (slots < size) {
+			slots <<= 1;
+		}
+		internTable = (size == 0) ? null : new TermTable(slots);
 	}
 
 	public static PrologDBFormula getDBFormula(PrologCompound compound) {
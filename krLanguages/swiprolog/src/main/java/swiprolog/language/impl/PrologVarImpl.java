@@ -17,7 +17,7 @@
 
 package swiprolog.language.impl;
 
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.Set;
 
 import krTools.language.Substitution;
@@ -34,10 +34,6 @@ class PrologVarImpl extends org.jpl7.Variable implements PrologVar {
 	 * Information about the source used to construct this variable.
 	 */
 	private final SourceInfo info;
-	/**
-	 * A set containing only the variable itself (cached for performance).
-	 */
-	private final Set<Var> freeVar = new LinkedHashSet<>(1);
 	/**
 	 * Cache the variable's hash for performance.
 	 */
@@ -55,7 +51,6 @@ class PrologVarImpl extends org.jpl7.Variable implements PrologVar {
 		super(name);
 		this.info = info;
 		this.hashcode = name.hashCode();
-		this.freeVar.add(this);
 	}
 
 	@Override
@@ -80,7 +75,8 @@ class PrologVarImpl extends org.jpl7.Variable implements PrologVar {
 
 	@Override
 	public Set<Var> getFreeVar() {
-		return this.freeVar;
+		// not kept, as most variables are never asked for it.
+		return Collections.<Var> singleton(this);
 	}
 
 	@Override
@@ -0,0 +1,143 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.language.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import krTools.language.Term;
+import swiprolog.language.PrologCompound;
+
+/**
+ * A table of atoms and ground compounds without source info, so that equal
+ * terms can share one instance; see {@link PrologImplFactory#setInternTableSize(int)}.
+ * <p>
+ * The table has a fixed number of slots and each term has one slot, given by
+ * its hash code. A term that is not in its slot replaces the term that is,
+ * so the table never holds more than its size and needs no locks: a lookup
+ * that races with a replacement at worst creates an instance that is not
+ * shared. Terms are therefore only shared as long as they are used often
+ * enough to stay in their slot, and two equal terms are not guaranteed to be
+ * the same instance.
+ * </p>
+ */
+final class TermTable {
+	private final AtomicReferenceArray<PrologCompound> slots;
+	private final int mask;
+
+	/**
+	 * @param size
+	 *            The number of slots, a power of 2.
+	 */
+	TermTable(int size) {
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * @return The number of slots.
+	 */
+	int size() {
+		return this.slots.length();
+	}
+
+	/**
+	 * @param name
+	 *            The name of an atom.
+	 * @return The atom with the given name.
+	 */
+	PrologCompound atom(String name) {
+		int index = index(name.hashCode());
+		PrologCompound term = this.slots.get(index);
+		if (term instanceof PrologAtomImpl && term.getName().equals(name)) {
+			return term;
+		}
+		term = new PrologAtomImpl(name, null);
+		this.slots.lazySet(index, term);
+		return term;
+	}
+
+	/**
+	 * @param name
+	 *            The name of a compound.
+	 * @param args
+	 *            Its arguments.
+	 * @return The compound with the given name and arguments; only shared if it
+	 *         is ground.
+	 */
+	PrologCompound compound(String name, Term[] args) {
+		for (Term arg : args) {
+			if (!isGround(arg)) {
+				return new PrologCompoundImpl(name, args, null);
+			}
+		}
+		// the hash code of PrologCompoundImpl.
+		int hash = name.hashCode() + Arrays.hashCode(args);
+		int index = index(hash);
+		PrologCompound term = this.slots.get(index);
+		if (term instanceof PrologCompoundImpl && term.hashCode() == hash && matches(term, name, args)) {
+			return term;
+		}
+		term = new PrologCompoundImpl(name, args, null);
+		this.slots.lazySet(index, term);
+		return term;
+	}
+
+	private int index(int hash) {
+		// spread the high bits, which differ more for similar terms.
+		return (hash ^ (hash >>> 16)) & this.mask;
+	}
+
+	private static boolean isGround(Term term) {
+		if (term instanceof PrologCompoundImpl) {
+			return term.isClosed();
+		} else {
+			return term instanceof PrologAtomImpl || term instanceof PrologIntImpl
+					|| term instanceof PrologFloatImpl;
+		}
+	}
+
+	/**
+	 * Checks that a compound in the table has the given name and arguments.
+	 * This is stricter than {@link Object#equals(Object)}: compound arguments
+	 * must be the same instance (as they are when they are shared too), and
+	 * floats must have the same bits, so that e.g. 0.0 and -0.0 are kept
+	 * apart.
+	 */
+	private static boolean matches(PrologCompound term, String name, Term[] args) {
+		if (term.getArity() != args.length || !term.getName().equals(name)) {
+			return false;
+		}
+		for (int i = 0; i < args.length; i++) {
+			Term arg = term.getArg(i);
+			if (arg == args[i]) {
+				continue;
+			} else if (arg instanceof PrologCompoundImpl || arg.getClass() != args[i].getClass()) {
+				return false;
+			} else if (arg instanceof PrologFloatImpl) {
+				if (Double.doubleToRawLongBits(((PrologFloatImpl) arg).doubleValue()) != Double
+						.doubleToRawLongBits(((PrologFloatImpl) args[i]).doubleValue())) {
+					return false;
+				}
+			} else if (!arg.equals(args[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -178,7 +178,8 @@ public class Analyzer {
 			Term stubfunc = PrologImplFactory.getCompound(((PrologCompound) plTerm.getArg(0)).getName(),
 					new Term[] { ANON_VAR, ANON_VAR, ANON_VAR }, plTerm.getSourceInfo());
 			addQuery(stubfunc, info);
-		} else if (termSig.equals("dynamic/1") && plTerm.getArg(0) instanceof PrologCompound) {
+		} else if ((termSig.equals("dynamic/1") || termSig.equals("table/1"))
+				&& plTerm.getArg(0) instanceof PrologCompound) {
 			// recognize predicate declaration(s).
 			PrologCompound compound = (PrologCompound) plTerm.getArg(0);
 			for (Term dynamicPred : compound.getOperands(",")) {
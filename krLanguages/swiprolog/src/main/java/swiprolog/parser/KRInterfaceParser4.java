@@ -28,8 +28,10 @@ import krTools.language.Query;
 import krTools.language.Term;
 import krTools.language.Update;
 import krTools.language.Var;
+import krTools.metrics.DatabaseMetrics;
 import krTools.parser.Parser;
 import krTools.parser.SourceInfo;
+import swiprolog.database.PrologDatabase;
 import swiprolog.validator.Validator4;
 import swiprolog.visitor.Visitor4;
 
@@ -59,37 +61,79 @@ public class KRInterfaceParser4 implements Parser {
 
 	@Override
 	public Update parseUpdate() {
-		return this.validator.updateOrEmpty();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.updateOrEmpty();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
 	public List<DatabaseFormula> parseDBFs() {
-		return this.validator.program();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.program();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
 	public List<Query> parseQueries() {
-		return this.validator.goalSection();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.goalSection();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
 	public Query parseQuery() {
-		return this.validator.queryOrEmpty();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.queryOrEmpty();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
 	public Var parseVar() {
-		return this.validator.var();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.var();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
 	public Term parseTerm() {
-		return this.validator.term();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.term();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
 	public List<Term> parseTerms() {
-		return this.validator.terms();
+		DatabaseMetrics metrics = DatabaseMetrics.get(PrologDatabase.BACKEND);
+		long start = metrics.startParse();
+		try {
+			return this.validator.terms();
+		} finally {
+			metrics.endParse(start);
+		}
 	}
 
 	@Override
@@ -248,8 +248,8 @@ public final class PrologOperators {
 
 		// SWI 4.14 - database is purposely restricted (handled by GOAL)
 		// SWI 4.15 - idem for predicate properties
-		// (dynamic/1 is the only directive that is supported; handled in
-		// SemanticTools)
+		// (dynamic/1 and table/1 are the only directives that are supported;
+		// handled in SemanticTools)
 		// SWI 4.16 - program examination
 		OP_PRIOS.put("current_atom/1", 0);
 		OP_PRIOS.put("current_blob/2", 0);
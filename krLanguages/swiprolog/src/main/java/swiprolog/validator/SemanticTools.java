@@ -148,7 +148,8 @@ public class SemanticTools {
 		if (head.isDirective()) {
 			PrologCompound directive = (PrologCompound) term.getArg(0);
 			signature = directive.getSignature();
-			if (signature.equals("dynamic/1") && directive.getArg(0) instanceof PrologCompound) {
+			if ((signature.equals("dynamic/1") || signature.equals("table/1"))
+					&& directive.getArg(0) instanceof PrologCompound) {
 				PrologCompound dynamicPreds = (PrologCompound) directive.getArg(0);
 				for (Term headTerm : dynamicPreds.getOperands(",")) {
 					signature = headTerm.getSignature();
@@ -260,7 +261,8 @@ public class SemanticTools {
 	}
 
 	/**
-	 * Extract the signatures of dynamic declarations from the compound.
+	 * Extract the signatures of dynamic (or table) declarations from the
+	 * compound.
 	 *
 	 * @param term
 	 * @param info
@@ -271,9 +273,11 @@ public class SemanticTools {
 		Set<String> signatures = new LinkedHashSet<>();
 		if (term.isDirective()) {
 			PrologCompound directive = (PrologCompound) term.getArg(0);
-			if ((directive.getArity() != 1) || !directive.getName().equals("dynamic")
+			if ((directive.getArity() != 1)
+					|| !(directive.getName().equals("dynamic") || directive.getName().equals("table"))
 					|| !(directive.getArg(0) instanceof PrologCompound)) {
-				throw new ParserException("only the 'dynamic/1' directive is supported, found " + directive, info);
+				throw new ParserException("only the 'dynamic/1' and 'table/1' directives are supported, found "
+						+ directive, info);
 			}
 			PrologCompound content = (PrologCompound) directive.getArg(0);
 			for (Term signatureterm : content.getOperands(",")) {
@@ -315,10 +319,10 @@ public class SemanticTools {
 		}
 
 		Set<String> signatures = new LinkedHashSet<>();
-		if (compound.getArity() == 1 && "dynamic".equals(compound.getName())
+		if (compound.getArity() == 1 && ("dynamic".equals(compound.getName()) || "table".equals(compound.getName()))
 				&& compound.getArg(0) instanceof PrologCompound) {
-			// special case. dynamic contains list of //2 predicates that the
-			// user is explictly declaring.
+			// special case. dynamic (and table) contains list of //2 predicates
+			// that the user is explictly declaring.
 			PrologCompound dyamic = (PrologCompound) (compound).getArg(0);
 			for (Term dyndecl : dyamic.getOperands(",")) {
 				PrologCompound declaration = (dyndecl instanceof PrologCompound) ? (PrologCompound) dyndecl : null;
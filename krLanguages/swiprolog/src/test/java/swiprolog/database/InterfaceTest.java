@@ -1,9 +1,13 @@
 package swiprolog.database;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.After;
@@ -45,4 +49,47 @@ public class InterfaceTest {
 		assertTrue("databases should be identical objects, cache seems failing", db1 == db2);
 
 	}
+
+	@Test
+	public void testCacheIgnoresOrder() throws KRDatabaseException {
+		DatabaseFormula bformula = PrologImplFactory.getDBFormula(PrologImplFactory.getAtom("b", null));
+		Database db1 = this.swi.getDatabase("db1", Arrays.asList(this.aformula, bformula), true);
+		Database db2 = this.swi.getDatabase("db2", Arrays.asList(bformula, this.aformula, bformula), true);
+		assertSame(db1, db2);
+		assertEquals(1, this.swi.getStaticDatabaseHits());
+		assertEquals(1, this.swi.getStaticDatabaseMisses());
+		assertEquals(0.5, this.swi.getStaticDatabaseHitRate(), 0);
+	}
+
+	@Test
+	public void testCacheDifferentContent() throws KRDatabaseException {
+		DatabaseFormula bformula = PrologImplFactory.getDBFormula(PrologImplFactory.getAtom("b", null));
+		Database db1 = this.swi.getDatabase("db1", Arrays.asList(this.aformula), true);
+		Database db2 = this.swi.getDatabase("db2", Arrays.asList(bformula), true);
+		Database db3 = this.swi.getDatabase("db3", Arrays.asList(this.aformula), false);
+		assertNotSame(db1, db2);
+		assertNotSame(db1, db3);
+		assertEquals(0, this.swi.getStaticDatabaseHits());
+		assertEquals(2, this.swi.getStaticDatabaseMisses());
+	}
+
+	@Test
+	public void testCacheAfterDestroy() throws KRDatabaseException {
+		Database db1 = this.swi.getDatabase("db1", Arrays.asList(this.aformula), true);
+		db1.destroy();
+		Database db2 = this.swi.getDatabase("db2", Arrays.asList(this.aformula), true);
+		assertNotSame(db1, db2);
+		assertEquals(0, this.swi.getStaticDatabaseHits());
+	}
+
+	@Test
+	public void testRemoveStaticDatabase() throws KRDatabaseException {
+		DatabaseFormula bformula = PrologImplFactory.getDBFormula(PrologImplFactory.getAtom("b", null));
+		Database db1 = this.swi.getDatabase("db1", Arrays.asList(this.aformula), true);
+		Database db2 = this.swi.getDatabase("db2", Arrays.asList(bformula), true);
+		assertFalse(db1.equals(db2));
+		db1.destroy();
+		assertSame(db2, this.swi.getDatabase("db3", Arrays.asList(bformula), true));
+		assertEquals(1, this.swi.getStaticDatabaseHits());
+	}
 }
@@ -0,0 +1,127 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+import static swiprolog.language.Formulas.term;
+
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Aggregate;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Term;
+import swiprolog.SwiPrologInterface;
+import swiprolog.language.PrologCompound;
+
+/**
+ * Test {@link Database#aggregate}.
+ */
+public class TestAggregate {
+	private static KRInterface language = new SwiPrologInterface();
+	private Database beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false);
+		insert("p(3)");
+		insert("p(1)");
+		insert("p(5)");
+		insert("p(1) :- true");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+	}
+
+	private void insert(String text) throws KRDatabaseException {
+		this.beliefbase.insert(formula(text));
+	}
+
+	@Test
+	public void testCount() throws KRQueryFailedException {
+		// every proof counts
+		assertEquals(term("4"), this.beliefbase.aggregate(Aggregate.COUNT, null, query("p(X)")));
+		assertEquals(term("0"), this.beliefbase.aggregate(Aggregate.COUNT, null, query("(p(X), X > 5)")));
+	}
+
+	@Test
+	public void testSum() throws KRQueryFailedException {
+		assertEquals(term("10"), this.beliefbase.aggregate(Aggregate.SUM, term("X"), query("p(X)")));
+		assertEquals(term("20"), this.beliefbase.aggregate(Aggregate.SUM, term("X*2"), query("p(X)")));
+		assertEquals(term("0"), this.beliefbase.aggregate(Aggregate.SUM, term("X"), query("(p(X), X > 5)")));
+	}
+
+	@Test
+	public void testMinMax() throws KRQueryFailedException {
+		assertEquals(term("1"), this.beliefbase.aggregate(Aggregate.MIN, term("X"), query("p(X)")));
+		assertEquals(term("5"), this.beliefbase.aggregate(Aggregate.MAX, term("X"), query("p(X)")));
+		assertNull(this.beliefbase.aggregate(Aggregate.MIN, term("X"), query("(p(X), X > 5)")));
+		assertNull(this.beliefbase.aggregate(Aggregate.MAX, term("X"), query("(p(X), X > 5)")));
+	}
+
+	@Test
+	public void testBag() throws KRQueryFailedException {
+		assertEquals(term("[f(3),f(1),f(5),f(1)]"),
+				this.beliefbase.aggregate(Aggregate.BAG, term("f(X)"), query("p(X)")));
+		assertEquals(term("[]"), this.beliefbase.aggregate(Aggregate.BAG, term("X"), query("(p(X), X > 5)")));
+	}
+
+	/**
+	 * A bag is not transferred as one list, which JPL converts recursively.
+	 */
+	@Test
+	public void testLargeBag() throws KRQueryFailedException {
+		Term bag = this.beliefbase.aggregate(Aggregate.BAG, term("f(X)"), query("between(1,50000,X)"));
+		int size = 0;
+		while (bag instanceof PrologCompound && ((PrologCompound) bag).getArity() == 2) {
+			assertEquals(term("f(" + (size + 1) + ")"), ((PrologCompound) bag).getArg(0));
+			bag = ((PrologCompound) bag).getArg(1);
+			size++;
+		}
+		assertEquals(term("[]"), bag);
+		assertEquals(50000, size);
+	}
+
+	@Test
+	public void testBagVariableNames() throws KRQueryFailedException {
+		assertEquals(term("[g(3),g(1),g(5),g(1)]"),
+				this.beliefbase.aggregate(Aggregate.BAG, term("g(Element)"), query("p(Element)")));
+		assertEquals(term("[x-3,x-1,x-5,x-1]"),
+				this.beliefbase.aggregate(Aggregate.BAG, term("X-_X"), query("(p(_X), X = x)")));
+	}
+
+	/**
+	 * The result variable must not clash with the variables of the query.
+	 */
+	@Test
+	public void testVariableNames() throws KRQueryFailedException {
+		assertEquals(term("10"), this.beliefbase.aggregate(Aggregate.SUM, term("Result"), query("p(Result)")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingTemplate() throws KRQueryFailedException {
+		this.beliefbase.aggregate(Aggregate.SUM, null, query("p(X)"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingBagTemplate() throws KRQueryFailedException {
+		this.beliefbase.aggregate(Aggregate.BAG, null, query("p(X)"));
+	}
+
+	@Test(expected = KRQueryFailedException.class)
+	public void testError() throws KRQueryFailedException {
+		this.beliefbase.aggregate(Aggregate.SUM, term("X"), query("member(X,[a])"));
+	}
+}
@@ -0,0 +1,142 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+import static swiprolog.language.Formulas.update;
+
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Update;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test {@link Database#apply(Update)}.
+ */
+public class TestApplyUpdate {
+	private static KRInterface language = new SwiPrologInterface();
+	private PrologDatabase beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = (PrologDatabase) language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		this.beliefbase.insert(formula("p(1)"));
+		this.beliefbase.insert(formula("p(2)"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.beliefbase.destroy();
+	}
+
+	private static int count(Database database, String text) throws KRQueryFailedException {
+		return database.query(query(text)).size();
+	}
+
+	@Test
+	public void testApply() throws Exception {
+		this.beliefbase.apply(update("not(p(1)), p(3), q(1)"));
+		assertEquals(2, count(this.beliefbase, "p(X)"));
+		assertEquals(0, count(this.beliefbase, "p(1)"));
+		assertEquals(1, count(this.beliefbase, "q(1)"));
+		assertEquals(3, this.beliefbase.getTheory().getFormulas().size());
+	}
+
+	@Test
+	public void testDeleteAndInsertSameFormula() throws Exception {
+		long eliminated = this.beliefbase.getEliminatedWrites();
+		this.beliefbase.apply(update("not(p(1)), p(1)"));
+		assertEquals(1, count(this.beliefbase, "p(1)"));
+		assertEquals(eliminated + 2, this.beliefbase.getEliminatedWrites());
+		// the clause still has its reference.
+		assertTrue(this.beliefbase.delete(formula("p(1)")));
+		assertEquals(0, count(this.beliefbase, "p(1)"));
+	}
+
+	/**
+	 * Asserting a clause of a built-in predicate raises an exception after the
+	 * other operations of the update have been performed.
+	 */
+	@Test
+	public void testRollbackOnException() throws Exception {
+		try {
+			this.beliefbase.apply(update("not(p(1)), p(3), atom_length(a, 1)"));
+			fail("the update should fail");
+		} catch (KRDatabaseException e) {
+			// expected
+		}
+		assertEquals(2, count(this.beliefbase, "p(X)"));
+		assertEquals(1, count(this.beliefbase, "p(1)"));
+		assertEquals(2, this.beliefbase.getTheory().getFormulas().size());
+		assertFalse(this.beliefbase.getTheory().getFormulas().contains(formula("p(3)")));
+		// the restored clause can be deleted again.
+		assertTrue(this.beliefbase.delete(formula("p(1)")));
+		assertEquals(0, count(this.beliefbase, "p(1)"));
+	}
+
+	@Test
+	public void testRollbackOnFailingDirective() throws Exception {
+		try {
+			this.beliefbase.apply(update("not(p(2)), p(3), (:- fail)"));
+			fail("the update should fail");
+		} catch (KRDatabaseException e) {
+			// expected
+		}
+		assertEquals(2, count(this.beliefbase, "p(X)"));
+		assertEquals(0, count(this.beliefbase, "p(3)"));
+	}
+
+	@Test
+	public void testPendingWritesAreKept() throws Exception {
+		this.beliefbase.insert(formula("p(3)"));
+		try {
+			this.beliefbase.apply(update("not(p(3)), atom_length(a, 1)"));
+			fail("the update should fail");
+		} catch (KRDatabaseException e) {
+			// expected
+		}
+		assertEquals(3, count(this.beliefbase, "p(X)"));
+	}
+
+	@Test
+	public void testRollbackInFork() throws Exception {
+		Database fork = this.beliefbase.fork("whatif");
+		try {
+			try {
+				fork.apply(update("not(p(1)), atom_length(a, 1)"));
+				fail("the update should fail");
+			} catch (KRDatabaseException e) {
+				// expected
+			}
+			assertEquals(1, count(fork, "p(1)"));
+			assertTrue(fork.delete(formula("p(1)")));
+			assertEquals(0, count(fork, "p(1)"));
+			assertEquals(1, count(this.beliefbase, "p(1)"));
+		} finally {
+			fork.destroy();
+		}
+	}
+
+	@Test(expected = KRDatabaseException.class)
+	public void testStatic() throws Exception {
+		Database knowledge = language.getDatabase("knowledge", new LinkedHashSet<DatabaseFormula>(), true);
+		try {
+			knowledge.apply(update("p(1)"));
+		} finally {
+			knowledge.destroy();
+		}
+	}
+}
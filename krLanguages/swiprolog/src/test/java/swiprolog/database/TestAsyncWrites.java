@@ -0,0 +1,101 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test databases that perform their writes in the background, see
+ * {@link PrologDatabase#setAsyncWrites(boolean)}.
+ */
+public class TestAsyncWrites {
+	private static KRInterface language = new SwiPrologInterface();
+	private Database beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		PrologDatabase.setAsyncWrites(true);
+		this.beliefbase = language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+		PrologDatabase.setAsyncWrites(false);
+		PrologDatabase.setWriteBatchSize(PrologDatabase.DEFAULT_WRITE_BATCH_SIZE);
+	}
+
+	private void insert(int n) throws KRDatabaseException {
+		this.beliefbase.insert(formula("p(" + n + ")"));
+	}
+
+	@Test
+	public void testQuerySeesEarlierWrites() throws Exception {
+		for (int n = 0; n < 1000; n++) {
+			insert(n);
+			assertEquals(n + 1, this.beliefbase.query(query("p(X)")).size());
+		}
+		for (int n = 0; n < 1000; n += 2) {
+			this.beliefbase.delete(formula("p(" + n + ")"));
+		}
+		assertEquals(500, this.beliefbase.query(query("p(X)")).size());
+	}
+
+	@Test
+	public void testBackPressure() throws Exception {
+		PrologDatabase.setWriteBatchSize(10);
+		for (int n = 0; n < 10000; n++) {
+			insert(n);
+		}
+		assertEquals(10000, this.beliefbase.query(query("p(X)")).size());
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		Thread[] threads = new Thread[4];
+		final Exception[] failure = new Exception[1];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t * 1000;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int n = offset; n < offset + 1000; n++) {
+							insert(n);
+						}
+					} catch (KRDatabaseException e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(null, failure[0]);
+		assertEquals(4000, this.beliefbase.query(query("p(X)")).size());
+	}
+
+	@Test(expected = KRQueryFailedException.class)
+	public void testFailureIsReported() throws Exception {
+		insert(1);
+		this.beliefbase.insert(formula(":- X is 1/0"));
+		this.beliefbase.query(query("p(X)"));
+	}
+}
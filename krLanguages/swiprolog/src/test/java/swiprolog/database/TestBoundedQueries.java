@@ -0,0 +1,87 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test {@link Database#queryFirst}, {@link Database#queryLimit} and
+ * {@link Database#holds}.
+ */
+public class TestBoundedQueries {
+	private static KRInterface language = new SwiPrologInterface();
+	private Database beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false);
+		insert("q(1)");
+		insert("q(2)");
+		insert("q(2) :- true");
+		insert("q(3)");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+	}
+
+	private void insert(String text) throws KRDatabaseException {
+		this.beliefbase.insert(formula(text));
+	}
+
+	@Test
+	public void testQueryFirst() throws KRQueryFailedException {
+		Substitution first = this.beliefbase.queryFirst(query("q(X)"));
+		assertEquals("[X/1]", first.toString());
+		assertNull(this.beliefbase.queryFirst(query("q(4)")));
+	}
+
+	@Test
+	public void testQueryLimit() throws KRQueryFailedException {
+		assertEquals(0, this.beliefbase.queryLimit(query("q(X)"), 0).size());
+		assertEquals(1, this.beliefbase.queryLimit(query("q(X)"), 1).size());
+		// q(2) has two proofs but only counts once.
+		Set<Substitution> two = this.beliefbase.queryLimit(query("q(X)"), 3);
+		assertEquals("[[X/1], [X/2], [X/3]]", two.toString());
+		assertEquals(this.beliefbase.query(query("q(X)")), this.beliefbase.queryLimit(query("q(X)"), 10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeLimit() throws KRQueryFailedException {
+		this.beliefbase.queryLimit(query("q(X)"), -1);
+	}
+
+	@Test
+	public void testHolds() throws KRQueryFailedException {
+		assertTrue(this.beliefbase.holds(query("q(X)")));
+		assertTrue(this.beliefbase.holds(query("q(3)")));
+		assertFalse(this.beliefbase.holds(query("q(4)")));
+	}
+
+	@Test
+	public void testWritesAreFlushed() throws KRDatabaseException, KRQueryFailedException {
+		insert("q(4)");
+		assertTrue(this.beliefbase.holds(query("q(4)")));
+	}
+}
@@ -0,0 +1,98 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test loading the initial content of a database from a file, see
+ * {@link PrologDatabase#setBulkLoadSize(int)}.
+ */
+public class TestBulkLoad {
+	private final static int NCLAUSES = 2000;
+	private static SwiPrologInterface language = new SwiPrologInterface();
+	private PrologDatabase beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		Set<DatabaseFormula> content = new LinkedHashSet<>();
+		content.add(formula(":- dynamic(r/1)"));
+		for (int i = 0; i < NCLAUSES; i++) {
+			content.add(formula("p(" + i + ", " + (i - NCLAUSES / 2) + ")"));
+		}
+		content.add(formula("q('it''s', 'a\\nb', 'C:\\\\dir', [], [a, 'B' | T], T, -2.5e10, f(_, _))"));
+		content.add(formula("s(X) :- p(X, Y), Y > 0, \\+ r(X)"));
+		this.beliefbase = (PrologDatabase) language.getDatabase("beliefs", content, false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.beliefbase.destroy();
+		PrologDatabase.setBulkLoadSize(PrologDatabase.DEFAULT_BULK_LOAD_SIZE);
+	}
+
+	@Test
+	public void testContent() throws Exception {
+		assertEquals(NCLAUSES, this.beliefbase.query(query("p(X, Y)")).size());
+		assertEquals(NCLAUSES / 2 - 1, this.beliefbase.query(query("s(X)")).size());
+		assertEquals(0, this.beliefbase.query(query("r(X)")).size());
+		assertTrue(this.beliefbase.holds(query("p(0, -1000)")));
+	}
+
+	@Test
+	public void testQuoting() throws Exception {
+		assertTrue(this.beliefbase.holds(query("q(A, N, D, [], L, T, F, f(G, H)), A == 'it''s', "
+				+ "atom_codes(N, [0'a, 10, 0'b]), atom_length(D, 6), L = [a, 'B' | T], var(T), F =:= -2.5e10, "
+				+ "G \\== H")));
+	}
+
+	@Test
+	public void testDelete() throws Exception {
+		this.beliefbase.delete(formula("p(0, -1000)"));
+		this.beliefbase.delete(formula("s(X) :- p(X, Y), Y > 0, \\+ r(X)"));
+		assertEquals(NCLAUSES - 1, this.beliefbase.query(query("p(X, Y)")).size());
+		assertEquals(0, this.beliefbase.query(query("catch(s(X), _, fail)")).size());
+		this.beliefbase.insert(formula("p(0, -1000)"));
+		assertEquals(NCLAUSES, this.beliefbase.query(query("p(X, Y)")).size());
+	}
+
+	@Test
+	public void testSmallContent() throws Exception {
+		PrologDatabase.setBulkLoadSize(0);
+		Set<DatabaseFormula> content = new LinkedHashSet<>();
+		content.add(formula("p(1, 1)"));
+		PrologDatabase database = (PrologDatabase) language.getDatabase("small", content, false);
+		try {
+			assertEquals(1, database.query(query("p(X, Y)")).size());
+		} finally {
+			database.destroy();
+		}
+	}
+
+	@Test
+	public void testDestroyBeforeMaterialize() throws Exception {
+		Set<DatabaseFormula> content = new LinkedHashSet<>();
+		for (int i = 0; i < NCLAUSES; i++) {
+			content.add(formula("p(" + i + ")"));
+		}
+		PrologDatabase database = (PrologDatabase) language.getDatabase("unused", content, false);
+		database.destroy();
+		assertTrue(!database.isMaterialized());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSize() throws Exception {
+		PrologDatabase.setBulkLoadSize(-1);
+	}
+}
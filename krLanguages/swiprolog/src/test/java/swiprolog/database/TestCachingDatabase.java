@@ -0,0 +1,165 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+import static swiprolog.language.Formulas.update;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Aggregate;
+import krTools.database.CachingDatabase;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.dependency.PrologDependencyGraph;
+import swiprolog.language.PrologQuery;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Test {@link CachingDatabase} on a SWI Prolog database.
+ */
+public class TestCachingDatabase {
+	private static KRInterface language = new SwiPrologInterface();
+	private CachingDatabase cache;
+
+	@Before
+	public void setUp() throws Exception {
+		PrologDependencyGraph graph = new PrologDependencyGraph();
+		this.cache = new CachingDatabase(
+				language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false), graph, 4);
+		this.cache.insert(formula("on(a, b)"));
+		this.cache.insert(formula("on(b, c)"));
+		this.cache.insert(formula("above(X, Y) :- on(X, Y)"));
+		this.cache.insert(formula("above(X, Y) :- on(X, Z), above(Z, Y)"));
+		this.cache.insert(formula("colour(a, red)"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.cache.destroy();
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		assertEquals(3, this.cache.query(query("above(X, Y)")).size());
+		assertEquals(3, this.cache.query(query("above(X, Y)")).size());
+		assertEquals(1, this.cache.getHits());
+		assertEquals(1, this.cache.getMisses());
+		assertEquals(0.5, this.cache.getHitRate(), 0);
+	}
+
+	@Test
+	public void testResultsAreCopies() throws Exception {
+		Set<Substitution> result = this.cache.query(query("on(a, X)"));
+		result.iterator().next().remove(PrologImplFactory.getVar("X", null));
+		result.clear();
+		assertEquals("[[X/b]]", this.cache.query(query("on(a, X)")).toString());
+	}
+
+	@Test
+	public void testTransitiveInvalidation() throws Exception {
+		assertEquals(3, this.cache.query(query("above(X, Y)")).size());
+		assertTrue(this.cache.holds(query("colour(a, red)")));
+		this.cache.insert(formula("on(c, d)"));
+		// above/2 depends on on/2, colour/2 does not.
+		assertEquals(6, this.cache.query(query("above(X, Y)")).size());
+		assertTrue(this.cache.holds(query("colour(a, red)")));
+		assertEquals(1, this.cache.getHits());
+		assertEquals(1, this.cache.getInvalidations());
+		this.cache.delete(formula("colour(a, red)"));
+		assertFalse(this.cache.holds(query("colour(a, red)")));
+	}
+
+	@Test
+	public void testNewRule() throws Exception {
+		assertEquals(0, this.cache.query(query("above(X, d)")).size());
+		this.cache.insert(formula("above(X, Y) :- link(X, Y)"));
+		this.cache.insert(formula("link(c, d)"));
+		assertEquals(3, this.cache.query(query("above(X, d)")).size());
+		this.cache.delete(formula("link(c, d)"));
+		assertEquals(0, this.cache.query(query("above(X, d)")).size());
+	}
+
+	@Test
+	public void testNegation() throws Exception {
+		assertTrue(this.cache.holds(query("\\+ on(c, d)")));
+		this.cache.insert(formula("on(c, d)"));
+		assertFalse(this.cache.holds(query("\\+ on(c, d)")));
+	}
+
+	/**
+	 * A query that calls a goal that is only known when it is evaluated does
+	 * not depend on the signatures that it mentions.
+	 */
+	@Test
+	public void testUnknownGoal() throws Exception {
+		PrologQuery query = query("(N = colour, G =.. [N, a, C], call(G))");
+		assertEquals(1, this.cache.query(query).size());
+		this.cache.insert(formula("colour(a, blue)"));
+		assertEquals(2, this.cache.query(query).size());
+		this.cache.insert(formula("name(N, X, Y) :- G =.. [N, X, Y], G"));
+		assertEquals(2, this.cache.query(query("name(colour, a, C)")).size());
+		this.cache.insert(formula("colour(a, green)"));
+		assertEquals(3, this.cache.query(query("name(colour, a, C)")).size());
+		assertEquals(0, this.cache.getHits());
+	}
+
+	/**
+	 * Queries of goals in another module, or of built-ins that do not only
+	 * depend on the database, are never cached.
+	 */
+	@Test
+	public void testImpureGoal() throws Exception {
+		PrologQuery counter = query("flag(kr_cache_test, N, N + 1)");
+		assertEquals("[[N/0]]", this.cache.query(counter).toString());
+		assertEquals("[[N/1]]", this.cache.query(counter).toString());
+		PrologQuery member = query("lists:member(X, [1, 2])");
+		assertEquals(2, this.cache.query(member).size());
+		assertEquals(2, this.cache.query(member).size());
+		this.cache.insert(formula("now(T) :- get_time(T)"));
+		this.cache.query(query("now(T)"));
+		this.cache.query(query("now(T)"));
+		assertEquals(0, this.cache.getHits());
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		assertEquals(2, this.cache.queryLimit(query("on(X, Y)"), 5).size());
+		this.cache.apply(update("not(on(a, b)), on(a, c)"));
+		assertEquals("[[X/c]]", this.cache.query(query("on(a, X)")).toString());
+		assertEquals(2, this.cache.queryLimit(query("on(X, Y)"), 5).size());
+		assertEquals(0, this.cache.getHits());
+	}
+
+	@Test
+	public void testAggregate() throws Exception {
+		PrologQuery above = query("above(X, Y)");
+		assertEquals("3", this.cache.aggregate(Aggregate.COUNT, null, above).toString());
+		assertEquals("3", this.cache.aggregate(Aggregate.COUNT, null, above).toString());
+		assertEquals(1, this.cache.getHits());
+		this.cache.insert(formula("on(c, d)"));
+		assertEquals("6", this.cache.aggregate(Aggregate.COUNT, null, above).toString());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		for (String name : new String[] { "a", "b", "c", "d", "e" }) {
+			this.cache.query(query("on(" + name + ", X)"));
+		}
+		assertEquals(4, this.cache.size());
+		assertEquals(1, this.cache.getEvictions());
+		// the least recently used query was evicted.
+		this.cache.query(query("on(e, X)"));
+		this.cache.query(query("on(a, X)"));
+		assertEquals(1, this.cache.getHits());
+	}
+}
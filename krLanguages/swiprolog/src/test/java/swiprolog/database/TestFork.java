@@ -0,0 +1,148 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Aggregate;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test {@link Database#fork(String)}.
+ */
+public class TestFork {
+	private static KRInterface language = new SwiPrologInterface();
+	private Database beliefbase;
+	private Database fork;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false);
+		this.beliefbase.insert(formula("p(1)"));
+		this.beliefbase.insert(formula("p(2)"));
+		this.beliefbase.insert(formula("q(X) :- p(X), X > 1"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.fork != null) {
+			this.fork.destroy();
+		}
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+	}
+
+	private static int count(Database database, String text) throws KRQueryFailedException {
+		return database.query(query(text)).size();
+	}
+
+	private static String proofs(Database database, String text) throws KRQueryFailedException {
+		return database.aggregate(Aggregate.COUNT, null, query(text)).toString();
+	}
+
+	@Test
+	public void testSameContent() throws Exception {
+		this.fork = this.beliefbase.fork("whatif");
+		assertEquals("whatif", this.fork.getName());
+		assertEquals(2, count(this.fork, "p(X)"));
+		assertEquals(1, count(this.fork, "q(X)"));
+		assertEquals(((PrologDatabase) this.beliefbase).getTheory(), ((PrologDatabase) this.fork).getTheory());
+	}
+
+	@Test
+	public void testIncludesPendingWrites() throws Exception {
+		this.beliefbase.insert(formula("p(3)"));
+		this.fork = this.beliefbase.fork("whatif");
+		assertEquals(3, count(this.fork, "p(X)"));
+	}
+
+	@Test
+	public void testIndependentChanges() throws Exception {
+		this.fork = this.beliefbase.fork("whatif");
+		assertTrue(this.fork.insert(formula("p(3)")));
+		assertTrue(this.fork.delete(formula("p(1)")));
+		assertTrue(this.beliefbase.insert(formula("p(4)")));
+
+		assertEquals(2, count(this.fork, "p(X)"));
+		assertEquals(2, count(this.fork, "q(X)"));
+		assertEquals(0, count(this.fork, "p(4)"));
+		assertEquals(3, count(this.beliefbase, "p(X)"));
+		assertEquals(0, count(this.beliefbase, "p(3)"));
+		assertEquals(4, ((PrologDatabase) this.beliefbase).getTheory().getFormulas().size());
+		assertFalse(((PrologDatabase) this.fork).getTheory().getFormulas().contains(formula("p(1)")));
+	}
+
+	@Test
+	public void testDeleteRuleInFork() throws Exception {
+		this.fork = this.beliefbase.fork("whatif");
+		assertTrue(this.fork.delete(formula("q(X) :- p(X), X > 1")));
+		assertEquals(0, count(this.fork, "q(X)"));
+		assertEquals(1, count(this.beliefbase, "q(X)"));
+	}
+
+	/**
+	 * A copied clause is found by its content, and only that clause is deleted.
+	 */
+	@Test
+	public void testDeleteExactClauseInFork() throws Exception {
+		this.beliefbase.insert(formula("r(X)"));
+		this.beliefbase.insert(formula("r(a)"));
+		this.fork = this.beliefbase.fork("whatif");
+		assertTrue(this.fork.delete(formula("r(a)")));
+		assertEquals("1", proofs(this.fork, "r(a)"));
+		assertEquals(1, count(this.fork, "r(b)"));
+		assertTrue(this.fork.delete(formula("r(X)")));
+		assertEquals(0, count(this.fork, "r(b)"));
+		assertEquals("2", proofs(this.beliefbase, "r(a)"));
+	}
+
+	@Test
+	public void testDynamicDeclarations() throws Exception {
+		this.beliefbase.insert(formula(":- dynamic(r/1)"));
+		this.fork = this.beliefbase.fork("whatif");
+		assertEquals(0, count(this.fork, "r(X)"));
+	}
+
+	@Test
+	public void testForkOfFork() throws Exception {
+		this.fork = this.beliefbase.fork("whatif");
+		this.fork.insert(formula("p(3)"));
+		Database second = this.fork.fork("whatif2");
+		try {
+			second.delete(formula("p(2)"));
+			assertEquals(2, count(second, "p(X)"));
+			assertEquals(3, count(this.fork, "p(X)"));
+		} finally {
+			second.destroy();
+		}
+	}
+
+	@Test(expected = KRDatabaseException.class)
+	public void testStaticForkIsModifiable() throws Exception {
+		Database knowledge = language.getDatabase("knowledge", Arrays.asList(formula("k(1)")), true);
+		this.fork = knowledge.fork("whatif");
+		try {
+			assertEquals(1, count(this.fork, "k(X)"));
+			this.fork.insert(formula("k(2)"));
+			assertEquals(2, count(this.fork, "k(X)"));
+			knowledge.insert(formula("k(2)"));
+		} finally {
+			knowledge.destroy();
+		}
+	}
+}
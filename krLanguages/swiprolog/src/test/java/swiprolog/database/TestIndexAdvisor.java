@@ -0,0 +1,146 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test {@link PrologDatabase#index(String, int...)} and {@link IndexAdvisor}.
+ */
+public class TestIndexAdvisor {
+	private final static int NCLAUSES = 200;
+	private static KRInterface language = new SwiPrologInterface();
+	private PrologDatabase beliefbase;
+	private int minLookups;
+
+	@Before
+	public void setUp() throws Exception {
+		this.minLookups = IndexAdvisor.getMinLookups();
+		IndexAdvisor.setMinLookups(3);
+		this.beliefbase = (PrologDatabase) language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		for (int i = 0; i < NCLAUSES; i++) {
+			this.beliefbase.insert(formula("on(" + i + ", " + (i % 20) + ", c" + (i % 7) + ")"));
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.beliefbase.destroy();
+		IndexAdvisor.setMinLookups(this.minLookups);
+		PrologDatabase.setAutoIndex(false);
+	}
+
+	private static int count(Database database, String text) throws KRQueryFailedException {
+		return database.query(query(text)).size();
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		IndexAdvisor advisor = this.beliefbase.getIndexAdvisor();
+		assertEquals(0, advisor.getHitRate(), 0);
+		assertEquals(1, count(this.beliefbase, "on(3, X, Y)"));
+		assertEquals(10, count(this.beliefbase, "on(X, 3, Y)"));
+		// not counted: nothing is bound, or not a predicate of the database.
+		assertEquals(NCLAUSES, count(this.beliefbase, "on(X, Y, Z)"));
+		assertEquals(0, count(this.beliefbase, "colour(X, red)"));
+		assertEquals(1, advisor.getHits());
+		assertEquals(1, advisor.getMisses());
+		assertEquals(0.5, advisor.getHitRate(), 0);
+	}
+
+	@Test
+	public void testNestedLookups() throws Exception {
+		IndexAdvisor advisor = this.beliefbase.getIndexAdvisor();
+		assertEquals(1, count(this.beliefbase, "not(on(X, 3, c9)), findall(Y, on(Y, 4, Z), L)"));
+		assertEquals(2, advisor.getMisses());
+	}
+
+	@Test
+	public void testAdvise() throws Exception {
+		IndexAdvisor advisor = this.beliefbase.getIndexAdvisor();
+		for (int i = 0; i < 3; i++) {
+			count(this.beliefbase, "on(X, " + i + ", c1)");
+			count(this.beliefbase, "on(X, Y, c" + i + ")");
+		}
+		count(this.beliefbase, "on(X, 3, c1)");
+		count(this.beliefbase, "on(X, 1, Y)");
+		assertEquals(Arrays.asList(new IndexAdvisor.Index("on/3", 2, 3), new IndexAdvisor.Index("on/3", 3)),
+				advisor.advise());
+		assertTrue(this.beliefbase.index("on/3", 3));
+		assertFalse(this.beliefbase.index("on/3", 3));
+		assertEquals(Arrays.asList(new IndexAdvisor.Index("on/3", 2, 3)), advisor.advise());
+		// an index on the third argument also serves lookups of the second and
+		// third argument.
+		long hits = advisor.getHits();
+		assertEquals(2, count(this.beliefbase, "on(X, 1, c1)"));
+		assertEquals(hits + 1, advisor.getHits());
+	}
+
+	@Test
+	public void testMinClauses() throws Exception {
+		this.beliefbase.insert(formula("colour(a, red)"));
+		for (int i = 0; i < 3; i++) {
+			count(this.beliefbase, "colour(X, red)");
+		}
+		assertTrue(this.beliefbase.getIndexAdvisor().advise().isEmpty());
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		this.beliefbase.index("on/3", 2, 3);
+		assertTrue(this.beliefbase.getIndexes("on/3").contains("multi([2,3])"));
+		assertEquals(2, count(this.beliefbase, "on(X, 3, c3)"));
+		assertEquals(1, this.beliefbase.getIndexAdvisor().getHits());
+	}
+
+	@Test
+	public void testIndexAfterInsert() throws Exception {
+		this.beliefbase.index("on/3", 3);
+		this.beliefbase.delete(formula("on(0, 0, c0)"));
+		this.beliefbase.insert(formula("on(0, 0, c0)"));
+		assertTrue(this.beliefbase.getIndexes("on/3").contains("single(3)"));
+	}
+
+	@Test
+	public void testAutoIndex() throws Exception {
+		PrologDatabase.setAutoIndex(true);
+		for (int i = 0; i < 3; i++) {
+			count(this.beliefbase, "on(X, Y, c" + i + ")");
+		}
+		assertEquals(new LinkedHashSet<>(Arrays.asList(new IndexAdvisor.Index("on/3", 3))),
+				this.beliefbase.getIndexAdvisor().getDeclared());
+		assertTrue(this.beliefbase.getIndexes("on/3").contains("single(3)"));
+	}
+
+	@Test
+	public void testFork() throws Exception {
+		this.beliefbase.index("on/3", 3);
+		PrologDatabase fork = this.beliefbase.fork("whatif");
+		try {
+			assertTrue(fork.getIndexes("on/3").contains("single(3)"));
+		} finally {
+			fork.destroy();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidIndex() throws Exception {
+		this.beliefbase.index("on/3", 4);
+	}
+}
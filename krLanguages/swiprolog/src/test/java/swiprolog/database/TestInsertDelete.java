@@ -2,6 +2,9 @@ package swiprolog.database;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+import static swiprolog.language.Formulas.term;
 
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -11,10 +14,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import krTools.KRInterface;
+import krTools.database.Aggregate;
 import krTools.database.Database;
 import krTools.exceptions.KRDatabaseException;
 import krTools.exceptions.KRQueryFailedException;
 import krTools.language.DatabaseFormula;
+import krTools.language.Query;
 import krTools.language.Substitution;
 import krTools.language.Term;
 import swiprolog.SwiPrologInterface;
@@ -102,6 +107,60 @@ public class TestInsertDelete {
 		assertTrue(QueryP().isEmpty());
 	}
 
+	/**
+	 * Check that a rule can be deleted.
+	 *
+	 * @throws KRDatabaseException
+	 * @throws KRQueryFailedException
+	 */
+	@Test
+	public void testDeleteRule() throws KRDatabaseException, KRQueryFailedException {
+		DatabaseFormula rule = formula("q(X) :- X > 1");
+		PrologQuery query = query("q(2)");
+		this.beliefbase.insert(rule);
+		assertEquals(1, this.beliefbase.query(query).size());
+
+		this.beliefbase.delete(rule);
+		assertTrue(this.beliefbase.query(query).isEmpty());
+	}
+
+	/**
+	 * Check that delete only removes the clause of the deleted formula, and not
+	 * other clauses that match it.
+	 *
+	 * @throws KRDatabaseException
+	 * @throws KRQueryFailedException
+	 */
+	@Test
+	public void testDeleteOnlyFormula() throws KRDatabaseException, KRQueryFailedException {
+		this.beliefbase.insert(formula("q(X)"));
+		this.beliefbase.insert(formula("q(1)"));
+
+		this.beliefbase.delete(formula("q(X)"));
+		assertEquals(1, this.beliefbase.query(query("q(1)")).size());
+		assertEquals(1, this.beliefbase.query(query("q(X)")).size());
+	}
+
+	/**
+	 * The clause references are kept by the helpers, not in the module of the
+	 * database.
+	 */
+	@Test
+	public void testClauseReferences() throws KRDatabaseException, KRQueryFailedException {
+		this.beliefbase.insert(formula("q(1)"));
+		this.beliefbase.insert(formula("q(2)"));
+		Query references = query("kr_database:clause_ref(beliefs, _, _)");
+		assertEquals(term("2"), this.beliefbase.aggregate(Aggregate.COUNT, null, references));
+		assertTrue(this.beliefbase.query(query("predicate_property(beliefs:Head, number_of_clauses(N)), N > 0, "
+				+ "\\+ predicate_property(beliefs:Head, imported_from(_)), Head \\= q(_)")).isEmpty());
+
+		this.beliefbase.delete(formula("q(1)"));
+		assertEquals(term("1"), this.beliefbase.aggregate(Aggregate.COUNT, null, references));
+		this.beliefbase.destroy();
+		this.beliefbase = null;
+		assertEquals(term("0"), this.knowledgebase.aggregate(Aggregate.COUNT, null, references));
+	}
+
 	@Test
 	public void testDatabaseErase() throws KRDatabaseException, KRQueryFailedException {
 		String stringterm = "requests([request('INTERACTION', 2,'.'(answer(0, 'OK'), [])),request('INTERACTION', 3, '.'(answer(0,'OK'), []))])";
@@ -181,6 +181,28 @@ public class TestInsertDeleteBenchmarks {
 		assertTrue(QueryPX().isEmpty());
 	}
 
+	/**
+	 * Deletes rules that all have the same head, so that the clause to delete
+	 * can not be found through indexing.
+	 *
+	 * @throws KRDatabaseException
+	 * @throws KRQueryFailedException
+	 */
+	@Test
+	public void testDeleteRules() throws KRDatabaseException, KRQueryFailedException {
+		for (int n = 0; n < NINSERTS; n++) {
+			this.beliefbase.insert(PrologImplFactory.getDBFormula(rule(n)));
+			flush();
+		}
+		start();
+		for (int n = 0; n < NINSERTS; n++) {
+			this.beliefbase.delete(PrologImplFactory.getDBFormula(rule(n)));
+			flush();
+		}
+		end("deleteRules");
+		assertTrue(QueryPX().isEmpty());
+	}
+
 	/******************************
 	 * PRIVATE
 	 *
@@ -210,6 +232,17 @@ public class TestInsertDeleteBenchmarks {
 		}
 	}
 
+	/**
+	 * @param n
+	 *            a number
+	 * @return the rule p(X) :- X = n.
+	 */
+	private PrologCompound rule(int n) {
+		PrologCompound body = PrologImplFactory.getCompound("=",
+				new Term[] { this.X, PrologImplFactory.getNumber(n, null) }, null);
+		return PrologImplFactory.getCompound(":-", new Term[] { this.pX, body }, null);
+	}
+
 	/**
 	 * delete all NINSERT p(N) predicates.
 	 *
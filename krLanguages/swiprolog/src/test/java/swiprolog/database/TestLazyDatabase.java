@@ -0,0 +1,77 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+import static swiprolog.language.Formulas.term;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test that the SWI Prolog module of a {@link PrologDatabase} is only created
+ * when the database is used.
+ */
+public class TestLazyDatabase {
+	private static KRInterface language = new SwiPrologInterface();
+
+	@Test
+	public void testNeverUsed() throws Exception {
+		long before = PrologDatabase.getNeverMaterialized();
+		PrologDatabase database = (PrologDatabase) language.getDatabase("unused",
+				Arrays.asList(formula("p(1)"), formula("p(2)")), true);
+		assertFalse(database.isMaterialized());
+		assertFalse(PrologDatabase.rawholds(term("current_predicate(unused:p/1)")));
+		database.destroy();
+		assertEquals(before + 1, PrologDatabase.getNeverMaterialized());
+	}
+
+	@Test
+	public void testMaterializedByQuery() throws Exception {
+		long before = PrologDatabase.getNeverMaterialized();
+		PrologDatabase database = (PrologDatabase) language.getDatabase("knowledge",
+				Arrays.asList(formula("p(1)"), formula("p(2)")), true);
+		assertEquals(2, database.query(query("p(X)")).size());
+		assertTrue(database.isMaterialized());
+		database.destroy();
+		assertEquals(before, PrologDatabase.getNeverMaterialized());
+	}
+
+	@Test
+	public void testMaterializedByWrites() throws Exception {
+		PrologDatabase.setWriteBatchSize(10);
+		try {
+			PrologDatabase database = (PrologDatabase) language.getDatabase("beliefs",
+					new LinkedHashSet<DatabaseFormula>(), false);
+			for (int n = 0; n < 5; n++) {
+				database.insert(formula("p(" + n + ")"));
+			}
+			assertFalse(database.isMaterialized());
+			for (int n = 5; n < 10; n++) {
+				database.insert(formula("p(" + n + ")"));
+			}
+			assertTrue(database.isMaterialized());
+			database.destroy();
+		} finally {
+			PrologDatabase.setWriteBatchSize(PrologDatabase.DEFAULT_WRITE_BATCH_SIZE);
+		}
+	}
+
+	@Test
+	public void testMaterialize() throws Exception {
+		PrologDatabase database = (PrologDatabase) language.getDatabase("knowledge",
+				Arrays.asList(formula("p(1)")), true);
+		database.materialize();
+		assertTrue(database.isMaterialized());
+		assertTrue(PrologDatabase.rawholds(term("knowledge:p(1)")));
+		database.destroy();
+	}
+}
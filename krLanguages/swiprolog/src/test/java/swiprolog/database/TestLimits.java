@@ -0,0 +1,117 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.database.SolutionIterator;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+import swiprolog.errors.LimitExceededError;
+
+/**
+ * Test {@link PrologDatabase#setInferenceLimit(long)} and
+ * {@link PrologDatabase#setTimeLimit(double)}.
+ */
+public class TestLimits {
+	private static SwiPrologInterface language = new SwiPrologInterface();
+	private PrologDatabase beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = (PrologDatabase) language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		this.beliefbase.insert(formula("loop :- loop"));
+		this.beliefbase.insert(formula("count(N) :- between(1, N, _)"));
+		this.beliefbase.insert(formula("p(1)"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.beliefbase.destroy();
+		language.setDefaultInferenceLimit(0);
+		language.setDefaultTimeLimit(0);
+	}
+
+	@Test
+	public void testInferenceLimit() throws Exception {
+		this.beliefbase.setInferenceLimit(100000);
+		try {
+			this.beliefbase.query(query("loop"));
+			fail("the query should exceed its limit");
+		} catch (LimitExceededError e) {
+			assertEquals(LimitExceededError.Limit.INFERENCES, e.getLimit());
+			assertEquals(100000, e.getValue(), 0);
+		}
+		// the limit holds per solution.
+		assertEquals(1, this.beliefbase.query(query("count(200000)")).size());
+		assertEquals(1, this.beliefbase.query(query("p(X)")).size());
+	}
+
+	@Test
+	public void testTimeLimit() throws Exception {
+		this.beliefbase.setTimeLimit(0.2);
+		long start = System.nanoTime();
+		try {
+			this.beliefbase.holds(query("loop"));
+			fail("the query should exceed its limit");
+		} catch (LimitExceededError e) {
+			assertEquals(LimitExceededError.Limit.TIME, e.getLimit());
+		}
+		assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+		// a later query on the same engine is not stopped by the watchdog.
+		assertEquals(1, this.beliefbase.query(query("p(X)")).size());
+		Thread.sleep(300);
+		assertEquals(1, this.beliefbase.query(query("p(X)")).size());
+	}
+
+	@Test
+	public void testTimeLimitOfIterator() throws Exception {
+		this.beliefbase.setTimeLimit(0.2);
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query("repeat"))) {
+			while (solutions.hasNext()) {
+				solutions.next();
+			}
+			fail("the query should exceed its limit");
+		} catch (LimitExceededError e) {
+			assertEquals(LimitExceededError.Limit.TIME, e.getLimit());
+		}
+	}
+
+	@Test
+	public void testQueryLimits() throws Exception {
+		try {
+			this.beliefbase.query(query("loop"), 0, 0.1);
+			fail("the query should exceed its limit");
+		} catch (LimitExceededError e) {
+			assertEquals(LimitExceededError.Limit.TIME, e.getLimit());
+		}
+		assertEquals(0, this.beliefbase.getTimeLimit(), 0);
+	}
+
+	@Test
+	public void testDefaults() throws Exception {
+		language.setDefaultInferenceLimit(1000);
+		PrologDatabase database = (PrologDatabase) language.getDatabase("limited",
+				new LinkedHashSet<DatabaseFormula>(), false);
+		try {
+			assertEquals(1000, database.getInferenceLimit());
+			assertEquals(0, this.beliefbase.getInferenceLimit());
+		} finally {
+			database.destroy();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeLimit() throws Exception {
+		this.beliefbase.setTimeLimit(-1);
+	}
+}
@@ -0,0 +1,136 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import javax.management.MBeanServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.database.SolutionIterator;
+import krTools.language.DatabaseFormula;
+import krTools.metrics.DatabaseMetrics;
+import krTools.metrics.JmxMetrics;
+import krTools.metrics.MetricsRegistry;
+import krTools.parser.Parser;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test the {@link DatabaseMetrics} of a {@link PrologDatabase}, exposed by
+ * {@link JmxMetrics}.
+ */
+public class TestMetrics {
+	private static SwiPrologInterface language = new SwiPrologInterface();
+	private static MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	private JmxMetrics metrics;
+	private PrologDatabase beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.metrics = JmxMetrics.install();
+		this.beliefbase = (PrologDatabase) language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.beliefbase.destroy();
+		MetricsRegistry.setMetrics(null);
+		this.metrics.close();
+	}
+
+	private Object attribute(String type, String name, String attribute) throws Exception {
+		return server.getAttribute(this.metrics.getObjectName(type, PrologDatabase.BACKEND + "." + name), attribute);
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		this.beliefbase.insert(formula("p(1)"));
+		this.beliefbase.insert(formula("p(2)"));
+		this.beliefbase.insert(formula("p(3)"));
+		this.beliefbase.delete(formula("p(3)"));
+		assertEquals(2, this.beliefbase.query(query("p(X)")).size());
+		assertTrue(this.beliefbase.holds(query("p(1)")));
+
+		assertEquals(2L, attribute("Counter", DatabaseMetrics.QUERY_COUNT, "Count"));
+		assertEquals(2L, attribute("Timer", DatabaseMetrics.QUERY_TIME, "Count"));
+		assertEquals(3L, attribute("Histogram", DatabaseMetrics.QUERY_SOLUTIONS, "Sum"));
+		assertEquals(2L, attribute("Histogram", DatabaseMetrics.QUERY_SOLUTIONS, "Max"));
+		assertEquals(3L, attribute("Counter", DatabaseMetrics.INSERT_COUNT, "Count"));
+		assertEquals(1L, attribute("Counter", DatabaseMetrics.DELETE_COUNT, "Count"));
+		// the writes were flushed before the first query.
+		assertEquals(1L, attribute("Histogram", DatabaseMetrics.FLUSH_SIZE, "Count"));
+		assertTrue((Double) attribute("Timer", DatabaseMetrics.FLUSH_TIME, "TotalMillis") > 0);
+	}
+
+	@Test
+	public void testIterator() throws Exception {
+		this.beliefbase.insert(formula("p(1)"));
+		this.beliefbase.insert(formula("p(2)"));
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query("p(X)"))) {
+			assertTrue(solutions.hasNext());
+			solutions.next();
+		}
+		// recorded when closed, with the solutions that were returned.
+		assertEquals(1L, attribute("Timer", DatabaseMetrics.QUERY_TIME, "Count"));
+		assertEquals(1L, attribute("Histogram", DatabaseMetrics.QUERY_SOLUTIONS, "Sum"));
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		language.getParser(new StringReader("p(1). q(X) :- p(X)."), null).parseDBFs();
+		assertEquals(1L, attribute("Timer", DatabaseMetrics.PARSE_TIME, "Count"));
+	}
+
+	@Test
+	public void testParserCreatedBeforeInstall() throws Exception {
+		this.metrics.close();
+		MetricsRegistry.setMetrics(null);
+		Parser parser = language.getParser(new StringReader("p(1). q(X) :- p(X)."), null);
+		this.metrics = JmxMetrics.install();
+		parser.parseDBFs();
+		assertEquals(1L, attribute("Timer", DatabaseMetrics.PARSE_TIME, "Count"));
+	}
+
+	@Test
+	public void testStaticDatabases() throws Exception {
+		PrologDatabase db1 = (PrologDatabase) language.getDatabase("static1", Arrays.asList(formula("s(1)")), true);
+		PrologDatabase db2 = (PrologDatabase) language.getDatabase("static2", Arrays.asList(formula("s(1)")), true);
+		try {
+			assertEquals(1L, attribute("Counter", DatabaseMetrics.STATIC_HITS, "Count"));
+			assertEquals(1L, attribute("Counter", DatabaseMetrics.STATIC_MISSES, "Count"));
+		} finally {
+			db1.destroy();
+			if (db2 != db1) {
+				db2.destroy();
+			}
+		}
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		this.beliefbase.query(query("true"));
+		MetricsRegistry.setMetrics(null);
+		assertFalse(MetricsRegistry.isEnabled());
+		this.beliefbase.query(query("true"));
+		assertEquals(1L, attribute("Counter", DatabaseMetrics.QUERY_COUNT, "Count"));
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		this.beliefbase.query(query("true"));
+		assertTrue(server.isRegistered(this.metrics.getObjectName("Counter", "swiprolog.query.count")));
+		this.metrics.close();
+		assertFalse(server.isRegistered(this.metrics.getObjectName("Counter", "swiprolog.query.count")));
+	}
+}
@@ -0,0 +1,129 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import krTools.language.Var;
+import swiprolog.SwiPrologInterface;
+import swiprolog.language.PrologQuery;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Test {@link Database#query(krTools.language.Query, java.util.Collection)}.
+ */
+public class TestProjection {
+	private static KRInterface language = new SwiPrologInterface();
+	private Database beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false);
+		insert("edge(a,b)");
+		insert("edge(a,c)");
+		insert("edge(b,c)");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+	}
+
+	private void insert(String text) throws KRDatabaseException {
+		this.beliefbase.insert(formula(text));
+	}
+
+	private static Var var(String name) {
+		return PrologImplFactory.getVar(name, null);
+	}
+
+	@Test
+	public void testProjection() throws KRQueryFailedException {
+		Set<Substitution> solutions = this.beliefbase.query(query("edge(X,Y)"), Collections.singleton(var("X")));
+		// a occurs twice but is returned once.
+		assertEquals(2, solutions.size());
+		for (Substitution solution : solutions) {
+			assertEquals(Arrays.asList(var("X")), solution.getVariables());
+		}
+	}
+
+	@Test
+	public void testSameAsRetainAll() throws KRQueryFailedException {
+		PrologQuery query = query("(edge(X,Y), edge(Y,Z))");
+		Set<Var> projection = new LinkedHashSet<>(Arrays.asList(var("Z"), var("X")));
+		Set<Substitution> expected = new LinkedHashSet<>();
+		for (Substitution solution : this.beliefbase.query(query)) {
+			solution.retainAll(projection);
+			expected.add(solution);
+		}
+		assertEquals(expected, this.beliefbase.query(query, projection));
+	}
+
+	@Test
+	public void testNoVariables() throws KRQueryFailedException {
+		Set<Substitution> solutions = this.beliefbase.query(query("edge(X,Y)"), Collections.<Var> emptySet());
+		assertEquals(1, solutions.size());
+		assertTrue(solutions.iterator().next().getVariables().isEmpty());
+		assertTrue(this.beliefbase.query(query("edge(c,X)"), Collections.<Var> emptySet()).isEmpty());
+	}
+
+	/**
+	 * The variable holding the solutions must not clash with the variables of
+	 * the query.
+	 */
+	@Test
+	public void testVariableNames() throws KRQueryFailedException {
+		Set<Substitution> solutions = this.beliefbase.query(query("edge(Solution,Y)"),
+				Collections.singleton(var("Solution")));
+		assertEquals(2, solutions.size());
+		// the variables are renamed to names that start with _, but X does
+		// not become _X.
+		solutions = this.beliefbase.query(query("edge(X,_X)"), Collections.singleton(var("_X")));
+		assertEquals(2, solutions.size());
+	}
+
+	/**
+	 * A variable that does not occur in the query is not bound, like with
+	 * {@link Substitution#retainAll(java.util.Collection)}.
+	 */
+	@Test
+	public void testUnknownVariable() throws KRQueryFailedException {
+		Set<Substitution> solutions = this.beliefbase.query(query("edge(a,X)"),
+				new LinkedHashSet<>(Arrays.asList(var("X"), var("Unknown"))));
+		assertEquals("[[X/b], [X/c]]", solutions.toString());
+	}
+
+	/**
+	 * The solutions are not transferred as one list, which JPL converts
+	 * recursively.
+	 */
+	@Test
+	public void testManySolutions() throws KRQueryFailedException {
+		Set<Substitution> solutions = this.beliefbase.query(query("between(1,50000,X)"),
+				Collections.singleton(var("X")));
+		assertEquals(50000, solutions.size());
+	}
+
+	@Test(expected = KRQueryFailedException.class)
+	public void testError() throws KRQueryFailedException {
+		this.beliefbase.query(query("X is 1/0"), Collections.singleton(var("X")));
+	}
+}
@@ -0,0 +1,127 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test compiling the content of static databases, see
+ * {@link PrologDatabase#setQlfCacheDirectory(File)}.
+ */
+public class TestQlfCache {
+	private static SwiPrologInterface language = new SwiPrologInterface();
+	private File directory;
+	private Set<DatabaseFormula> content;
+
+	@Before
+	public void setUp() throws Exception {
+		this.directory = Files.createTempDirectory("kr-qlf").toFile();
+		PrologDatabase.setQlfCacheDirectory(this.directory);
+		this.content = new LinkedHashSet<>();
+		this.content.add(formula(":- table(path/2)"));
+		this.content.add(formula("path(X, Y) :- path(X, Z), edge(Z, Y)"));
+		this.content.add(formula("path(X, Y) :- edge(X, Y)"));
+		this.content.add(formula("edge(a, b)"));
+		this.content.add(formula("edge(b, a)"));
+		this.content.add(formula("edge(b, 'it''s')"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		PrologDatabase.setQlfCacheDirectory(null);
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	private PrologDatabase create(String name, Set<DatabaseFormula> content) throws Exception {
+		return (PrologDatabase) language.getDatabase(name, content, true);
+	}
+
+	private void check(PrologDatabase database) throws Exception {
+		assertEquals(3, database.query(query("path(a, X)")).size());
+		assertTrue(database.holds(query("path(a, 'it''s')")));
+	}
+
+	@Test
+	public void testCompile() throws Exception {
+		PrologDatabase database = create("compiled", this.content);
+		try {
+			check(database);
+			String[] files = this.directory.list();
+			assertEquals(1, files.length);
+			assertTrue(files[0].endsWith(".qlf"));
+		} finally {
+			database.destroy();
+		}
+	}
+
+	@Test
+	public void testWarmStart() throws Exception {
+		PrologDatabase database = create("warm", this.content);
+		database.materialize();
+		database.destroy();
+		File[] compiled = this.directory.listFiles();
+		assertEquals(1, compiled.length);
+		long modified = compiled[0].lastModified();
+
+		database = create("warm", this.content);
+		try {
+			// no source file is written for content that was compiled.
+			assertEquals(1, this.directory.list().length);
+			check(database);
+			assertEquals(1, this.directory.list().length);
+			assertEquals(modified, compiled[0].lastModified());
+		} finally {
+			database.destroy();
+		}
+	}
+
+	@Test
+	public void testKeys() throws Exception {
+		Set<DatabaseFormula> other = new LinkedHashSet<>(this.content);
+		other.add(formula("edge(a, c)"));
+		PrologDatabase first = create("first", this.content);
+		PrologDatabase second = create("second", other);
+		try {
+			check(first);
+			assertEquals(4, second.query(query("path(a, X)")).size());
+			// a file can only be loaded into one module, so each has its own.
+			assertEquals(2, this.directory.list().length);
+		} finally {
+			first.destroy();
+			second.destroy();
+		}
+	}
+
+	@Test
+	public void testDestroyBeforeMaterialize() throws Exception {
+		create("unused", this.content).destroy();
+		assertEquals(0, this.directory.list().length);
+	}
+
+	@Test
+	public void testNotStatic() throws Exception {
+		PrologDatabase database = (PrologDatabase) language.getDatabase("dynamic", this.content, false);
+		try {
+			check(database);
+			assertEquals(0, this.directory.list().length);
+		} finally {
+			database.destroy();
+		}
+	}
+}
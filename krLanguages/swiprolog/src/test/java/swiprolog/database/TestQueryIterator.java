@@ -0,0 +1,97 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.query;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.database.SolutionIterator;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Test lazy query evaluation with {@link Database#queryIterator}.
+ */
+public class TestQueryIterator {
+	private static KRInterface language = new SwiPrologInterface();
+	private Database beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(), false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+	}
+
+	@Test
+	public void testAllSolutions() throws KRQueryFailedException {
+		int count = 0;
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query("between(1,100,X)"))) {
+			while (solutions.hasNext()) {
+				Substitution solution = solutions.next();
+				assertEquals(1, solution.getVariables().size());
+				count++;
+			}
+			assertFalse(solutions.hasNext());
+		}
+		assertEquals(100, count);
+	}
+
+	@Test
+	public void testSameAsQuery() throws KRQueryFailedException {
+		PrologQuery query = query("member(X,[a,b,c])");
+		Set<Substitution> lazy = new LinkedHashSet<>();
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query)) {
+			while (solutions.hasNext()) {
+				lazy.add(solutions.next());
+			}
+		}
+		assertEquals(this.beliefbase.query(query), lazy);
+	}
+
+	/**
+	 * Only the first solutions of an infinite query are computed.
+	 */
+	@Test
+	public void testEarlyClose() throws KRQueryFailedException {
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query("repeat"))) {
+			for (int n = 0; n < 10; n++) {
+				assertTrue(solutions.hasNext());
+				solutions.next();
+			}
+		}
+		// the engine can be used again after closing.
+		assertEquals(1, this.beliefbase.query(query("true")).size());
+	}
+
+	@Test
+	public void testNoSolutions() throws KRQueryFailedException {
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query("fail"))) {
+			assertFalse(solutions.hasNext());
+		}
+	}
+
+	@Test(expected = KRQueryFailedException.class)
+	public void testError() throws KRQueryFailedException {
+		try (SolutionIterator solutions = this.beliefbase.queryIterator(query("X is 1/0"))) {
+			solutions.hasNext();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+import static swiprolog.language.Formulas.term;
+import static swiprolog.language.Formulas.update;
+
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.database.Database;
+import krTools.exceptions.KRDatabaseException;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test {@link PrologDatabase#table(String, int)}.
+ */
+public class TestTabling {
+	private static KRInterface language = new SwiPrologInterface();
+	private PrologDatabase beliefbase;
+	private int poolSize;
+
+	@Before
+	public void setUp() throws Exception {
+		// tables are local to an engine.
+		this.poolSize = EnginePool.getSize();
+		EnginePool.setSize(1);
+		this.beliefbase = (PrologDatabase) language.getDatabase("graph", new LinkedHashSet<DatabaseFormula>(),
+				false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.beliefbase.destroy();
+		EnginePool.setSize(this.poolSize);
+	}
+
+	private static int count(Database database, String text) throws KRQueryFailedException {
+		return database.query(query(text)).size();
+	}
+
+	/**
+	 * @return The number of times that the body of a rule of path/2 was
+	 *         evaluated, see {@link #insertPath()}.
+	 */
+	private static long evaluations() throws KRQueryFailedException {
+		return Long.parseLong(PrologDatabase.rawquery(term("flag(path_evaluations, N, N)")).iterator().next()
+				.toString().replaceAll("\\D", ""));
+	}
+
+	/**
+	 * Inserts a left recursive definition of path/2, which does not terminate
+	 * without tabling on a cyclic graph.
+	 */
+	private void insertPath() throws KRDatabaseException {
+		this.beliefbase.insert(formula("path(X, Y) :- path(X, Z), edge(Z, Y)"));
+		this.beliefbase.insert(formula("path(X, Y) :- edge(X, Y), flag(path_evaluations, N, N + 1)"));
+		this.beliefbase.insert(formula("edge(a, b)"));
+		this.beliefbase.insert(formula("edge(b, c)"));
+		this.beliefbase.insert(formula("edge(c, a)"));
+	}
+
+	@Test
+	public void testLeftRecursion() throws Exception {
+		assertTrue(this.beliefbase.table("path", 2));
+		assertFalse(this.beliefbase.table("path", 2));
+		insertPath();
+		assertEquals(3, count(this.beliefbase, "path(a, X)"));
+		assertEquals(9, count(this.beliefbase, "path(X, Y)"));
+		assertTrue(this.beliefbase.getTheory().getFormulas()
+				.contains(formula("path(X, Y) :- path(X, Z), edge(Z, Y)")));
+	}
+
+	@Test
+	public void testDirective() throws Exception {
+		this.beliefbase.insert(formula(":- table(path/2)"));
+		insertPath();
+		assertEquals(3, count(this.beliefbase, "path(a, X)"));
+		assertTrue(this.beliefbase.getTabled().contains("path/2"));
+	}
+
+	@Test
+	public void testTableAfterClauses() throws Exception {
+		insertPath();
+		this.beliefbase.table("path", 2);
+		assertEquals(3, count(this.beliefbase, "path(a, X)"));
+		// the moved clauses can still be deleted.
+		assertTrue(this.beliefbase.delete(formula("path(X, Y) :- path(X, Z), edge(Z, Y)")));
+		assertEquals(1, count(this.beliefbase, "path(a, X)"));
+	}
+
+	@Test
+	public void testInvalidation() throws Exception {
+		this.beliefbase.table("path", 2);
+		insertPath();
+		assertEquals(3, count(this.beliefbase, "path(a, X)"));
+		this.beliefbase.insert(formula("edge(c, d)"));
+		assertEquals(4, count(this.beliefbase, "path(a, X)"));
+		this.beliefbase.delete(formula("edge(b, c)"));
+		assertEquals(1, count(this.beliefbase, "path(a, X)"));
+		this.beliefbase.delete(formula("path(X, Y) :- path(X, Z), edge(Z, Y)"));
+		this.beliefbase.insert(formula("edge(a, c)"));
+		assertEquals(2, count(this.beliefbase, "path(a, X)"));
+	}
+
+	@Test
+	public void testTablesAreReused() throws Exception {
+		this.beliefbase.table("path", 2);
+		insertPath();
+		assertEquals(9, count(this.beliefbase, "path(X, Y)"));
+		long evaluations = evaluations();
+		assertEquals(9, count(this.beliefbase, "path(X, Y)"));
+		// a predicate that path/2 does not depend on.
+		this.beliefbase.insert(formula("colour(a, red)"));
+		assertEquals(9, count(this.beliefbase, "path(X, Y)"));
+		assertEquals(evaluations, evaluations());
+		this.beliefbase.insert(formula("edge(c, d)"));
+		assertEquals(12, count(this.beliefbase, "path(X, Y)"));
+		assertTrue(evaluations() > evaluations);
+	}
+
+	@Test
+	public void testDependenciesOfRules() throws Exception {
+		this.beliefbase.table("path", 2);
+		insertPath();
+		this.beliefbase.insert(formula("edge(X, Y) :- link(X, Y)"));
+		this.beliefbase.insert(formula("link(a, b)"));
+		assertEquals(9, count(this.beliefbase, "path(X, Y)"));
+		this.beliefbase.insert(formula("link(c, d)"));
+		assertEquals(12, count(this.beliefbase, "path(X, Y)"));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		this.beliefbase.table("path", 2);
+		insertPath();
+		assertEquals(3, count(this.beliefbase, "path(a, X)"));
+		this.beliefbase.apply(update("not(edge(b, c)), edge(b, d)"));
+		assertEquals(2, count(this.beliefbase, "path(a, X)"));
+	}
+
+	@Test
+	public void testFork() throws Exception {
+		this.beliefbase.table("path", 2);
+		insertPath();
+		assertEquals(3, count(this.beliefbase, "path(a, X)"));
+		Database fork = this.beliefbase.fork("whatif");
+		try {
+			assertEquals(3, count(fork, "path(a, X)"));
+			fork.insert(formula("edge(c, d)"));
+			fork.delete(formula("edge(a, b)"));
+			assertEquals(0, count(fork, "path(a, X)"));
+			assertEquals(3, count(fork, "path(b, X)"));
+			assertEquals(3, count(this.beliefbase, "path(a, X)"));
+			assertEquals(3, count(this.beliefbase, "path(b, X)"));
+		} finally {
+			fork.destroy();
+		}
+	}
+
+	@Test(expected = KRDatabaseException.class)
+	public void testNotAnIndicator() throws Exception {
+		this.beliefbase.insert(formula(":- table(path(_, _))"));
+	}
+}
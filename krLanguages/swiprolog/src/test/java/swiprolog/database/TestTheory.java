@@ -0,0 +1,156 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test {@link Theory}.
+ */
+public class TestTheory {
+	static {
+		new SwiPrologInterface();
+	}
+
+	private Theory theory;
+
+	@Before
+	public void setUp() {
+		this.theory = new Theory();
+	}
+
+	@Test
+	public void testAddRemove() {
+		assertTrue(this.theory.add(formula("p(1)")));
+		assertFalse(this.theory.add(formula("p(1)")));
+		Long id = this.theory.getId(formula("p(1)"));
+		assertEquals(id, this.theory.removeWithId(formula("p(1)")));
+		assertNull(this.theory.removeWithId(formula("p(1)")));
+		assertTrue(this.theory.getFormulas().isEmpty());
+	}
+
+	@Test
+	public void testSignatures() {
+		this.theory.add(formula("p(1)"));
+		this.theory.add(formula("p(2)"));
+		this.theory.add(formula("p(X) :- q(X)"));
+		this.theory.add(formula("q(1)"));
+		this.theory.add(formula(":- dynamic(r/1)"));
+		assertEquals(3, this.theory.getCount("p/1"));
+		assertEquals(1, this.theory.getCount("q/1"));
+		assertEquals(1, this.theory.getCount(":-/1"));
+		assertEquals(0, this.theory.getCount("r/1"));
+
+		Theory.Snapshot snapshot = this.theory.getFormulas();
+		assertEquals(new HashSet<>(Arrays.asList("p/1", "q/1", ":-/1")), snapshot.getSignatures());
+		assertEquals(3, snapshot.getFormulas("p/1").size());
+		assertEquals(5, snapshot.size());
+		assertTrue(snapshot.contains(formula("p(X) :- q(X)")));
+	}
+
+	@Test
+	public void testOrder() {
+		this.theory.add(formula(":- dynamic(q/1)"));
+		this.theory.add(formula("p(1)"));
+		this.theory.add(formula("q(1)"));
+		this.theory.add(formula(":- dynamic(r/1)"));
+		this.theory.add(formula("p(2)"));
+		Long id = this.theory.removeWithId(formula("p(1)"));
+		this.theory.add(formula("r(1)"));
+		// added again with its old number, it returns to its old place
+		this.theory.add(formula("p(1)"), id);
+		assertEquals(Arrays.asList(formula(":- dynamic(q/1)"), formula("p(1)"), formula("q(1)"),
+				formula(":- dynamic(r/1)"), formula("p(2)"), formula("r(1)")),
+				new ArrayList<>(this.theory.getFormulas()));
+		assertEquals(Arrays.asList(":-/1", "p/1", "q/1", "r/1"),
+				new ArrayList<>(this.theory.getFormulas().getSignatures()));
+	}
+
+	@Test
+	public void testSnapshotDoesNotChange() {
+		this.theory.add(formula("p(1)"));
+		this.theory.add(formula("q(1)"));
+		Theory.Snapshot snapshot = this.theory.getFormulas();
+		assertSame(snapshot, this.theory.getFormulas());
+
+		Iterator<DatabaseFormula> formulas = snapshot.iterator();
+		this.theory.add(formula("p(2)"));
+		this.theory.remove(formula("q(1)"));
+		int count = 0;
+		while (formulas.hasNext()) {
+			formulas.next();
+			count++;
+		}
+		assertEquals(2, count);
+		assertEquals(new HashSet<>(Arrays.asList(formula("p(1)"), formula("q(1)"))), snapshot);
+		assertEquals(1, snapshot.getCount("p/1"));
+
+		Theory.Snapshot next = this.theory.getFormulas();
+		assertNotSame(snapshot, next);
+		assertEquals(new HashSet<>(Arrays.asList(formula("p(1)"), formula("p(2)"))), next);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSnapshotIsImmutable() {
+		this.theory.add(formula("p(1)"));
+		this.theory.getFormulas().remove(formula("p(1)"));
+	}
+
+	@Test
+	public void testConcurrentWriters() throws InterruptedException {
+		Thread[] threads = new Thread[4];
+		final DatabaseFormula[][] formulas = new DatabaseFormula[threads.length][1000];
+		final int[] inconsistent = new int[1];
+		for (int t = 0; t < threads.length; t++) {
+			for (int n = 0; n < 1000; n++) {
+				formulas[t][n] = formula("p" + t + "(" + n + ")");
+			}
+		}
+		for (int t = 0; t < threads.length; t++) {
+			final DatabaseFormula[] mine = formulas[t];
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (DatabaseFormula formula : mine) {
+						TestTheory.this.theory.add(formula);
+						// snapshots taken while writing are consistent
+						Theory.Snapshot snapshot = TestTheory.this.theory.getFormulas();
+						int count = 0;
+						for (Iterator<DatabaseFormula> i = snapshot.iterator(); i.hasNext(); i.next()) {
+							count++;
+						}
+						if (count != snapshot.size()) {
+							synchronized (inconsistent) {
+								inconsistent[0]++;
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, inconsistent[0]);
+		assertEquals(4000, this.theory.getFormulas().size());
+		for (int t = 0; t < threads.length; t++) {
+			assertEquals(1000, this.theory.getCount("p" + t + "/1"));
+		}
+	}
+}
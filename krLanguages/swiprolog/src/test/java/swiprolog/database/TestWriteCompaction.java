@@ -0,0 +1,111 @@
+package swiprolog.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static swiprolog.language.Formulas.formula;
+import static swiprolog.language.Formulas.query;
+
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.KRInterface;
+import krTools.exceptions.KRQueryFailedException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+
+/**
+ * Test that an insert and a delete of the same formula cancel out in the write
+ * cache of a {@link PrologDatabase}.
+ */
+public class TestWriteCompaction {
+	private static KRInterface language = new SwiPrologInterface();
+	private PrologDatabase beliefbase;
+
+	@Before
+	public void setUp() throws Exception {
+		this.beliefbase = (PrologDatabase) language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.beliefbase != null) {
+			this.beliefbase.destroy();
+		}
+	}
+
+	private int count(String text) throws KRQueryFailedException {
+		return this.beliefbase.query(query(text)).size();
+	}
+
+	@Test
+	public void testInsertDelete() throws Exception {
+		assertTrue(this.beliefbase.insert(formula("p(1)")));
+		assertTrue(this.beliefbase.delete(formula("p(1)")));
+		assertEquals(2, this.beliefbase.getEliminatedWrites());
+		assertEquals(0, count("p(X)"));
+	}
+
+	@Test
+	public void testDeleteInsert() throws Exception {
+		this.beliefbase.insert(formula("p(1)"));
+		this.beliefbase.insert(formula("p(2)"));
+		assertEquals(2, count("p(X)"));
+
+		assertTrue(this.beliefbase.delete(formula("p(1)")));
+		assertTrue(this.beliefbase.insert(formula("p(1)")));
+		assertEquals(2, this.beliefbase.getEliminatedWrites());
+		assertEquals(2, count("p(X)"));
+		assertEquals(2, this.beliefbase.getTheory().getFormulas().size());
+
+		// the kept clause can still be deleted
+		this.beliefbase.delete(formula("p(1)"));
+		assertEquals(1, count("p(X)"));
+	}
+
+	@Test
+	public void testToggles() throws Exception {
+		this.beliefbase.insert(formula("p(1)"));
+		assertEquals(1, count("p(X)"));
+		for (int n = 0; n < 10; n++) {
+			this.beliefbase.delete(formula("p(1)"));
+			this.beliefbase.insert(formula("p(2)"));
+			this.beliefbase.insert(formula("p(1)"));
+			this.beliefbase.delete(formula("p(2)"));
+		}
+		assertEquals(40, this.beliefbase.getEliminatedWrites());
+		assertEquals(1, count("p(1)"));
+		assertEquals(0, count("p(2)"));
+	}
+
+	@Test
+	public void testNothingAfterFlush() throws Exception {
+		this.beliefbase.insert(formula("p(1)"));
+		assertEquals(1, count("p(X)"));
+		this.beliefbase.delete(formula("p(1)"));
+		assertEquals(0, count("p(X)"));
+		assertEquals(0, this.beliefbase.getEliminatedWrites());
+	}
+
+	@Test
+	public void testDirectiveIsBarrier() throws Exception {
+		this.beliefbase.insert(formula("p(1)"));
+		this.beliefbase.insert(formula(":- p(1), assertz(q)"));
+		this.beliefbase.delete(formula("p(1)"));
+		assertEquals(0, this.beliefbase.getEliminatedWrites());
+		assertEquals(0, count("p(X)"));
+		assertEquals(1, count("q"));
+	}
+
+	@Test
+	public void testRules() throws Exception {
+		this.beliefbase.insert(formula("p(2)"));
+		this.beliefbase.insert(formula("p(X) :- X = 1"));
+		this.beliefbase.delete(formula("p(X) :- X = 1"));
+		assertEquals(2, this.beliefbase.getEliminatedWrites());
+		assertEquals(1, count("p(X)"));
+	}
+}
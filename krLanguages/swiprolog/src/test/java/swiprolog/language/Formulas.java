@@ -0,0 +1,70 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.language;
+
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Parses the terms, formulas and queries that the tests use from Prolog
+ * syntax. SWI Prolog must have been initialized, e.g. by creating a
+ * {@link swiprolog.SwiPrologInterface}.
+ */
+public final class Formulas {
+	/**
+	 * This is a utility class.
+	 */
+	private Formulas() {
+	}
+
+	/**
+	 * @param text
+	 *            A term in Prolog syntax.
+	 * @return The term.
+	 */
+	public static PrologTerm term(String text) {
+		return (PrologTerm) PrologDatabase.fromJpl(org.jpl7.Util.textToTerm(text));
+	}
+
+	/**
+	 * @param text
+	 *            A clause in Prolog syntax.
+	 * @return The clause as formula.
+	 */
+	public static PrologDBFormula formula(String text) {
+		return PrologImplFactory.getDBFormula((PrologCompound) term(text));
+	}
+
+	/**
+	 * @param text
+	 *            A query in Prolog syntax.
+	 * @return The query.
+	 */
+	public static PrologQuery query(String text) {
+		return PrologImplFactory.getQuery((PrologCompound) term(text));
+	}
+
+	/**
+	 * @param text
+	 *            A conjunction of literals in Prolog syntax.
+	 * @return The conjunction as update.
+	 */
+	public static PrologUpdate update(String text) {
+		return PrologImplFactory.getUpdate((PrologCompound) term(text));
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import krTools.language.Term;
+import krTools.parser.SourceInfo;
+import swiprolog.SwiPrologInterface;
+import swiprolog.language.impl.PrologImplFactory;
+import swiprolog.parser.SourceInfoObject;
+
+/**
+ * Test sharing terms, see {@link PrologImplFactory#setInternTableSize(int)}.
+ */
+public class TestInterning {
+	@Before
+	public void setUp() {
+		new SwiPrologInterface();
+		PrologImplFactory.setInternTableSize(1024);
+	}
+
+	@After
+	public void tearDown() {
+		PrologImplFactory.setInternTableSize(0);
+	}
+
+	private static Term atom(String name) {
+		return PrologImplFactory.getAtom(name, null);
+	}
+
+	private static Term compound(String name, Term... args) {
+		return PrologImplFactory.getCompound(name, args, null);
+	}
+
+	@Test
+	public void testAtoms() {
+		assertSame(atom("aap"), atom("aap"));
+		assertNotSame(atom("aap"), atom("noot"));
+		assertSame(atom("[]"), atom("[]"));
+	}
+
+	@Test
+	public void testGroundCompounds() {
+		Term term = compound("p", atom("a"), compound("f", PrologImplFactory.getNumber(1, null)));
+		assertSame(term, compound("p", atom("a"), compound("f", PrologImplFactory.getNumber(1, null))));
+		assertNotSame(term, compound("p", atom("a"), compound("f", PrologImplFactory.getNumber(2, null))));
+	}
+
+	@Test
+	public void testNotGround() {
+		Term X = PrologImplFactory.getVar("X", null);
+		Term term = compound("p", X);
+		Term other = compound("p", X);
+		assertNotSame(term, other);
+		assertEquals(term, other);
+	}
+
+	@Test
+	public void testFloats() {
+		Term positive = compound("p", PrologImplFactory.getNumber(0.0, null));
+		Term negative = compound("p", PrologImplFactory.getNumber(-0.0, null));
+		assertNotSame(positive, negative);
+		assertEquals("p(-0.0)", negative.toString());
+	}
+
+	@Test
+	public void testSourceInfo() {
+		SourceInfo info = new SourceInfoObject("test", 1, 1, 1, 1);
+		Term term = PrologImplFactory.getAtom("aap", info);
+		assertNotSame(term, atom("aap"));
+		assertSame(info, term.getSourceInfo());
+	}
+
+	@Test
+	public void testDisabled() {
+		PrologImplFactory.setInternTableSize(0);
+		assertNotSame(atom("aap"), atom("aap"));
+		assertEquals(atom("aap"), atom("aap"));
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(1024, PrologImplFactory.getInternTableSize());
+		PrologImplFactory.setInternTableSize(1000);
+		assertEquals(1024, PrologImplFactory.getInternTableSize());
+		PrologImplFactory.setInternTableSize(1);
+		assertEquals(1, PrologImplFactory.getInternTableSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSize() {
+		PrologImplFactory.setInternTableSize(-1);
+	}
+}
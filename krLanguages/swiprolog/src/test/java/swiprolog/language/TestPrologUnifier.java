@@ -0,0 +1,161 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package swiprolog.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import krTools.language.Substitution;
+import krTools.language.Term;
+import krTools.language.Var;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Test {@link PrologUnifier}.
+ */
+public class TestPrologUnifier {
+	private static Var var(String name) {
+		return PrologImplFactory.getVar(name, null);
+	}
+
+	private static Term atom(String name) {
+		return PrologImplFactory.getAtom(name, null);
+	}
+
+	private static Term compound(String name, Term... args) {
+		return PrologImplFactory.getCompound(name, args, null);
+	}
+
+	@Test
+	public void testUndo() {
+		PrologUnifier unifier = new PrologUnifier();
+		Var X = var("X");
+		Var Y = var("Y");
+		assertTrue(unifier.unify(X, atom("a")));
+		int mark = unifier.mark();
+		assertTrue(unifier.unify(compound("f", X, Y), compound("f", atom("a"), atom("b"))));
+		assertEquals(2, unifier.size());
+		assertEquals(atom("b"), unifier.get(Y));
+		unifier.undo(mark);
+		assertEquals(1, unifier.size());
+		assertNull(unifier.get(Y));
+		assertTrue(unifier.unify(Y, atom("c")));
+		assertEquals("[X/a, Y/c]", unifier.getSubstitution().toString());
+		unifier.reset();
+		assertEquals(0, unifier.size());
+	}
+
+	@Test
+	public void testFailureUndoes() {
+		PrologUnifier unifier = new PrologUnifier();
+		Var X = var("X");
+		Var Y = var("Y");
+		assertTrue(unifier.unify(X, atom("a")));
+		// Y is bound before the mismatch on the last argument.
+		assertFalse(unifier.unify(compound("f", Y, X), compound("f", atom("b"), atom("c"))));
+		assertEquals(1, unifier.size());
+		assertNull(unifier.get(Y));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUndoBadMark() {
+		new PrologUnifier().undo(1);
+	}
+
+	@Test
+	public void testOccursCheck() {
+		Var X = var("X");
+		Term fX = compound("f", X);
+
+		assertFalse(new PrologUnifier().unify(X, fX));
+		PrologUnifier unifier = new PrologUnifier(false);
+		assertFalse(unifier.isOccursCheck());
+		assertTrue(unifier.unify(X, fX));
+		assertSame(fX, unifier.get(X));
+	}
+
+	@Test
+	public void testOccursCheckThroughBindings() {
+		// f(X, Y) = f(Y, g(X)) binds X to Y and then Y to g(X) = g(Y).
+		Var X = var("X");
+		Var Y = var("Y");
+		Term fXY = compound("f", X, Y);
+		Term fYgX = compound("f", Y, compound("g", X));
+
+		assertNull(fXY.mgu(fYgX));
+		assertTrue(new PrologUnifier(false).unify(fXY, fYgX));
+	}
+
+	@Test
+	public void testNumbers() {
+		Var X = var("X");
+		Term one = PrologImplFactory.getNumber(1, null);
+		Term f1 = compound("f", one);
+
+		assertEquals(new PrologSubstitution(X, one), one.mgu(X));
+		assertEquals(new PrologSubstitution(X, one), f1.mgu(compound("f", X)));
+		assertEquals(new PrologSubstitution(), one.mgu(PrologImplFactory.getNumber(1, null)));
+		assertNull(one.mgu(PrologImplFactory.getNumber(1.0, null)));
+	}
+
+	@Test
+	public void testAnonymous() {
+		Var anonymous = var("_");
+		Term f = compound("f", anonymous, anonymous);
+
+		assertEquals(new PrologSubstitution(), f.mgu(compound("f", atom("a"), atom("b"))));
+	}
+
+	@Test
+	public void testUnifyUnderSubstitution() {
+		Var X = var("X");
+		Var Y = var("Y");
+		Substitution substitution = new PrologSubstitution(X, atom("a"));
+
+		assertNull(((PrologTerm) X).unify(atom("b"), substitution.clone()));
+		assertNull(((PrologTerm) X).unify(atom("a"), null));
+		Substitution result = ((PrologTerm) compound("f", X, Y)).unify(compound("f", atom("a"), X), substitution);
+		assertSame(substitution, result);
+		assertEquals("[X/a, Y/a]", result.toString());
+	}
+
+	@Test
+	public void testDeepTerms() {
+		// too deep for a recursive unifier.
+		Term list1 = atom("[]");
+		Term list2 = atom("[]");
+		for (int i = 0; i < 100000; i++) {
+			list1 = compound("[|]", var("X" + i), list1);
+			list2 = compound("[|]", PrologImplFactory.getNumber(i, null), list2);
+		}
+		PrologUnifier unifier = new PrologUnifier();
+		assertTrue(unifier.unify(list1, list2));
+		assertEquals(100000, unifier.size());
+		assertEquals(PrologImplFactory.getNumber(99999, null), unifier.get(var("X99999")));
+		// the outermost element is bound first.
+		unifier.undo(10);
+		assertNull(unifier.get(var("X0")));
+		assertEquals(PrologImplFactory.getNumber(99990, null), unifier.get(var("X99990")));
+	}
+}
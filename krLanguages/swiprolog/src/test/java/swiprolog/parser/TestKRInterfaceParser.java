@@ -4,9 +4,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
 import java.io.StringReader;
+import java.util.List;
 
 import org.junit.Test;
 
+import krTools.language.DatabaseFormula;
 import krTools.language.Update;
 import krTools.parser.Parser;
 import krTools.parser.SourceInfo;
@@ -37,6 +39,18 @@ public class TestKRInterfaceParser {
 		assertEquals("zone(ID,Name,X,Y,Neighbours)", update.toString());
 	}
 
+	@Test
+	public void testParseTableDirective() throws Exception {
+		new SwiPrologInterface();
+		StringReader reader = new StringReader(":- table(path/2). path(X, Y) :- path(X, Z), edge(Z, Y).");
+		Parser parser = new KRInterfaceParser4(reader, INFO);
+		List<DatabaseFormula> formulas = parser.parseDBFs();
+
+		assertEquals("[]", parser.getErrors().toString());
+		assertEquals(2, formulas.size());
+		assertEquals(":-/1", formulas.get(0).getSignature());
+	}
+
 	// @Test FIXME: this fails atm
 	public void parseLessEqualError() throws Exception {
 		// X <= 3 is not correct because "<=" does not exist in prolog.
@@ -0,0 +1,111 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import krTools.language.Term;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Queries the percepts after a burst of updates of the percepts, as an agent
+ * does in every cycle, with the writes performed before the query or in the
+ * background; see {@link PrologDatabase#setAsyncWrites(boolean)}. Only the
+ * query is measured; the percentiles of its latency are reported.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AsyncWritesBenchmark {
+	@Param({ "false", "true" })
+	public boolean async;
+	@Param({ "200" })
+	public int updates;
+
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private PrologQuery query;
+	private int cycle;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		PrologDatabase.setAsyncWrites(this.async);
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("percepts", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		this.query = Workload.query("percept(1, X)");
+		this.cycle = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+		PrologDatabase.setAsyncWrites(false);
+	}
+
+	/**
+	 * Replaces the percepts of the previous cycle, and gives the background
+	 * writes (if any) the time that the agent spends on other things.
+	 */
+	@Setup(Level.Invocation)
+	public void update() throws KRException, InterruptedException {
+		for (int n = 0; n < this.updates; n++) {
+			if (this.cycle > 0) {
+				this.database.delete(percept(n, this.cycle - 1));
+			}
+			this.database.insert(percept(n, this.cycle));
+		}
+		this.cycle++;
+		Thread.sleep(1);
+	}
+
+	private static DatabaseFormula percept(int n, int cycle) {
+		Term[] args = { PrologImplFactory.getNumber(n, null), PrologImplFactory.getNumber(cycle, null) };
+		return PrologImplFactory.getDBFormula(PrologImplFactory.getCompound("percept", args, null));
+	}
+
+	@Benchmark
+	public Set<Substitution> query() throws KRException {
+		return this.database.query(this.query);
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks like {@link org.openjdk.jmh.Main}, but writes the
+ * results as JSON to {@value #RESULT_FILE} unless another format (-rf) or file
+ * (-rff) is given, so that the results of different commits can be compared.
+ * For example,
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar QueryBenchmark -p size=1000
+ * </pre>
+ */
+public final class BenchmarkMain {
+	/**
+	 * The default file to write the results to.
+	 */
+	public static final String RESULT_FILE = "jmh-result.json";
+
+	/**
+	 * This is a utility class.
+	 */
+	private BenchmarkMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		if (!arguments.contains("-rf")) {
+			arguments.addAll(0, Arrays.asList("-rf", "json"));
+		}
+		if (!arguments.contains("-rff")) {
+			arguments.addAll(0, Arrays.asList("-rff", RESULT_FILE));
+		}
+		org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+	}
+}
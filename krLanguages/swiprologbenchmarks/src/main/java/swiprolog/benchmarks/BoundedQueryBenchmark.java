@@ -0,0 +1,100 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Queries a predicate with many answers for all of them, for the first one,
+ * for the first ten, and whether there is one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class BoundedQueryBenchmark {
+	@Param({ "100000" })
+	public int size;
+
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private PrologQuery all;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		for (DatabaseFormula fact : Workload.facts(this.size)) {
+			this.database.insert(fact);
+		}
+		this.all = Workload.query("p(X, Y)");
+		// perform the inserts.
+		this.database.holds(this.all);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+	}
+
+	@Benchmark
+	public Set<Substitution> query() throws KRException {
+		return this.database.query(this.all);
+	}
+
+	@Benchmark
+	public Substitution queryFirst() throws KRException {
+		return this.database.queryFirst(this.all);
+	}
+
+	@Benchmark
+	public Set<Substitution> queryLimit() throws KRException {
+		return this.database.queryLimit(this.all, 10);
+	}
+
+	@Benchmark
+	public boolean holds() throws KRException {
+		return this.database.holds(this.all);
+	}
+}
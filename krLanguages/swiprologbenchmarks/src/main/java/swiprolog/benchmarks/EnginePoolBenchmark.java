@@ -0,0 +1,117 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.EnginePool;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Queries independent databases from multiple threads, each thread its own
+ * database, with different sizes of the {@link EnginePool}. With a pool of at
+ * least the number of threads, the time per query should stay (roughly) the
+ * same as with one thread. The number of threads can be changed with
+ * <tt>-t</tt>, for example
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar EnginePoolBenchmark -t 8 -p poolSize=8
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EnginePoolBenchmark {
+	@Param({ "1", "2", "4" })
+	public int poolSize;
+
+	private int oldPoolSize;
+	private SwiPrologInterface language;
+	private final AtomicInteger databases = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.oldPoolSize = EnginePool.getSize();
+		EnginePool.setSize(this.poolSize);
+		this.language = new SwiPrologInterface();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.language.release();
+		EnginePool.setSize(this.oldPoolSize);
+	}
+
+	/**
+	 * The database of one thread.
+	 */
+	@State(Scope.Thread)
+	public static class Agent {
+		private PrologDatabase database;
+		private PrologQuery fibo;
+
+		@Setup(Level.Trial)
+		public void setUp(EnginePoolBenchmark benchmark) throws KRException {
+			this.database = (PrologDatabase) benchmark.language.getDatabase(
+					"fibodb" + benchmark.databases.incrementAndGet(), new LinkedHashSet<DatabaseFormula>(), false);
+			this.database.insert(Workload.formula("fibo(0,0)"));
+			this.database.insert(Workload.formula("fibo(1,1)"));
+			this.database.insert(
+					Workload.formula("fibo(X,Y) :- X>1, X1 is X-1, X2 is X-2, fibo(X1,Y1), fibo(X2,Y2), Y is Y1+Y2"));
+			this.fibo = Workload.query("fibo(21,Y)");
+			// perform the inserts.
+			this.database.query(this.fibo);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws KRException {
+			this.database.destroy();
+		}
+	}
+
+	@Benchmark
+	public Set<Substitution> query(Agent agent) throws KRException {
+		return agent.database.query(agent.fibo);
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.language.Term;
+import swiprolog.database.PrologDatabase;
+
+/**
+ * Converts JPL terms of different shapes, as returned by queries, with
+ * {@link PrologDatabase#fromJpl(org.jpl7.Term)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class FromJplBenchmark {
+	/**
+	 * compound: <tt>f(a0, 0, X0, a1, 1, X1, ...)</tt> with size arguments;
+	 * nested: <tt>s(s(...s(0)))</tt> with depth size; list: <tt>[0, 1, ...]</tt>
+	 * with size elements.
+	 */
+	@Param({ "compound", "nested", "list" })
+	public String shape;
+	@Param({ "10", "100", "1000" })
+	public int size;
+
+	private org.jpl7.Term term;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		switch (this.shape) {
+		case "compound":
+			org.jpl7.Term[] args = new org.jpl7.Term[this.size];
+			for (int i = 0; i < this.size; i++) {
+				switch (i % 3) {
+				case 0:
+					args[i] = new org.jpl7.Atom("a" + i / 3);
+					break;
+				case 1:
+					args[i] = new org.jpl7.Integer(i / 3);
+					break;
+				default:
+					args[i] = new org.jpl7.Variable("X" + i / 3);
+				}
+			}
+			this.term = new org.jpl7.Compound("f", args);
+			break;
+		case "nested":
+			this.term = new org.jpl7.Integer(0);
+			for (int i = 0; i < this.size; i++) {
+				this.term = new org.jpl7.Compound("s", new org.jpl7.Term[] { this.term });
+			}
+			break;
+		case "list":
+			org.jpl7.Term[] elements = new org.jpl7.Term[this.size];
+			for (int i = 0; i < this.size; i++) {
+				elements[i] = new org.jpl7.Integer(i);
+			}
+			this.term = org.jpl7.Util.termArrayToList(elements);
+			break;
+		default:
+			throw new IllegalArgumentException("unknown shape '" + this.shape + "'");
+		}
+	}
+
+	@Benchmark
+	public Term fromJpl() {
+		return PrologDatabase.fromJpl(this.term);
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Looks up facts by their second and third argument, with and without
+ * declaring an index on these arguments; see
+ * {@link PrologDatabase#index(String, int...)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class IndexBenchmark {
+	@Param({ "false", "true" })
+	public boolean indexed;
+	@Param({ "100000" })
+	public int size;
+
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private PrologQuery[] lookups;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		for (int i = 0; i < this.size; i++) {
+			this.database.insert(Workload.formula("q(" + i + ", " + (i % 1000) + ", " + (i % 13) + ")"));
+		}
+		if (this.indexed) {
+			this.database.index("q/3", 2, 3);
+		}
+		this.lookups = new PrologQuery[20];
+		for (int n = 0; n < this.lookups.length; n++) {
+			this.lookups[n] = Workload.query("q(X, " + n + ", " + (n % 13) + ")");
+		}
+		// perform the inserts, which builds the declared index.
+		this.database.query(Workload.query("true"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+	}
+
+	@Benchmark
+	public Set<Substitution> lookup() throws KRException {
+		this.next = (this.next + 1) % this.lookups.length;
+		return this.database.query(this.lookups[this.next]);
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Inserts a number of facts into a database and deletes them again, either
+ * performing each change before the next one (as an agent that queries after
+ * every change does) or letting the write cache collect all inserts and then
+ * all deletes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class InsertDeleteBenchmark {
+	@Param({ "100", "1000", "10000" })
+	public int size;
+	/**
+	 * Whether to perform each change before the next one.
+	 */
+	@Param({ "false", "true" })
+	public boolean flush;
+
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private List<DatabaseFormula> facts;
+	/**
+	 * A query without solutions, which performs the cached changes.
+	 */
+	private PrologQuery fail;
+	/**
+	 * A query of the facts with the second argument 0.
+	 */
+	private PrologQuery lookup;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		this.facts = Workload.facts(this.size);
+		this.fail = Workload.query("false");
+		this.lookup = Workload.query("p(X, 0)");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+	}
+
+	@Benchmark
+	public void insertDelete() throws KRException {
+		for (DatabaseFormula fact : this.facts) {
+			this.database.insert(fact);
+			if (this.flush) {
+				this.database.query(this.fail);
+			}
+		}
+		// a delete of a fact whose insert is still cached cancels out.
+		this.database.query(this.fail);
+		for (DatabaseFormula fact : this.facts) {
+			this.database.delete(fact);
+			if (this.flush) {
+				this.database.query(this.fail);
+			}
+		}
+		this.database.query(this.fail);
+	}
+
+	@Benchmark
+	public int insertQueryDelete() throws KRException {
+		for (DatabaseFormula fact : this.facts) {
+			this.database.insert(fact);
+			if (this.flush) {
+				this.database.query(this.fail);
+			}
+		}
+		int count = this.database.query(this.lookup).size();
+		for (DatabaseFormula fact : this.facts) {
+			this.database.delete(fact);
+			if (this.flush) {
+				this.database.query(this.fail);
+			}
+		}
+		this.database.query(this.fail);
+		return count;
+	}
+}
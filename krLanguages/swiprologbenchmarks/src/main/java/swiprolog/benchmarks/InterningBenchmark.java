@@ -0,0 +1,102 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Queries units with many repeated atoms and ground compounds, with and
+ * without sharing them; see {@link PrologImplFactory#setInternTableSize(int)}.
+ * Run with <tt>-prof gc</tt> to see the bytes that the results of a query use
+ * (<tt>gc.alloc.rate.norm</tt>), for example
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar InterningBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class InterningBenchmark {
+	/**
+	 * The size of the intern table; 0 does not share terms.
+	 */
+	@Param({ "0", "65536" })
+	public int internTableSize;
+
+	@Param({ "20000" })
+	public int size;
+
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private PrologQuery units;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		String[] colours = { "red", "green", "blue", "yellow", "black" };
+		for (int i = 0; i < this.size; i++) {
+			this.database.insert(Workload.formula("unit(" + i + ", player(" + (i % 4) + "), type(" + colours[i % 5]
+					+ ", marine), status(idle), [at(base), " + (i % 100) + "])"));
+		}
+		this.units = Workload.query("unit(Id, Player, Type, Status, Position)");
+		PrologImplFactory.setInternTableSize(this.internTableSize);
+		// perform the inserts.
+		this.database.query(this.units);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		PrologImplFactory.setInternTableSize(0);
+		this.database.destroy();
+		this.language.release();
+	}
+
+	@Benchmark
+	public Set<Substitution> queryUnits() throws KRException {
+		return this.database.query(this.units);
+	}
+}
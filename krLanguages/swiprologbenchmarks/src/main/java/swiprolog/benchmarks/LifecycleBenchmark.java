@@ -0,0 +1,84 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+
+/**
+ * Creates a database with some content, makes sure that it exists in SWI
+ * Prolog, and destroys it again, as is done for each agent that is launched
+ * and killed. The content is inserted one by one or loaded from a file; see
+ * {@link PrologDatabase#setBulkLoadSize(int)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LifecycleBenchmark {
+	@Param({ "0", "100", "10000" })
+	public int size;
+	@Param({ "0", "1000" })
+	public int bulkLoadSize;
+
+	private int oldBulkLoadSize;
+	private SwiPrologInterface language;
+	private List<DatabaseFormula> content;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.oldBulkLoadSize = PrologDatabase.getBulkLoadSize();
+		PrologDatabase.setBulkLoadSize(this.bulkLoadSize);
+		this.language = new SwiPrologInterface();
+		this.content = Workload.facts(this.size);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.language.release();
+		PrologDatabase.setBulkLoadSize(this.oldBulkLoadSize);
+	}
+
+	@Benchmark
+	public void createDestroy() throws KRException {
+		PrologDatabase database = (PrologDatabase) this.language.getDatabase("beliefs", this.content, false);
+		database.materialize();
+		database.destroy();
+	}
+}
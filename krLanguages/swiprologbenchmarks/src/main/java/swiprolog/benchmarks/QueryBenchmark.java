@@ -0,0 +1,105 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Queries a database of facts: all facts, a lookup on the first (indexed)
+ * argument, a lookup on the second argument, and a check without bindings.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark {
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private PrologQuery all;
+	private PrologQuery first;
+	private PrologQuery second;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		for (DatabaseFormula fact : Workload.facts(this.size)) {
+			this.database.insert(fact);
+		}
+		this.all = Workload.query("p(X, Y)");
+		this.first = Workload.query("p(" + this.size / 2 + ", Y)");
+		this.second = Workload.query("p(X, 7)");
+		// perform the inserts.
+		this.database.query(this.first);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+	}
+
+	@Benchmark
+	public Set<Substitution> queryAll() throws KRException {
+		return this.database.query(this.all);
+	}
+
+	@Benchmark
+	public Set<Substitution> lookupFirstArgument() throws KRException {
+		return this.database.query(this.first);
+	}
+
+	@Benchmark
+	public Set<Substitution> lookupSecondArgument() throws KRException {
+		return this.database.query(this.second);
+	}
+
+	@Benchmark
+	public boolean holds() throws KRException {
+		return this.database.holds(this.first);
+	}
+}
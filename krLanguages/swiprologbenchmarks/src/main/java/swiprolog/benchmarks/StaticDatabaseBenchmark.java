@@ -0,0 +1,90 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.database.Database;
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+
+/**
+ * Requests a static database whose content equals that of an existing one,
+ * which re-uses that database, and one with new content, which creates (and
+ * here destroys) a database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticDatabaseBenchmark {
+	@Param({ "100", "1000", "10000" })
+	public int size;
+
+	private SwiPrologInterface language;
+	private Set<DatabaseFormula> content;
+	private Set<DatabaseFormula> otherContent;
+	private Database existing;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.language = new SwiPrologInterface();
+		this.content = new LinkedHashSet<>(Workload.facts(this.size));
+		this.otherContent = new LinkedHashSet<>(this.content);
+		this.otherContent.add(Workload.formula("other"));
+		this.existing = this.language.getDatabase("knowledge", this.content, true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.existing.destroy();
+		this.language.release();
+	}
+
+	@Benchmark
+	public Database reuse() throws KRException {
+		return this.language.getDatabase("knowledge", this.content, true);
+	}
+
+	@Benchmark
+	public void create() throws KRException {
+		PrologDatabase database = (PrologDatabase) this.language.getDatabase("other", this.otherContent, true);
+		database.materialize();
+		database.destroy();
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import krTools.language.Substitution;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.EnginePool;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Queries a recursive predicate, with and without tabling it; see
+ * {@link PrologDatabase#table(String, int)}. After each query a fact is
+ * inserted and deleted that the predicate does not depend on, which does not
+ * invalidate the tables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class TablingBenchmark {
+	@Param({ "false", "true" })
+	public boolean tabled;
+	/**
+	 * fibonacci: <tt>fibo(21, Y)</tt> computed naively; closure: all paths in
+	 * a ladder of 22 nodes, with exponentially many paths between its ends.
+	 */
+	@Param({ "fibonacci", "closure" })
+	public String program;
+
+	private int oldPoolSize;
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private PrologQuery query;
+	private DatabaseFormula unrelated;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		// tables are local to an engine.
+		this.oldPoolSize = EnginePool.getSize();
+		EnginePool.setSize(1);
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("recursive", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		switch (this.program) {
+		case "fibonacci":
+			if (this.tabled) {
+				this.database.table("fibo", 2);
+			}
+			this.database.insert(Workload.formula("fibo(0,0)"));
+			this.database.insert(Workload.formula("fibo(1,1)"));
+			this.database.insert(
+					Workload.formula("fibo(X,Y) :- X>1, X1 is X-1, X2 is X-2, fibo(X1,Y1), fibo(X2,Y2), Y is Y1+Y2"));
+			this.query = Workload.query("fibo(21,Y)");
+			break;
+		case "closure":
+			if (this.tabled) {
+				this.database.table("path", 2);
+			}
+			this.database.insert(Workload.formula("path(X,Y) :- edge(X,Y)"));
+			this.database.insert(Workload.formula("path(X,Y) :- edge(X,Z), path(Z,Y)"));
+			for (int n = 1; n < 22; n++) {
+				this.database.insert(Workload.formula("edge(" + (n - 1) + "," + n + ")"));
+				if (n > 1) {
+					this.database.insert(Workload.formula("edge(" + (n - 2) + "," + n + ")"));
+				}
+			}
+			this.query = Workload.query("path(X,Y)");
+			break;
+		default:
+			throw new IllegalArgumentException("unknown program '" + this.program + "'");
+		}
+		this.unrelated = Workload.formula("cycle(0)");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+		EnginePool.setSize(this.oldPoolSize);
+	}
+
+	@Benchmark
+	public Set<Substitution> query() throws KRException {
+		Set<Substitution> solutions = this.database.query(this.query, this.query.getFreeVar());
+		this.database.insert(this.unrelated);
+		this.database.delete(this.unrelated);
+		return solutions;
+	}
+}
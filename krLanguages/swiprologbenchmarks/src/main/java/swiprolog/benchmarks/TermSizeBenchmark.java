@@ -0,0 +1,86 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package swiprolog.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.language.Term;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Creates terms of a few shapes. Run with <tt>-prof gc</tt> to see the bytes
+ * per term (<tt>gc.alloc.rate.norm</tt>); the shared sub-terms (the atom a and
+ * the number 1) are created once and are not counted. For example
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar TermSizeBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class TermSizeBenchmark {
+	/**
+	 * ground: <tt>f(a, a)</tt>; nested: <tt>f(a, g(1))</tt>; open:
+	 * <tt>f(X, Y)</tt>; variable: <tt>X</tt>.
+	 */
+	@Param({ "ground", "nested", "open", "variable" })
+	public String shape;
+
+	private Term a;
+	private Term one;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.a = PrologImplFactory.getAtom("a", null);
+		this.one = PrologImplFactory.getNumber(1, null);
+	}
+
+	@Benchmark
+	public Term create() {
+		switch (this.shape) {
+		case "ground":
+			return PrologImplFactory.getCompound("f", new Term[] { this.a, this.a }, null);
+		case "nested":
+			return PrologImplFactory.getCompound("f",
+					new Term[] { this.a, PrologImplFactory.getCompound("g", new Term[] { this.one }, null) }, null);
+		case "open":
+			return PrologImplFactory.getCompound("f", new Term[] { PrologImplFactory.getVar("X", null),
+					PrologImplFactory.getVar("Y", null) }, null);
+		case "variable":
+			return PrologImplFactory.getVar("X", null);
+		default:
+			throw new IllegalArgumentException("unknown shape '" + this.shape + "'");
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package swiprolog.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.language.Substitution;
+import krTools.language.Term;
+import krTools.language.Var;
+import swiprolog.language.PrologCompound;
+import swiprolog.language.PrologSubstitution;
+import swiprolog.language.PrologUnifier;
+import swiprolog.language.PrologVar;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * Unifies the pairs of terms of the unification tests: with
+ * {@link Term#mgu(krTools.language.Expression)}, with a {@link PrologUnifier}
+ * that is reused and undone, and with the recursive unification that
+ * {@link Term#mgu(krTools.language.Expression)} used before, which threads a
+ * {@link PrologSubstitution} through every step. Run with <tt>-prof gc</tt> to
+ * see the allocation rate, for example
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar UnificationBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class UnificationBenchmark {
+	/**
+	 * constants: <tt>a = b</tt>; variable: <tt>X = f(Y, b)</tt>; arguments:
+	 * <tt>f(X, Y) = f(a, b)</tt>; variables: <tt>f(a, X) = f(Y, Z)</tt>; shared:
+	 * <tt>f(X, X) = f(a, Y)</tt>; nested: <tt>f(g(Y), X, Y) = f(X, g(a), a)</tt>;
+	 * occurs: <tt>f(X) = f(g(X))</tt>; mismatch:
+	 * <tt>aap(1, beer(3)) = aap(2, beer(3))</tt>; list: <tt>[X0, X1, ...]</tt>
+	 * with 100 elements and <tt>[0, 1, ...]</tt>.
+	 */
+	@Param({ "constants", "variable", "arguments", "variables", "shared", "nested", "occurs", "mismatch", "list" })
+	public String shape;
+
+	private Term left;
+	private Term right;
+	private PrologUnifier unifier;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Var X = var("X");
+		Var Y = var("Y");
+		Var Z = var("Z");
+		Term a = atom("a");
+		Term b = atom("b");
+		switch (this.shape) {
+		case "constants":
+			this.left = a;
+			this.right = b;
+			break;
+		case "variable":
+			this.left = X;
+			this.right = compound("f", Y, b);
+			break;
+		case "arguments":
+			this.left = compound("f", X, Y);
+			this.right = compound("f", a, b);
+			break;
+		case "variables":
+			this.left = compound("f", a, X);
+			this.right = compound("f", Y, Z);
+			break;
+		case "shared":
+			this.left = compound("f", X, X);
+			this.right = compound("f", a, Y);
+			break;
+		case "nested":
+			this.left = compound("f", compound("g", Y), X, Y);
+			this.right = compound("f", X, compound("g", a), a);
+			break;
+		case "occurs":
+			this.left = compound("f", X);
+			this.right = compound("f", compound("g", X));
+			break;
+		case "mismatch":
+			Term beer3 = compound("beer", atom("3"));
+			this.left = compound("aap", atom("1"), beer3);
+			this.right = compound("aap", atom("2"), beer3);
+			break;
+		case "list":
+			this.left = atom("[]");
+			this.right = atom("[]");
+			for (int i = 99; i >= 0; i--) {
+				this.left = compound("[|]", var("X" + i), this.left);
+				this.right = compound("[|]", PrologImplFactory.getNumber(i, null), this.right);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("unknown shape '" + this.shape + "'");
+		}
+		this.unifier = new PrologUnifier();
+	}
+
+	private static Var var(String name) {
+		return PrologImplFactory.getVar(name, null);
+	}
+
+	private static Term atom(String name) {
+		return PrologImplFactory.getAtom(name, null);
+	}
+
+	private static Term compound(String name, Term... args) {
+		return PrologImplFactory.getCompound(name, args, null);
+	}
+
+	@Benchmark
+	public Substitution mgu() {
+		return this.left.mgu(this.right);
+	}
+
+	@Benchmark
+	public int unifyAndUndo() {
+		int mark = this.unifier.mark();
+		int size = this.unifier.unify(this.left, this.right) ? this.unifier.size() : -1;
+		this.unifier.undo(mark);
+		return size;
+	}
+
+	@Benchmark
+	public Substitution recursive() {
+		return unify(this.left, this.right, new PrologSubstitution());
+	}
+
+	/**
+	 * The recursive unification of {@link PrologVar} and
+	 * {@link PrologCompound}; numbers only unify with equal numbers.
+	 */
+	private static Substitution unify(Term x, Term y, Substitution s) {
+		if (s == null) {
+			return null;
+		} else if (x instanceof PrologVar) {
+			if (x.equals(y)) {
+				return s;
+			}
+			Term st = s.get((Var) x);
+			if (st != null) {
+				return unify(st, y, s);
+			}
+			Term sy = (y instanceof Var) ? s.get((Var) y) : null;
+			if (sy != null) {
+				return unify(x, sy, s);
+			} else if (y.getFreeVar().contains(x)) {
+				return null;
+			} else {
+				s.addBinding((Var) x, y);
+				return s;
+			}
+		} else if (x instanceof PrologCompound) {
+			if (x.equals(y)) {
+				return s;
+			} else if (y instanceof PrologCompound) {
+				PrologCompound cx = (PrologCompound) x;
+				PrologCompound cy = (PrologCompound) y;
+				if (cx.getArity() == cy.getArity() && cx.getName().equals(cy.getName())) {
+					for (int i = 0; i < cx.getArity(); ++i) {
+						s = unify(cx.getArg(i), cy.getArg(i), s);
+					}
+					return s;
+				} else {
+					return null;
+				}
+			} else if (y instanceof PrologVar) {
+				return unify(y, x, s);
+			} else {
+				return null;
+			}
+		} else {
+			return x.equals(y) ? s : null;
+		}
+	}
+}
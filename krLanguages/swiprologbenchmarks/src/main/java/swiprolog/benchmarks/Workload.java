@@ -0,0 +1,78 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import krTools.language.DatabaseFormula;
+import krTools.language.Term;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologCompound;
+import swiprolog.language.PrologQuery;
+import swiprolog.language.impl.PrologImplFactory;
+
+/**
+ * The formulas and queries that the benchmarks use. They are created before a
+ * benchmark is measured, so that parsing is not measured.
+ */
+final class Workload {
+	/**
+	 * The number of different values of the second argument of the facts.
+	 */
+	static final int KEYS = 100;
+
+	/**
+	 * This is a utility class.
+	 */
+	private Workload() {
+	}
+
+	/**
+	 * @param size
+	 *            The number of facts.
+	 * @return The facts <tt>p(0, 0), p(1, 1), ..., p(size - 1, (size - 1) mod
+	 *         {@value #KEYS})</tt>.
+	 */
+	static List<DatabaseFormula> facts(int size) {
+		List<DatabaseFormula> facts = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Term[] args = { PrologImplFactory.getNumber(i, null), PrologImplFactory.getNumber(i % KEYS, null) };
+			facts.add(PrologImplFactory.getDBFormula(PrologImplFactory.getCompound("p", args, null)));
+		}
+		return facts;
+	}
+
+	/**
+	 * @param text
+	 *            A clause in Prolog syntax.
+	 * @return The clause as formula.
+	 */
+	static DatabaseFormula formula(String text) {
+		return PrologImplFactory.getDBFormula((PrologCompound) PrologDatabase.fromJpl(org.jpl7.Util.textToTerm(text)));
+	}
+
+	/**
+	 * @param text
+	 *            A query in Prolog syntax.
+	 * @return The query.
+	 */
+	static PrologQuery query(String text) {
+		return PrologImplFactory.getQuery((PrologCompound) PrologDatabase.fromJpl(org.jpl7.Util.textToTerm(text)));
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Knowledge Representation Tools. Copyright (C) 2014 Koen Hindriks.
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package swiprolog.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import krTools.exceptions.KRException;
+import krTools.language.DatabaseFormula;
+import swiprolog.SwiPrologInterface;
+import swiprolog.database.PrologDatabase;
+import swiprolog.language.PrologQuery;
+
+/**
+ * Performs the inserts and deletes of a number of facts from the write cache
+ * with different batch sizes, see {@link PrologDatabase#setWriteBatchSize(int)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBatchBenchmark {
+	@Param({ "10000", "100000" })
+	public int size;
+	@Param({ "64", "1024", "4096", "65536" })
+	public int batchSize;
+
+	private int oldBatchSize;
+	private SwiPrologInterface language;
+	private PrologDatabase database;
+	private List<DatabaseFormula> facts;
+	private PrologQuery fail;
+
+	@Setup(Level.Trial)
+	public void setUp() throws KRException {
+		this.oldBatchSize = PrologDatabase.getWriteBatchSize();
+		PrologDatabase.setWriteBatchSize(this.batchSize);
+		this.language = new SwiPrologInterface();
+		this.database = (PrologDatabase) this.language.getDatabase("beliefs", new LinkedHashSet<DatabaseFormula>(),
+				false);
+		this.facts = Workload.facts(this.size);
+		this.fail = Workload.query("false");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws KRException {
+		this.database.destroy();
+		this.language.release();
+		PrologDatabase.setWriteBatchSize(this.oldBatchSize);
+	}
+
+	@Benchmark
+	public void writes() throws KRException {
+		for (DatabaseFormula fact : this.facts) {
+			this.database.insert(fact);
+		}
+		this.database.query(this.fail);
+		for (DatabaseFormula fact : this.facts) {
+			this.database.delete(fact);
+		}
+		this.database.query(this.fail);
+	}
+}
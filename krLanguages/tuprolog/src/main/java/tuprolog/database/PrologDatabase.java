@@ -19,11 +19,14 @@ package tuprolog.database;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import alice.tuprolog.InvalidTheoryException;
 import alice.tuprolog.PrologException;
+import krTools.database.Aggregate;
 import krTools.database.Database;
 import krTools.exceptions.KRDatabaseException;
 import krTools.exceptions.KRInitFailedException;
@@ -31,15 +34,38 @@ import krTools.exceptions.KRQueryFailedException;
 import krTools.language.DatabaseFormula;
 import krTools.language.Query;
 import krTools.language.Substitution;
+import krTools.language.Term;
 import krTools.language.Update;
+import krTools.metrics.DatabaseMetrics;
 import tuprolog.TuPrologInterface;
 import tuprolog.errors.PrologError;
 import tuprolog.language.JPLUtils;
 import tuprolog.language.PrologDBFormula;
 import tuprolog.language.PrologQuery;
 import tuprolog.language.PrologSubstitution;
+import tuprolog.language.PrologTerm;
 
 public class PrologDatabase implements Database {
+	/**
+	 * Name of this backend in the {@link DatabaseMetrics}.
+	 */
+	public static final String BACKEND = "tuprolog";
+	/**
+	 * TU Prolog has no aggregate_all/3, so we define the variants that are used
+	 * by {@link #aggregate(Aggregate, Term, Query)} in every engine.
+	 */
+	private static final String AGGREGATE_THEORY = "aggregate_all(count, G, C) :- findall(x, G, L), length(L, C).\n"
+			+ "aggregate_all(bag(T), G, L) :- findall(T, G, L).\n"
+			+ "aggregate_all(sum(T), G, S) :- findall(T, G, L), '$aggregate_sum'(L, 0, S).\n"
+			+ "aggregate_all(min(T), G, M) :- findall(T, G, [H | L]), V is H, '$aggregate_min'(L, V, M).\n"
+			+ "aggregate_all(max(T), G, M) :- findall(T, G, [H | L]), V is H, '$aggregate_max'(L, V, M).\n"
+			+ "'$aggregate_sum'([], S, S).\n"
+			+ "'$aggregate_sum'([T | L], S0, S) :- S1 is S0 + T, '$aggregate_sum'(L, S1, S).\n"
+			+ "'$aggregate_min'([], M, M).\n"
+			+ "'$aggregate_min'([T | L], M0, M) :- V is T, (V < M0 -> M1 = V ; M1 = M0), '$aggregate_min'(L, M1, M).\n"
+			+ "'$aggregate_max'([], M, M).\n"
+			+ "'$aggregate_max'([T | L], M0, M) :- V is T, (V > M0 -> M1 = V ; M1 = M0), '$aggregate_max'(L, M1, M).\n";
+
 	private final alice.tuprolog.Prolog engine;
 	private final String name;
 	/**
@@ -64,6 +90,11 @@ public class PrologDatabase implements Database {
 	public PrologDatabase(String name, Collection<DatabaseFormula> content, TuPrologInterface owner)
 			throws KRDatabaseException {
 		this.engine = new alice.tuprolog.Prolog();
+		try {
+			this.engine.addTheory(new alice.tuprolog.Theory(AGGREGATE_THEORY));
+		} catch (InvalidTheoryException e) {
+			throw new KRDatabaseException("Failed to initialize database", e);
+		}
 		this.name = name;
 		this.owner = owner;
 		this.theory = new Theory(content);
@@ -112,10 +143,56 @@ public class PrologDatabase implements Database {
 		// We need to create conjunctive query with "true" as first conjunct and
 		// db_query as second conjunct as JPL query dbname:not(..) does not work
 		// otherwise...
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
 		substSet.addAll(rawquery(JPLUtils.createCompound(",", new alice.tuprolog.Struct("true"), query)));
+		metrics.endQuery(start, substSet.size());
 		return substSet;
 	}
 
+	/**
+	 * Computes an aggregate over the solutions of given query inside TU Prolog
+	 * with an aggregate_all/3 goal, so that only the result is converted.
+	 *
+	 * @param function
+	 *            the aggregate function.
+	 * @param template
+	 *            the term to aggregate; ignored for count.
+	 * @param pQuery
+	 *            the query to be performed.
+	 * @return the aggregated value, or null for min or max without solutions.
+	 */
+	@Override
+	public Term aggregate(Aggregate function, Term template, Query pQuery) throws KRQueryFailedException {
+		alice.tuprolog.Term query = ((PrologQuery) pQuery).getTerm();
+		Set<String> used = new HashSet<>(JPLUtils.getFreeVar(query));
+		alice.tuprolog.Struct spec;
+		if (function == Aggregate.COUNT) {
+			spec = new alice.tuprolog.Struct("count");
+		} else {
+			alice.tuprolog.Term term = ((PrologTerm) template).getTerm();
+			used.addAll(JPLUtils.getFreeVar(term));
+			spec = new alice.tuprolog.Struct(function.name().toLowerCase(), term);
+		}
+		String result = "Result";
+		while (used.contains(result)) {
+			result += "_";
+		}
+		alice.tuprolog.Term goal = new alice.tuprolog.Struct("aggregate_all", spec, query,
+				new alice.tuprolog.Var(result));
+		DatabaseMetrics metrics = DatabaseMetrics.get(BACKEND);
+		long start = metrics.startQuery();
+		try {
+			alice.tuprolog.SolveInfo info = this.engine.solve(goal.toString() + ".");
+			metrics.endQuery(start, info.isSuccess() ? 1 : 0);
+			return info.isSuccess() ? new PrologTerm(info.getVarValue(result), null) : null;
+		} catch (PrologException e) {
+			throw new PrologError(e);
+		} catch (Throwable e) {
+			throw new KRQueryFailedException("tu prolog says the query '" + goal + "' failed", e);
+		}
+	}
+
 	/**
 	 * Inserts a set of like {@link #insert(DatabaseFormula)}, but does not add
 	 * them to the theory. This makes sure that they will not show up when the
@@ -151,6 +228,7 @@ public class PrologDatabase implements Database {
 	public void insert(DatabaseFormula formula) throws KRDatabaseException {
 		if (this.theory.add(formula)) {
 			insert(((PrologDBFormula) formula).getTerm());
+			DatabaseMetrics.get(BACKEND).inserted(1);
 		}
 	}
 
@@ -236,6 +314,7 @@ public class PrologDatabase implements Database {
 	public void delete(DatabaseFormula formula) throws KRDatabaseException {
 		if (this.theory.remove(formula)) {
 			delete(((PrologDBFormula) formula).getTerm());
+			DatabaseMetrics.get(BACKEND).deleted(1);
 		}
 	}
 